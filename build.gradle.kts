@@ -9,6 +9,7 @@ plugins {
     id("application")
     alias(libs.plugins.shadow)
     alias(libs.plugins.git)
+    alias(libs.plugins.jmh)
 }
 
 group = "cn.nukkit"
@@ -68,6 +69,17 @@ application {
     mainClass.set("cn.nukkit.Nukkit")
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    // Run a single benchmark with ./gradlew jmh -PjmhIncludes=<name>
+    if (project.hasProperty("jmhIncludes")) {
+        includes.set(listOf(project.property("jmhIncludes").toString()))
+    }
+    if (project.hasProperty("jmhProfilers")) {
+        profilers.set(listOf(project.property("jmhProfilers").toString()))
+    }
+}
+
 gitProperties {
     dateFormat = "dd.MM.yyyy '@' HH:mm:ss z"
     failOnNoGitDirectory = false
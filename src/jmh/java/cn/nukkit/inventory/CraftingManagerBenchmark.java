@@ -0,0 +1,220 @@
+package cn.nukkit.inventory;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.item.Item;
+import cn.nukkit.item.RuntimeItems;
+import cn.nukkit.item.enchantment.Enchantment;
+import cn.nukkit.level.GlobalBlockPalette;
+import cn.nukkit.utils.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching crafting grids against the recipes of recipes.json and generated custom recipes: matchRecipe with the recipe
+ * index against the lookup it replaced, which sorted the grid, looked it up by its MD5 hash and went through all
+ * recipes of the result when the hash missed. Each grid set holds crafts of vanilla recipes, one of a custom recipe and
+ * one which matches no recipe of its result.
+ * <p>
+ * The lookup keys alone are compared as well. The previous lookup sorted the list it was given, a copy is sorted here
+ * so each invocation starts from the unsorted grid as a new crafting attempt would.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=CraftingManagerBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CraftingManagerBenchmark {
+
+    private static final int RESULT = Item.CHEST << 12;
+    private static final int CUSTOM_RECIPES = 2000;
+    private static final int[] CUSTOM_INGREDIENTS = {
+            Item.COBBLESTONE, Item.DIRT, Item.SAND, Item.GRAVEL, Item.IRON_INGOT, Item.GOLD_INGOT, Item.DIAMOND,
+            Item.REDSTONE, Item.STRING, Item.FEATHER, Item.LEATHER, Item.CLAY_BALL, Item.BONE, Item.FLINT,
+            Item.SLIMEBALL, Item.GLOWSTONE_DUST
+    };
+    private static final int[] CUSTOM_RESULTS = {Item.CHEST, Item.STICK, Item.TORCH, Item.CRAFTING_TABLE};
+
+    private final List<Item> grid = new ArrayList<>();
+
+    private CraftingManager manager;
+    private final List<List<Item>> grids = new ArrayList<>();
+    private final List<Item> outputs = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        // A chest: planks of mixed kinds around an empty center
+        for (int i = 0; i < 9; i++) {
+            this.grid.add(i == 4 ? new Item(Item.AIR, 0, 0) : new Item(Item.PLANKS, i % 4));
+        }
+
+        Block.init();
+        Enchantment.init();
+        GlobalBlockPalette.init();
+        RuntimeItems.init();
+        Item.init();
+
+        Random random = new Random(0);
+        List<Map<String, Object>> recipes = new ArrayList<>();
+        List<Item> custom = null;
+        for (int i = 0; i < CUSTOM_RECIPES; i++) {
+            List<Map<String, Object>> input = new ArrayList<>();
+            List<Item> items = new ArrayList<>();
+            int ingredients = 1 + random.nextInt(4);
+            for (int j = 0; j < ingredients; j++) {
+                int id = CUSTOM_INGREDIENTS[random.nextInt(CUSTOM_INGREDIENTS.length)];
+                Map<String, Object> ingredient = new HashMap<>();
+                ingredient.put("id", id);
+                input.add(ingredient);
+                items.add(Item.get(id));
+            }
+
+            Map<String, Object> output = new HashMap<>();
+            output.put("id", CUSTOM_RESULTS[i % CUSTOM_RESULTS.length]);
+
+            Map<String, Object> recipe = new HashMap<>();
+            recipe.put("type", 0);
+            recipe.put("block", "crafting_table");
+            recipe.put("priority", 0);
+            recipe.put("input", input);
+            recipe.put("output", new ArrayList<>(Collections.singletonList(output)));
+            recipes.add(recipe);
+
+            if (i == CUSTOM_RECIPES - 1) {
+                custom = items;
+            }
+        }
+        Config customRecipes = new Config(Config.JSON);
+        customRecipes.set("recipes", recipes);
+        this.manager = new CraftingManager(customRecipes);
+
+        this.addGrid(Item.get(Item.CHEST), "AAA", "A A", "AAA", Item.get(Item.PLANKS, 2));
+        this.addGrid(Item.get(Item.STICK, 0, 4), "A  ", "A  ", "   ", Item.get(Item.PLANKS, 3));
+        this.addGrid(Item.get(Item.CRAFTING_TABLE), "AA ", "AA ", "   ", Item.get(Item.PLANKS, 0));
+        this.addGrid(Item.get(Item.TORCH, 0, 4), "A  ", "B  ", "   ", Item.get(Item.COAL), Item.get(Item.STICK));
+        this.addGrid(Item.get(CUSTOM_RESULTS[(CUSTOM_RECIPES - 1) % CUSTOM_RESULTS.length]), custom);
+        // No recipe of a chest takes dirt
+        this.addGrid(Item.get(Item.CHEST), "AAA", "A A", "AAA", Item.get(Item.DIRT));
+
+        for (int i = 0; i < this.grids.size(); i++) {
+            CraftingRecipe recipe = this.manager.matchRecipe(new ArrayList<>(this.grids.get(i)), this.outputs.get(i), Collections.emptyList());
+            if (recipe != this.matchRecipeByHash(new ArrayList<>(this.grids.get(i)), this.outputs.get(i), Collections.emptyList())) {
+                throw new IllegalStateException("Lookups disagree on grid " + i);
+            }
+            if ((recipe == null) != (i == this.grids.size() - 1)) {
+                throw new IllegalStateException("Unexpected match of grid " + i + ": " + recipe);
+            }
+        }
+    }
+
+    private void addGrid(Item output, String row1, String row2, String row3, Item... ingredients) {
+        List<Item> grid = new ArrayList<>();
+        for (char c : (row1 + row2 + row3).toCharArray()) {
+            grid.add(c == ' ' ? Item.get(Item.AIR, 0, 0) : ingredients[c - 'A'].clone());
+        }
+        this.addGrid(output, grid);
+    }
+
+    private void addGrid(Item output, List<Item> items) {
+        List<Item> grid = new ArrayList<>(items);
+        while (grid.size() < 9) {
+            grid.add(Item.get(Item.AIR, 0, 0));
+        }
+        // The crafting transaction hands the items over in no particular order
+        Collections.shuffle(grid, new Random(this.grids.size()));
+        this.grids.add(grid);
+        this.outputs.add(output);
+    }
+
+    /**
+     * matchRecipe as it was before the recipe index.
+     */
+    private CraftingRecipe matchRecipeByHash(List<Item> inputList, Item primaryOutput, List<Item> extraOutputList) {
+        int outputHash = (primaryOutput.getId() << 12) | (primaryOutput.getDamage() & 0xfff);
+        if (this.manager.shapedRecipes.containsKey(outputHash)) {
+            inputList.sort(CraftingManager.recipeComparator);
+
+            UUID inputHash = CraftingManager.getMultiItemHash(inputList);
+
+            Map<UUID, ShapedRecipe> recipeMap = this.manager.shapedRecipes.get(outputHash);
+
+            if (recipeMap != null) {
+                ShapedRecipe recipe = recipeMap.get(inputHash);
+
+                if (recipe != null && (recipe.matchItems(inputList, extraOutputList) || this.manager.matchItemsAccumulation(recipe, inputList, primaryOutput, extraOutputList))) {
+                    return recipe;
+                }
+
+                for (ShapedRecipe shapedRecipe : recipeMap.values()) {
+                    if (shapedRecipe.matchItems(inputList, extraOutputList) || this.manager.matchItemsAccumulation(shapedRecipe, inputList, primaryOutput, extraOutputList)) {
+                        return shapedRecipe;
+                    }
+                }
+            }
+        }
+
+        if (this.manager.shapelessRecipes.containsKey(outputHash)) {
+            inputList.sort(CraftingManager.recipeComparator);
+
+            UUID inputHash = CraftingManager.getMultiItemHash(inputList);
+
+            Map<UUID, ShapelessRecipe> recipes = this.manager.shapelessRecipes.get(outputHash);
+
+            if (recipes == null) {
+                return null;
+            }
+
+            ShapelessRecipe recipe = recipes.get(inputHash);
+
+            if (recipe != null && (recipe.matchItems(inputList, extraOutputList) || this.manager.matchItemsAccumulation(recipe, inputList, primaryOutput, extraOutputList))) {
+                return recipe;
+            }
+
+            for (ShapelessRecipe shapelessRecipe : recipes.values()) {
+                if (shapelessRecipe.matchItems(inputList, extraOutputList) || this.manager.matchItemsAccumulation(shapelessRecipe, inputList, primaryOutput, extraOutputList)) {
+                    return shapelessRecipe;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Benchmark
+    public int matchRecipe() {
+        int matched = 0;
+        for (int i = 0; i < this.grids.size(); i++) {
+            if (this.manager.matchRecipe(new ArrayList<>(this.grids.get(i)), this.outputs.get(i), Collections.emptyList()) != null) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int matchRecipeByHash() {
+        int matched = 0;
+        for (int i = 0; i < this.grids.size(); i++) {
+            if (this.matchRecipeByHash(new ArrayList<>(this.grids.get(i)), this.outputs.get(i), Collections.emptyList()) != null) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public long indexKey() {
+        return CraftingManager.getIndexKey(RESULT, this.grid);
+    }
+
+    @Benchmark
+    public UUID sortedMultiItemHash() {
+        List<Item> inputList = new ArrayList<>(this.grid);
+        inputList.sort(CraftingManager.recipeComparator);
+        return CraftingManager.getMultiItemHash(inputList);
+    }
+}
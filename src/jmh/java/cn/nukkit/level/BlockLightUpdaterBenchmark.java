@@ -0,0 +1,248 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.block.BlockID;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.level.format.leveldb.structure.LevelDBChunk;
+import cn.nukkit.level.format.leveldb.structure.LevelDBChunkSection;
+import cn.nukkit.utils.Hash;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreading the light of a torch placed on a stone floor, computed by the block light updater on a snapshot of the
+ * surrounding 3x3 chunks. The snapshot is captured before each invocation and not measured.
+ * <p>
+ * The baseline runs the same update with the queue-based block light pass Level used before the light updaters,
+ * writing into the chunks themselves. Their block light is cleared again before each invocation.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=BlockLightUpdaterBenchmark}, add {@code -PjmhProfilers=gc} to see the
+ * allocation per update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockLightUpdaterBenchmark {
+
+    private static final int FLOOR_Y = 64;
+    private static final long TORCH = Hash.hashBlock(24, FLOOR_Y, 24);
+
+    private final BaseFullChunk[] chunks = new BaseFullChunk[9];
+    private BlockLightUpdater updater;
+    private LightSnapshot snapshot;
+    private QueueBlockLight queueBlockLight;
+
+    @Setup
+    public void setUp() {
+        Block.init();
+
+        for (int i = 0; i < this.chunks.length; i++) {
+            BaseFullChunk chunk = new LevelDBChunk(null, new LevelDBChunkSection[0]);
+            chunk.setPosition(i % 3, i / 3);
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int y = 0; y < FLOOR_Y; y++) {
+                        chunk.setBlock(x, y, z, BlockID.STONE);
+                    }
+                }
+            }
+            this.chunks[i] = chunk;
+        }
+        this.chunks[4].setBlock(8, FLOOR_Y, 8, BlockID.TORCH);
+
+        // Updates on a snapshot don't touch the level
+        this.updater = new BlockLightUpdater(null);
+        this.queueBlockLight = new QueueBlockLight(this.chunks);
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+    public void capture() {
+        this.snapshot = new LightSnapshot(0, 255);
+        for (BaseFullChunk chunk : this.chunks) {
+            for (int sectionY = (FLOOR_Y >> 4) - 1; sectionY <= (FLOOR_Y >> 4) + 1; sectionY++) {
+                this.snapshot.capture(chunk, sectionY);
+            }
+        }
+
+        // Clear the light the baseline spread from the torch
+        int x0 = Hash.hashBlockX(TORCH);
+        int z0 = Hash.hashBlockZ(TORCH);
+        for (int x = x0 - 15; x <= x0 + 15; x++) {
+            for (int z = z0 - 15; z <= z0 + 15; z++) {
+                for (int y = FLOOR_Y - 15; y <= FLOOR_Y + 15; y++) {
+                    if (this.queueBlockLight.getBlockLightAt(x, y, z) != 0) {
+                        this.queueBlockLight.setBlockLightAt(x, y, z, 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int placeTorch() {
+        return this.updater.update(new long[]{TORCH}, this.snapshot);
+    }
+
+    @Benchmark
+    public void placeTorchQueueBaseline() {
+        this.queueBlockLight.update(new long[]{TORCH});
+    }
+
+    /**
+     * The block light pass of Level before the light updaters: boxed queues and visited sets, every neighbour read and
+     * written through the synchronized block light getters, which are emulated on the benchmark chunks.
+     */
+    private static final class QueueBlockLight {
+
+        private final Long2ObjectMap<BaseFullChunk> chunks = new Long2ObjectOpenHashMap<>();
+
+        private QueueBlockLight(BaseFullChunk[] chunks) {
+            for (BaseFullChunk chunk : chunks) {
+                this.chunks.put(Level.chunkHash(chunk.getX(), chunk.getZ()), chunk);
+            }
+        }
+
+        private BaseFullChunk getChunk(int chunkX, int chunkZ) {
+            return this.chunks.get(Level.chunkHash(chunkX, chunkZ));
+        }
+
+        private synchronized int getBlockIdAt(int x, int y, int z) {
+            if (y < 0 || y > 255) {
+                return 0;
+            }
+            BaseFullChunk chunk = this.getChunk(x >> 4, z >> 4);
+            return chunk == null ? 0 : chunk.getBlockId(x & 0x0f, y, z & 0x0f);
+        }
+
+        private synchronized int getBlockLightAt(int x, int y, int z) {
+            if (y < 0 || y > 255) {
+                return 0;
+            }
+            BaseFullChunk chunk = this.getChunk(x >> 4, z >> 4);
+            return chunk == null ? 0 : chunk.getBlockLight(x & 0x0f, y, z & 0x0f);
+        }
+
+        private synchronized void setBlockLightAt(int x, int y, int z, int level) {
+            if (y < 0 || y > 255) {
+                return;
+            }
+            BaseFullChunk chunk = this.getChunk(x >> 4, z >> 4);
+            if (chunk != null) {
+                chunk.setBlockLight(x & 0x0f, y, z & 0x0f, level & 0x0f);
+            }
+        }
+
+        private void update(long[] changed) {
+            Queue<Long> lightPropagationQueue = new ConcurrentLinkedQueue<>();
+            Queue<Object[]> lightRemovalQueue = new ConcurrentLinkedQueue<>();
+            LongOpenHashSet visited = new LongOpenHashSet();
+            LongOpenHashSet removalVisited = new LongOpenHashSet();
+
+            for (long hash : changed) {
+                int x = Hash.hashBlockX(hash);
+                int y = Hash.hashBlockY(hash);
+                int z = Hash.hashBlockZ(hash);
+                BaseFullChunk chunk = this.getChunk(x >> 4, z >> 4);
+
+                if (chunk != null) {
+                    int oldLevel = chunk.getBlockLight(x & 0x0f, y, z & 0x0f);
+                    int newLevel = Block.getBlockLight(chunk.getBlockId(x & 0x0f, y, z & 0x0f));
+                    if (oldLevel != newLevel) {
+                        this.setBlockLightAt(x, y, z, newLevel);
+
+                        if (newLevel < oldLevel) {
+                            removalVisited.add(hash);
+                            lightRemovalQueue.add(new Object[]{hash, oldLevel});
+                        } else {
+                            visited.add(hash);
+                            lightPropagationQueue.add(hash);
+                        }
+                    }
+                }
+            }
+
+            while (!lightRemovalQueue.isEmpty()) {
+                Object[] val = lightRemovalQueue.poll();
+                long node = (long) val[0];
+                int x = Hash.hashBlockX(node);
+                int y = Hash.hashBlockY(node);
+                int z = Hash.hashBlockZ(node);
+
+                int lightLevel = (int) val[1];
+
+                this.computeRemoveBlockLight(x - 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+                this.computeRemoveBlockLight(x + 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+                this.computeRemoveBlockLight(x, y - 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+                this.computeRemoveBlockLight(x, y + 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+                this.computeRemoveBlockLight(x, y, z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+                this.computeRemoveBlockLight(x, y, z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            }
+
+            while (!lightPropagationQueue.isEmpty()) {
+                long node = lightPropagationQueue.poll();
+
+                int x = Hash.hashBlockX(node);
+                int y = Hash.hashBlockY(node);
+                int z = Hash.hashBlockZ(node);
+
+                int lightLevel = this.getBlockLightAt(x, y, z)
+                        - Block.getBlockLightFilter(this.getBlockIdAt(x, y, z));
+
+                if (lightLevel >= 1) {
+                    this.computeSpreadBlockLight(x - 1, y, z, lightLevel, lightPropagationQueue, visited);
+                    this.computeSpreadBlockLight(x + 1, y, z, lightLevel, lightPropagationQueue, visited);
+                    this.computeSpreadBlockLight(x, y - 1, z, lightLevel, lightPropagationQueue, visited);
+                    this.computeSpreadBlockLight(x, y + 1, z, lightLevel, lightPropagationQueue, visited);
+                    this.computeSpreadBlockLight(x, y, z - 1, lightLevel, lightPropagationQueue, visited);
+                    this.computeSpreadBlockLight(x, y, z + 1, lightLevel, lightPropagationQueue, visited);
+                }
+            }
+        }
+
+        private void computeRemoveBlockLight(int x, int y, int z, int currentLight, Queue<Object[]> queue,
+                                             Queue<Long> spreadQueue, Set<Long> visited, Set<Long> spreadVisited) {
+            int current = this.getBlockLightAt(x, y, z);
+            if (current != 0 && current < currentLight) {
+                this.setBlockLightAt(x, y, z, 0);
+                if (current > 1) {
+                    long index = Hash.hashBlock(x, y, z);
+                    if (!visited.contains(index)) {
+                        visited.add(index);
+                        queue.add(new Object[]{index, current});
+                    }
+                }
+            } else if (current >= currentLight) {
+                long index = Hash.hashBlock(x, y, z);
+                if (!spreadVisited.contains(index)) {
+                    spreadVisited.add(index);
+                    spreadQueue.add(index);
+                }
+            }
+        }
+
+        private void computeSpreadBlockLight(int x, int y, int z, int currentLight, Queue<Long> queue, Set<Long> visited) {
+            int current = this.getBlockLightAt(x, y, z);
+            if (current < currentLight - 1) {
+                this.setBlockLightAt(x, y, z, currentLight);
+
+                long index = Hash.hashBlock(x, y, z);
+                if (!visited.contains(index)) {
+                    visited.add(index);
+                    if (currentLight > 1) {
+                        queue.add(index);
+                    }
+                }
+            }
+        }
+    }
+}
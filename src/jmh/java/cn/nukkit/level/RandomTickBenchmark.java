@@ -0,0 +1,111 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.block.BlockID;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.level.format.leveldb.structure.LevelDBChunk;
+import cn.nukkit.level.format.leveldb.structure.LevelDBChunkSection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random ticks of a section holding a field of grown wheat under a canopy of leaves which don't decay, the common case
+ * of farms and forests where random updates have nothing to do. The baseline creates a located block for every random
+ * tick candidate and updates it, as Level did before the shared block states. The other method asks the shared state
+ * first and creates a block only when its update can do anything, as Level does now.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=RandomTickBenchmark -PjmhProfilers=gc}, the gc profiler shows the
+ * allocation per tick both ways.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomTickBenchmark {
+
+    private static final int CHUNKS = 64;
+    private static final int SECTION_Y = 4;
+    // Random ticks per section and tick, the default randomTickSpeed
+    private static final int TICKS_PER_SECTION = 3;
+    private static final int TICKS = 64;
+
+    private final BaseFullChunk[] chunks = new BaseFullChunk[CHUNKS];
+    // Block positions picked by the random ticks, the same for both methods
+    private final int[] positions = new int[TICKS * CHUNKS * TICKS_PER_SECTION];
+
+    @Setup
+    public void setUp() {
+        Block.init();
+
+        for (int i = 0; i < CHUNKS; i++) {
+            BaseFullChunk chunk = new LevelDBChunk(null, new LevelDBChunkSection[0]);
+            chunk.setPosition(i % 8, i / 8);
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    chunk.setBlock(x, SECTION_Y << 4, z, BlockID.DIRT);
+                    chunk.setBlock(x, (SECTION_Y << 4) + 1, z, BlockID.WHEAT_BLOCK, 7);
+                    for (int y = (SECTION_Y << 4) + 8; y < (SECTION_Y << 4) + 12; y++) {
+                        // Natural leaves whose decay check was done, and leaves placed by players
+                        chunk.setBlock(x, y, z, BlockID.LEAVES, ((x + z) & 3) == 0 ? 0x04 : 0);
+                    }
+                }
+            }
+            this.chunks[i] = chunk;
+        }
+
+        SplittableRandom random = new SplittableRandom(0);
+        for (int i = 0; i < this.positions.length; i++) {
+            this.positions[i] = random.nextInt(4096);
+        }
+    }
+
+    @Benchmark
+    public int randomTickLocatedBlocks() {
+        int updated = 0;
+        int p = 0;
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (BaseFullChunk chunk : this.chunks) {
+                for (int i = 0; i < TICKS_PER_SECTION; i++) {
+                    int pos = this.positions[p++];
+                    int x = pos & 0x0f;
+                    int y = (SECTION_Y << 4) + (pos >> 8);
+                    int z = (pos >> 4) & 0x0f;
+                    int fullId = chunk.getFullBlock(x, y, z);
+                    int blockId = fullId >> Block.DATA_BITS;
+                    if (blockId < Level.randomTickBlocks.length && Level.randomTickBlocks[blockId]) {
+                        Block block = Block.get(fullId, null, (chunk.getX() << 4) + x, y, (chunk.getZ() << 4) + z);
+                        updated += block.onUpdate(Level.BLOCK_UPDATE_RANDOM);
+                    }
+                }
+            }
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public int randomTickSharedStates() {
+        int updated = 0;
+        int p = 0;
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (BaseFullChunk chunk : this.chunks) {
+                for (int i = 0; i < TICKS_PER_SECTION; i++) {
+                    int pos = this.positions[p++];
+                    int x = pos & 0x0f;
+                    int y = (SECTION_Y << 4) + (pos >> 8);
+                    int z = (pos >> 4) & 0x0f;
+                    int fullId = chunk.getFullBlock(x, y, z);
+                    int blockId = fullId >> Block.DATA_BITS;
+                    if (blockId < Level.randomTickBlocks.length && Level.randomTickBlocks[blockId] && Block.getState(fullId).canRandomTick()) {
+                        Block block = Block.get(fullId, null, (chunk.getX() << 4) + x, y, (chunk.getZ() << 4) + z);
+                        updated += block.onUpdate(Level.BLOCK_UPDATE_RANDOM);
+                    }
+                }
+            }
+        }
+        return updated;
+    }
+}
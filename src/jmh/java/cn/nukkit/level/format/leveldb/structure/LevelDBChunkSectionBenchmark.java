@@ -0,0 +1,89 @@
+package cn.nukkit.level.format.leveldb.structure;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.block.BlockID;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block reads of a LevelDB chunk section from three threads while a fourth one writes. The optimistic group reads the
+ * section directly, the monitor group serializes the same reads and writes on one monitor, like the block getters of
+ * Level did before they stopped holding the level monitor.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=LevelDBChunkSectionBenchmark}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LevelDBChunkSectionBenchmark {
+
+    private static final int STONE = BlockID.STONE << Block.DATA_BITS;
+    private static final int DIRT = BlockID.DIRT << Block.DATA_BITS;
+
+    private final Object monitor = new Object();
+    private LevelDBChunkSection section;
+
+    @Setup
+    public void setUp() {
+        this.section = new LevelDBChunkSection(0);
+        for (int i = 0; i < 4096; i++) {
+            this.section.setFullBlockId(i & 0x0f, i >> 8, (i >> 4) & 0x0f, Block.LAYER_NORMAL, (i & 1) == 0 ? STONE : DIRT);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+        private boolean stone;
+
+        int next() {
+            // Odd step, visits every block of the section in a scattered order
+            return this.index = (this.index + 1237) & 4095;
+        }
+
+        int nextState() {
+            return (this.stone = !this.stone) ? STONE : DIRT;
+        }
+    }
+
+    @Benchmark
+    @Group("optimistic")
+    @GroupThreads(3)
+    public int optimisticRead(Cursor cursor) {
+        int i = cursor.next();
+        return this.section.getFullBlock(i & 0x0f, i >> 8, (i >> 4) & 0x0f, Block.LAYER_NORMAL);
+    }
+
+    @Benchmark
+    @Group("optimistic")
+    @GroupThreads(1)
+    public boolean optimisticWrite(Cursor cursor) {
+        int i = cursor.next();
+        return this.section.setFullBlockId(i & 0x0f, i >> 8, (i >> 4) & 0x0f, Block.LAYER_NORMAL, cursor.nextState());
+    }
+
+    @Benchmark
+    @Group("monitor")
+    @GroupThreads(3)
+    public int monitorRead(Cursor cursor) {
+        int i = cursor.next();
+        synchronized (this.monitor) {
+            return this.section.getFullBlock(i & 0x0f, i >> 8, (i >> 4) & 0x0f, Block.LAYER_NORMAL);
+        }
+    }
+
+    @Benchmark
+    @Group("monitor")
+    @GroupThreads(1)
+    public boolean monitorWrite(Cursor cursor) {
+        int i = cursor.next();
+        synchronized (this.monitor) {
+            return this.section.setFullBlockId(i & 0x0f, i >> 8, (i >> 4) & 0x0f, Block.LAYER_NORMAL, cursor.nextState());
+        }
+    }
+}
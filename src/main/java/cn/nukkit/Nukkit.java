@@ -16,6 +16,8 @@ import org.apache.logging.log4j.core.config.LoggerConfig;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 /*
@@ -54,6 +56,10 @@ public class Nukkit {
      * Debug logging level
      */
     public static int DEBUG = 1;
+    /**
+     * Levels to convert to LevelDB before the server stops, set from the command line
+     */
+    public static List<String> CONVERT_LEVELS = Collections.emptyList();
 
     public static void main(String[] args) {
         System.setProperty("java.net.preferIPv4Stack" , "true");
@@ -73,6 +79,7 @@ public class Nukkit {
         OptionSpec<String> vSpec = parser.accepts("v", "Set verbosity of logging").withRequiredArg().ofType(String.class);
         OptionSpec<String> verbositySpec = parser.accepts("verbosity", "Set verbosity of logging").withRequiredArg().ofType(String.class);
         OptionSpec<String> languageSpec = parser.accepts("language", "Set a predefined language").withOptionalArg().ofType(String.class);
+        OptionSpec<String> convertSpec = parser.accepts("convert", "Convert the Anvil levels to LevelDB and stop").withRequiredArg().ofType(String.class);
 
         // Parse arguments
         OptionSet options = parser.parse(args);
@@ -105,6 +112,7 @@ public class Nukkit {
         }
 
         String language = options.valueOf(languageSpec);
+        CONVERT_LEVELS = options.valuesOf(convertSpec);
 
         try {
             if (TITLE) {
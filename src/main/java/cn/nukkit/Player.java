@@ -1113,6 +1113,7 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
         if (!loadQueue.isEmpty()) {
             int count = 0;
+            boolean blocked = false;
             ObjectIterator<Long2ObjectMap.Entry<Boolean>> iter = loadQueue.long2ObjectEntrySet().fastIterator();
             while (iter.hasNext()) {
                 if (count >= server.chunksPerTick) {
@@ -1130,12 +1131,21 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                     this.usedChunks.put(index, false);
                     this.level.registerChunkLoader(this, chunkX, chunkZ, false);
 
-                    if (!this.level.populateChunk(chunkX, chunkZ)) {
-                        if (this.spawned && this.teleportPosition == null) {
-                            continue;
-                        } else {
-                            break;
+                    boolean ready;
+                    if (this.level.isChunkLoaded(chunkX, chunkZ)) {
+                        ready = this.level.populateChunk(chunkX, chunkZ);
+                    } else {
+                        // Read from disk in the background, the chunk is sent once it's attached
+                        this.level.loadChunkAsync(chunkX, chunkZ, true);
+                        ready = false;
+                    }
+
+                    if (!ready || blocked) {
+                        if (!this.spawned || this.teleportPosition != null) {
+                            // Chunks around the spawn are sent in order, but the rest of the batch is still loaded
+                            blocked = true;
                         }
+                        continue;
                     }
 
                     iter.remove();
@@ -1343,10 +1353,12 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
         DataPacket dataPacket = packet.clone();
 
-        DataPacketSendEvent ev = new DataPacketSendEvent(this, dataPacket);
-        this.server.getPluginManager().callEvent(ev);
-        if (ev.isCancelled()) {
-            return false;
+        if (this.server.getPluginManager().hasListeners(DataPacketSendEvent.class)) {
+            DataPacketSendEvent ev = new DataPacketSendEvent(this, dataPacket);
+            this.server.getPluginManager().callEvent(ev);
+            if (ev.isCancelled()) {
+                return false;
+            }
         }
 
         if (Nukkit.DEBUG > 2 && !server.isIgnoredPacket(packet.getClass())) {
@@ -1378,10 +1390,12 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
     }
 
     public void forceDataPacket(DataPacket packet, Runnable callback) {
-        DataPacketSendEvent ev = new DataPacketSendEvent(this, packet);
-        this.server.getPluginManager().callEvent(ev);
-        if (ev.isCancelled()) {
-            return;
+        if (this.server.getPluginManager().hasListeners(DataPacketSendEvent.class)) {
+            DataPacketSendEvent ev = new DataPacketSendEvent(this, packet);
+            this.server.getPluginManager().callEvent(ev);
+            if (ev.isCancelled()) {
+                return;
+            }
         }
 
         if (Nukkit.DEBUG > 2 && !server.isIgnoredPacket(packet.getClass())) {
@@ -1796,13 +1810,9 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                 if (oldDimension == Level.DIMENSION_THE_END) {
                     Position spawn;
                     if ((spawn = this.getSpawn()).getLevel().getDimension() == Level.DIMENSION_OVERWORLD) {
-                        if (this.teleport(spawn, TeleportCause.END_PORTAL)) {
-                            this.awardAchievement("theEnd2");
-                        }
+                        this.teleportThroughPortal(spawn, TeleportCause.END_PORTAL, "theEnd2");
                     } else {
-                        if (this.teleport(this.getServer().getDefaultLevel().getSafeSpawn(), TeleportCause.END_PORTAL)) {
-                            this.awardAchievement("theEnd2");
-                        }
+                        this.teleportThroughPortal(this.getServer().getDefaultLevel().getSafeSpawn(), TeleportCause.END_PORTAL, "theEnd2");
                     }
                 } else {
                     Level end = this.getServer().getLevelByName("the_end");
@@ -1826,9 +1836,7 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                             }
                         }
 
-                        if (this.teleport(pos, TeleportCause.END_PORTAL) && oldDimension == Level.DIMENSION_OVERWORLD) {
-                            this.awardAchievement("theEnd");
-                        }
+                        this.teleportThroughPortal(pos, TeleportCause.END_PORTAL, oldDimension == Level.DIMENSION_OVERWORLD ? "theEnd" : null);
                     }
                 }
             }
@@ -1873,13 +1881,9 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                 Position foundPortal = BlockNetherPortal.findNearestPortal(this.portalPos);
                 if (foundPortal == null) {
                     BlockNetherPortal.spawnPortal(this.portalPos);
-                    if (this.teleport(this.portalPos.add(1.5, 1, 0.5), TeleportCause.NETHER_PORTAL) && oldDimension == Level.DIMENSION_OVERWORLD) {
-                        this.awardAchievement("portal");
-                    }
+                    this.teleportThroughPortal(this.portalPos.add(1.5, 1, 0.5), TeleportCause.NETHER_PORTAL, oldDimension == Level.DIMENSION_OVERWORLD ? "portal" : null);
                 } else {
-                    if (this.teleport(BlockNetherPortal.getSafePortal(foundPortal), TeleportCause.NETHER_PORTAL) && oldDimension == Level.DIMENSION_OVERWORLD) {
-                        this.awardAchievement("portal");
-                    }
+                    this.teleportThroughPortal(BlockNetherPortal.getSafePortal(foundPortal), TeleportCause.NETHER_PORTAL, oldDimension == Level.DIMENSION_OVERWORLD ? "portal" : null);
                 }
                 this.portalPos = null;
             }
@@ -1918,7 +1922,7 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         double distanceSquared = newPos.distanceSquared(this);
         if (distanceSquared == 0) {
             if (this.lastYaw != this.yaw || this.lastPitch != this.pitch) {
-                if (!this.firstMove) {
+                if (!this.firstMove && this.server.getPluginManager().hasListeners(PlayerMoveEvent.class)) {
                     Location from = new Location(this.x, this.y, this.z, this.lastYaw, this.lastPitch, this.level);
                     Location to = this.getLocation();
 
@@ -2027,10 +2031,26 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         this.updateFallState(this.onGround);
         // Replacement for this.fastMove(dx, dy, dz) end
 
-        Location from = new Location(this.lastX, this.lastY, this.lastZ, this.lastYaw, this.lastPitch, this.level);
-        Location to = this.getLocation();
+        double fromX = this.lastX;
+        double fromY = this.lastY;
+        double fromZ = this.lastZ;
+        double toX = this.x;
+        double toY = this.y;
+        double toZ = this.z;
+
+        if (this.firstMove) {
+            this.lastX = this.x;
+            this.lastY = this.y;
+            this.lastZ = this.z;
+
+            this.lastYaw = this.yaw;
+            this.lastPitch = this.pitch;
+
+            this.firstMove = false;
+        } else if (this.server.getPluginManager().hasListeners(PlayerMoveEvent.class)) {
+            Location from = new Location(fromX, fromY, fromZ, this.lastYaw, this.lastPitch, this.level);
+            Location to = this.getLocation();
 
-        if (!this.firstMove) {
             PlayerMoveEvent moveEvent = new PlayerMoveEvent(this, from, to);
             this.server.getPluginManager().callEvent(moveEvent);
 
@@ -2055,18 +2075,22 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                 this.addMovement(this.x, this.y, this.z, this.yaw, this.pitch, this.yaw);
             }
         } else {
-            this.lastX = to.x;
-            this.lastY = to.y;
-            this.lastZ = to.z;
+            // Nothing listens, skip creating the event
+            this.lastX = this.x;
+            this.lastY = this.y;
+            this.lastZ = this.z;
 
-            this.lastYaw = to.yaw;
-            this.lastPitch = to.pitch;
+            this.lastYaw = this.yaw;
+            this.lastPitch = this.pitch;
 
-            this.firstMove = false;
+            this.blocksAround = null;
+            this.collisionBlocks = null;
+
+            this.addMovement(this.x, this.y, this.z, this.yaw, this.pitch, this.yaw);
         }
 
-        if (this.speed == null) speed = new Vector3(from.x - to.x, from.y - to.y, from.z - to.z);
-        else this.speed.setComponents(from.x - to.x, from.y - to.y, from.z - to.z);
+        if (this.speed == null) speed = new Vector3(fromX - toX, fromY - toY, fromZ - toZ);
+        else this.speed.setComponents(fromX - toX, fromY - toY, fromZ - toZ);
 
         if (this.riding == null && this.inventory != null) {
             if (this.isFoodEnabled() && this.getServer().getDifficulty() > 0) {
@@ -6091,6 +6115,8 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
             }
 
             this.chunk.addEntity(this);
+        } else {
+            this.chunk.updateEntitySection(this);
         }
     }
 
@@ -6123,6 +6149,21 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         return false;
     }
 
+    /**
+     * Teleport the player through a portal and award the achievement once the teleport was done. The teleport to the
+     * other level is deferred while levels are ticked in parallel, the achievement is awarded by the deferred task then.
+     */
+    private void teleportThroughPortal(Position pos, TeleportCause cause, String achievement) {
+        if (pos.level != null && pos.level != this.level && this.server.isTickingLevelsInParallel()) {
+            this.server.runCrossLevel(() -> this.teleportThroughPortal(pos, cause, achievement));
+            return;
+        }
+
+        if (this.teleport(pos, cause) && achievement != null) {
+            this.awardAchievement(achievement);
+        }
+    }
+
     protected void sendPlayStatus(int status) {
         PlayStatusPacket pk = new PlayStatusPacket();
         pk.status = status;
@@ -6135,6 +6176,16 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
             return false;
         }
 
+        if (this.level.isTickingRegions()) {
+            this.level.runAfterRegionTick(() -> this.teleport(location, cause));
+            return false;
+        }
+
+        if (location.level != null && location.level != this.level && this.server.isTickingLevelsInParallel()) {
+            this.server.runCrossLevel(() -> this.teleport(location, cause));
+            return false;
+        }
+
         Location to = location;
 
         if (cause != null) {
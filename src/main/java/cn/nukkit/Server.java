@@ -18,6 +18,7 @@ import cn.nukkit.entity.weather.EntityLightning;
 import cn.nukkit.event.HandlerList;
 import cn.nukkit.event.level.LevelInitEvent;
 import cn.nukkit.event.level.LevelLoadEvent;
+import cn.nukkit.event.server.DataPacketSendEvent;
 import cn.nukkit.event.server.PlayerDataSerializeEvent;
 import cn.nukkit.event.server.QueryRegenerateEvent;
 import cn.nukkit.event.server.ServerStopEvent;
@@ -30,12 +31,15 @@ import cn.nukkit.item.enchantment.Enchantment;
 import cn.nukkit.lang.BaseLang;
 import cn.nukkit.lang.TextContainer;
 import cn.nukkit.lang.TranslationContainer;
+import cn.nukkit.level.ChunkPacketCache;
+import cn.nukkit.level.ChunkSerializerPool;
 import cn.nukkit.level.EnumLevel;
 import cn.nukkit.level.GlobalBlockPalette;
 import cn.nukkit.level.Level;
 import cn.nukkit.level.biome.EnumBiome;
 import cn.nukkit.level.format.LevelProvider;
 import cn.nukkit.level.format.LevelProviderManager;
+import cn.nukkit.level.format.generic.Anvil2LevelDBConverter;
 import cn.nukkit.level.format.anvil.Anvil;
 import cn.nukkit.level.format.leveldb.LevelDBProvider;
 import cn.nukkit.level.generator.*;
@@ -54,6 +58,7 @@ import cn.nukkit.network.BatchingHelper;
 import cn.nukkit.network.Network;
 import cn.nukkit.network.RakNetInterface;
 import cn.nukkit.network.SourceInterface;
+import cn.nukkit.network.protocol.BatchPacket;
 import cn.nukkit.network.protocol.BiomeDefinitionListPacket;
 import cn.nukkit.network.protocol.DataPacket;
 import cn.nukkit.network.protocol.PlayerListPacket;
@@ -81,6 +86,7 @@ import cn.nukkit.utils.*;
 import cn.nukkit.utils.bugreport.ExceptionHandler;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.buffer.ByteBuf;
 import lombok.extern.log4j.Log4j2;
 import org.iq80.leveldb.CompressionType;
@@ -94,7 +100,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
@@ -195,6 +201,30 @@ public class Server {
     private final DB nameLookup;
     private PlayerDataSerializer playerDataSerializer;
     private final BatchingHelper batchingHelper;
+
+    private final ChunkSerializerPool chunkSerializerPool;
+
+    private final ChunkPacketCache chunkPacketCache;
+
+    /**
+     * Pool ticking levels in parallel, null when levels are ticked on the main thread
+     */
+    private final ExecutorService levelTickExecutor;
+    /**
+     * Cross-level operations requested while levels are ticked in parallel, run on the main thread once all levels are done
+     */
+    private final Queue<Runnable> levelHandoffQueue = new ConcurrentLinkedQueue<>();
+    private volatile boolean tickingLevelsInParallel;
+    /**
+     * Pool ticking independent regions of a level in parallel, null when disabled
+     */
+    private final ExecutorService regionTickExecutor;
+    private final int regionTickMargin;
+    /**
+     * Pool computing light updates off the level threads, null when light is updated synchronously
+     */
+    private final ExecutorService lightingExecutor;
+
     private final Set<String> ignoredPackets = new HashSet<>();
 
     /**
@@ -445,6 +475,56 @@ public class Server {
 
         this.batchingHelper = new BatchingHelper();
 
+        this.chunkSerializerPool = new ChunkSerializerPool(
+                this.getConfig("chunk-sending.serializer-threads", Runtime.getRuntime().availableProcessors()),
+                this.getConfig("chunk-sending.serializer-queue-size", 512));
+
+        int chunkCacheSize = this.getConfig("chunk-sending.cache-size-mb", 32);
+        this.chunkPacketCache = chunkCacheSize > 0 ? new ChunkPacketCache(chunkCacheSize * 1024L * 1024L) : null;
+
+        int levelTickThreads = this.getConfig("level-settings.parallel-tick-threads", 0);
+        if (levelTickThreads > 0) {
+            ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+            builder.setNameFormat("Level Tick #%d");
+            builder.setDaemon(true);
+            builder.setUncaughtExceptionHandler((thread, ex) -> {
+                Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex);
+            });
+            this.levelTickExecutor = Executors.newFixedThreadPool(levelTickThreads, builder.build());
+        } else {
+            this.levelTickExecutor = null;
+        }
+
+        int regionTickThreads = this.getConfig("level-settings.region-tick-threads", 0);
+        if (regionTickThreads > 0) {
+            ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+            builder.setNameFormat("Region Tick #%d");
+            builder.setDaemon(true);
+            builder.setUncaughtExceptionHandler((thread, ex) -> {
+                Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex);
+            });
+            this.regionTickExecutor = Executors.newFixedThreadPool(regionTickThreads, builder.build());
+        } else {
+            this.regionTickExecutor = null;
+        }
+        this.regionTickMargin = Math.max(1, this.getConfig("level-settings.region-margin", 4));
+        if (this.levelTickExecutor != null || this.regionTickExecutor != null) {
+            log.warn("Levels are ticked in parallel, plugin event listeners can be called from several threads at once");
+        }
+
+        int lightingThreads = this.getConfig("level-settings.lighting-threads", 0);
+        if (lightingThreads > 0) {
+            ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+            builder.setNameFormat("Lighting #%d");
+            builder.setDaemon(true);
+            builder.setUncaughtExceptionHandler((thread, ex) -> {
+                Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex);
+            });
+            this.lightingExecutor = Executors.newFixedThreadPool(lightingThreads, builder.build());
+        } else {
+            this.lightingExecutor = null;
+        }
+
         if (this.getPropertyBoolean("enable-rcon", false)) {
             try {
                 this.rcon = new RCON(this, this.getPropertyString("rcon.password", ""), (!this.getIp().isEmpty()) ? this.getIp() : "0.0.0.0", this.getPropertyInt("rcon.port", this.getPort()));
@@ -624,6 +704,15 @@ public class Server {
         // Initialize metrics
         new NukkitMetrics(this);
 
+        if (!Nukkit.CONVERT_LEVELS.isEmpty()) {
+            Anvil2LevelDBConverter.convertLevels(this, Nukkit.CONVERT_LEVELS).whenComplete((v, error) -> {
+                if (error != null) {
+                    this.getLogger().error("Level conversion failed", error);
+                }
+                this.shutdown();
+            });
+        }
+
         this.start();
     }
 
@@ -663,6 +752,12 @@ public class Server {
     }
 
     public int broadcast(String message, String permissions) {
+        if (this.tickingLevelsInParallel) {
+            // Permission subscriptions are not thread safe, send it after the level ticks
+            this.levelHandoffQueue.offer(() -> this.broadcast(message, permissions));
+            return 0;
+        }
+
         Set<CommandSender> recipients = new HashSet<>();
 
         for (String permission : permissions.split(";")) {
@@ -681,6 +776,12 @@ public class Server {
     }
 
     public int broadcast(TextContainer message, String permissions) {
+        if (this.tickingLevelsInParallel) {
+            // Permission subscriptions are not thread safe, send it after the level ticks
+            this.levelHandoffQueue.offer(() -> this.broadcast(message, permissions));
+            return 0;
+        }
+
         Set<CommandSender> recipients = new HashSet<>();
 
         for (String permission : permissions.split(";")) {
@@ -699,18 +800,52 @@ public class Server {
     }
 
     public static void broadcastPacket(Collection<Player> players, DataPacket packet) {
-        packet.tryEncode();
-
-        for (Player player : players) {
-            player.dataPacket(packet);
-        }
+        broadcastPackets(players.toArray(new Player[0]), new DataPacket[]{packet});
     }
 
     public static void broadcastPacket(Player[] players, DataPacket packet) {
-        packet.tryEncode();
+        broadcastPackets(players, new DataPacket[]{packet});
+    }
 
+    /**
+     * Broadcast packets to players.
+     * When nothing listens to DataPacketSendEvent and the packets are big enough to be compressed,
+     * they are encoded and compressed once for all players instead of once per player.
+     * Smaller packets are cheaper to append to each player's own batch.
+     *
+     * @param players players
+     * @param packets packets, sent in order
+     */
+    public static void broadcastPackets(Player[] players, DataPacket[] packets) {
+        int size = 0;
+        boolean shareable = players.length > 1 && !instance.pluginManager.hasListeners(DataPacketSendEvent.class);
+        for (DataPacket packet : packets) {
+            packet.tryEncode();
+            if (packet instanceof BatchPacket) {
+                shareable = false;
+            } else {
+                size += packet.getCount();
+            }
+        }
+
+        if (!shareable || size < instance.networkCompressionThreshold) {
+            for (Player player : players) {
+                for (DataPacket packet : packets) {
+                    player.dataPacket(packet);
+                }
+            }
+            return;
+        }
+
+        int connected = 0;
+        Player[] recipients = new Player[players.length];
         for (Player player : players) {
-            player.dataPacket(packet);
+            if (player.isConnected()) {
+                recipients[connected++] = player;
+            }
+        }
+        if (connected > 0) {
+            instance.batchingHelper.broadcastPackets(instance, connected == players.length ? recipients : Arrays.copyOf(recipients, connected), packets);
         }
     }
 
@@ -885,6 +1020,24 @@ public class Server {
             this.getLogger().debug("Closing BatchingHelper...");
             this.batchingHelper.shutdown();
 
+            this.getLogger().debug("Stopping chunk serializer...");
+            this.chunkSerializerPool.shutdown();
+
+            if (this.levelTickExecutor != null) {
+                this.getLogger().debug("Stopping level tick threads...");
+                this.levelTickExecutor.shutdownNow();
+            }
+
+            if (this.regionTickExecutor != null) {
+                this.getLogger().debug("Stopping region tick threads...");
+                this.regionTickExecutor.shutdownNow();
+            }
+
+            if (this.lightingExecutor != null) {
+                this.getLogger().debug("Stopping lighting threads...");
+                this.lightingExecutor.shutdownNow();
+            }
+
             this.getLogger().debug("Stopping network interfaces...");
             for (SourceInterface interfaz : this.network.getInterfaces()) {
                 interfaz.shutdown();
@@ -1104,40 +1257,118 @@ public class Server {
         }
 
         // Do level ticks
-        for (Level level : this.levelArray) {
-            if (level.isBeingConverted || (level.getTickRate() > this.baseTickRate && --level.tickRateCounter > 0)) {
-                continue;
+        if (this.levelTickExecutor == null) {
+            for (Level level : this.levelArray) {
+                if (this.shouldTickLevel(level)) {
+                    this.tickLevel(level, currentTick);
+                }
             }
+        } else {
+            this.tickLevelsInParallel(currentTick);
+        }
+    }
 
+    private boolean shouldTickLevel(Level level) {
+        return !level.isBeingConverted && (level.getTickRate() <= this.baseTickRate || --level.tickRateCounter <= 0);
+    }
+
+    /**
+     * Tick all levels on the level tick pool and wait for them. Players and network are handled on the main thread
+     * between level ticks, so levels never run concurrently with them, only with each other.
+     */
+    private void tickLevelsInParallel(int currentTick) {
+        List<Future<?>> ticks = new ArrayList<>(this.levelArray.length);
+        this.tickingLevelsInParallel = true;
+        try {
+            for (Level level : this.levelArray) {
+                if (this.shouldTickLevel(level)) {
+                    ticks.add(this.levelTickExecutor.submit(() -> this.tickLevel(level, currentTick)));
+                }
+            }
+
+            for (Future<?> tick : ticks) {
+                try {
+                    tick.get();
+                } catch (ExecutionException e) {
+                    log.error("Exception while ticking levels", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            this.tickingLevelsInParallel = false;
+        }
+
+        Runnable task;
+        while ((task = this.levelHandoffQueue.poll()) != null) {
             try {
-                long levelTime = System.currentTimeMillis();
-                level.doTick(currentTick);
-                int tickMs = (int) (System.currentTimeMillis() - levelTime);
-                level.tickRateTime = tickMs;
-
-                if (this.autoTickRate) {
-                    if (tickMs < 50 && level.getTickRate() > this.baseTickRate) {
-                        int r;
-                        level.setTickRate(r = level.getTickRate() - 1);
-                        if (r > this.baseTickRate) {
-                            level.tickRateCounter = level.getTickRate();
-                        }
-                        this.getLogger().debug("Raising level \"" + level.getName() + "\" tick rate to " + level.getTickRate() + " ticks");
-                    } else if (tickMs >= 50) {
-                        if (level.getTickRate() == this.baseTickRate) {
-                            level.setTickRate(Math.max(this.baseTickRate + 1, Math.min(this.autoTickRateLimit, tickMs / 50)));
-                            this.getLogger().debug("Level \"" + level.getName() + "\" took " + tickMs + "ms, setting tick rate to " + level.getTickRate() + " ticks");
-                        } else if ((tickMs / level.getTickRate()) >= 50 && level.getTickRate() < this.autoTickRateLimit) {
-                            level.setTickRate(level.getTickRate() + 1);
-                            this.getLogger().debug("Level \"" + level.getName() + "\" took " + tickMs + "ms, setting tick rate to " + level.getTickRate() + " ticks");
-                        }
+                task.run();
+            } catch (Exception e) {
+                log.error("Exception while running cross-level task", e);
+            }
+        }
+    }
+
+    private void tickLevel(Level level, int currentTick) {
+        try {
+            long levelTime = System.nanoTime();
+            level.doTick(currentTick);
+            long tickNanos = System.nanoTime() - levelTime;
+            level.addTickSample(levelTime, tickNanos);
+            int tickMs = (int) (tickNanos / 1000000);
+            level.tickRateTime = tickMs;
+
+            if (this.autoTickRate) {
+                if (tickMs < 50 && level.getTickRate() > this.baseTickRate) {
+                    int r;
+                    level.setTickRate(r = level.getTickRate() - 1);
+                    if (r > this.baseTickRate) {
                         level.tickRateCounter = level.getTickRate();
                     }
+                    this.getLogger().debug("Raising level \"" + level.getName() + "\" tick rate to " + level.getTickRate() + " ticks");
+                } else if (tickMs >= 50) {
+                    if (level.getTickRate() == this.baseTickRate) {
+                        level.setTickRate(Math.max(this.baseTickRate + 1, Math.min(this.autoTickRateLimit, tickMs / 50)));
+                        this.getLogger().debug("Level \"" + level.getName() + "\" took " + tickMs + "ms, setting tick rate to " + level.getTickRate() + " ticks");
+                    } else if ((tickMs / level.getTickRate()) >= 50 && level.getTickRate() < this.autoTickRateLimit) {
+                        level.setTickRate(level.getTickRate() + 1);
+                        this.getLogger().debug("Level \"" + level.getName() + "\" took " + tickMs + "ms, setting tick rate to " + level.getTickRate() + " ticks");
+                    }
+                    level.tickRateCounter = level.getTickRate();
                 }
-            } catch (Exception e) {
-                log.error(this.baseLang.translateString("nukkit.level.tickError", new String[]{level.getFolderName(), Utils.getExceptionMessage(e)}));
             }
+        } catch (Exception e) {
+            log.error(this.baseLang.translateString("nukkit.level.tickError", new String[]{level.getFolderName(), Utils.getExceptionMessage(e)}));
+        }
+    }
+
+    /**
+     * Whether levels are being ticked in parallel right now. Code running during a level tick must not touch other levels
+     * or server-wide state then, and should use {@link #runCrossLevel(Runnable)} instead. Plugin events of the level
+     * ticks are called from the level tick threads as well, see {@link PluginManager#callEvent(cn.nukkit.event.Event)}.
+     *
+     * @return true while the level tick threads are running
+     */
+    public boolean isTickingLevelsInParallel() {
+        return this.tickingLevelsInParallel;
+    }
+
+    /**
+     * Run an operation which touches more than one level or server-wide state, like a teleport to another level.
+     * While levels are ticked in parallel it is queued and run on the main thread after all levels finished their tick,
+     * otherwise it is run right away.
+     *
+     * @param task task
+     * @return true if the task was run right away, false if it was queued
+     */
+    public boolean runCrossLevel(Runnable task) {
+        if (this.tickingLevelsInParallel) {
+            this.levelHandoffQueue.offer(task);
+            return false;
         }
+        task.run();
+        return true;
     }
 
     public void doAutoSave() {
@@ -1199,6 +1430,7 @@ public class Server {
 
         if ((this.tickCounter & 0b1111) == 0) {
             this.titleTick();
+            this.pluginManager.updateEventRates();
 
             //this.network.resetStatistics(); // Unnecessary since addStatistics is not used in the new raknet
             this.maxTick = 20;
@@ -1516,6 +1748,46 @@ public class Server {
         return scheduler;
     }
 
+    /**
+     * Get the pool ticking regions of levels in parallel
+     *
+     * @return executor or null if region ticking is disabled
+     */
+    public ExecutorService getRegionTickExecutor() {
+        return regionTickExecutor;
+    }
+
+    /**
+     * Get the minimum distance in chunks between two regions of a level ticked in parallel
+     *
+     * @return margin in chunks
+     */
+    public int getRegionTickMargin() {
+        return regionTickMargin;
+    }
+
+    /**
+     * Get the pool computing light updates off the level threads
+     *
+     * @return executor or null if light is updated synchronously
+     */
+    public ExecutorService getLightingExecutor() {
+        return lightingExecutor;
+    }
+
+    public ChunkSerializerPool getChunkSerializerPool() {
+        return chunkSerializerPool;
+    }
+
+    /**
+     * Get the shared cache of compressed chunk packets
+     *
+     * @return chunk packet cache or null if disabled
+     */
+    public ChunkPacketCache getChunkPacketCache() {
+        return chunkPacketCache;
+    }
+
     /**
      * Get current tick
      *
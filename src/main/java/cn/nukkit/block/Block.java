@@ -227,6 +227,28 @@ public abstract class Block extends Position implements Metadatable, Cloneable,
         return block;
     }
 
+    /**
+     * Get the shared instance of a block state, for read-only queries like the id, data, properties, hardness or
+     * {@link #canRandomTick()}, without creating a block. For the collision shape see {@link BlockCollision}.
+     * <p>
+     * The instance is not positioned and is shared by all callers and threads, it must never be modified.
+     * Use {@link #get(int, Level, int, int, int)} for a located block that can be changed.
+     *
+     * @param fullId full block id
+     * @return shared block state
+     */
+    public static Block getState(int fullId) {
+        return fullList[fullId];
+    }
+
+    public static Block getState(int id, int data) {
+        if (id < 0) {
+            id = 255 - id;
+        }
+
+        return fullList[(id << DATA_BITS) | data];
+    }
+
     public static int getBlockLight(int blockId) {
         return light[blockId];
     }
@@ -302,6 +324,16 @@ public abstract class Block extends Position implements Metadatable, Cloneable,
         return 0;
     }
 
+    /**
+     * Whether a random update of this state can do anything, so random ticks of states that can't are skipped without
+     * creating a block. Only called on shared states, must not depend on the position.
+     *
+     * @return true if {@link #onUpdate(int)} with {@link Level#BLOCK_UPDATE_RANDOM} may have an effect
+     */
+    public boolean canRandomTick() {
+        return true;
+    }
+
     public boolean onActivate(Item item) {
         return this.onActivate(item, null);
     }
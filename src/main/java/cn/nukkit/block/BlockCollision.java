@@ -0,0 +1,166 @@
+package cn.nukkit.block;
+
+import cn.nukkit.math.AxisAlignedBB;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * Precomputed collision shapes of all block states, so collision checks can work on full block ids
+ * without creating block instances.
+ * <p>
+ * A state has no shape when its bounding box is always null, a box shape when its bounding box only depends on the state,
+ * and a complex shape when it depends on the surroundings (fences, stairs...) and a block instance is needed.
+ */
+public final class BlockCollision {
+
+    public static final byte SHAPE_NONE = 0;
+    public static final byte SHAPE_BOX = 1;
+    public static final byte SHAPE_COMPLEX = 2;
+
+    private static final Set<String> SHAPE_METHODS = new HashSet<>(Arrays.asList("getBoundingBox", "recalculateBoundingBox", "collidesWithBB"));
+    private static final Set<String> BOUNDS_METHODS = new HashSet<>(Arrays.asList("getMinX", "getMinY", "getMinZ", "getMaxX", "getMaxY", "getMaxZ"));
+
+    private static final int CLASS_PLAIN = 0;
+    private static final int CLASS_BOUNDS = 1;
+    private static final int CLASS_CUSTOM = 2;
+
+    private static final byte[] shapes;
+    private static final boolean[] passThrough;
+    /**
+     * Index of the box of each state in {@link #boxes}
+     */
+    private static final short[] boxIndex;
+    /**
+     * Distinct boxes relative to the block position, as minX, minY, minZ, maxX, maxY, maxZ
+     */
+    private static final double[][] boxes;
+
+    static {
+        int states = Block.fullList.length;
+        shapes = new byte[states];
+        passThrough = new boolean[states];
+        boxIndex = new short[states];
+
+        Map<Class<?>, Integer> classKinds = new IdentityHashMap<>();
+        List<double[]> boxList = new ArrayList<>();
+        Map<List<Double>, Short> boxLookup = new HashMap<>();
+
+        for (int fullId = 0; fullId < states; fullId++) {
+            Block state = Block.fullList[fullId];
+            if (state == null || state.getId() == Block.AIR) {
+                shapes[fullId] = SHAPE_NONE;
+                passThrough[fullId] = true;
+                continue;
+            }
+
+            Integer kind = classKinds.get(state.getClass());
+            if (kind == null) {
+                kind = classKind(state.getClass());
+                classKinds.put(state.getClass(), kind);
+            }
+
+            double[] box;
+            try {
+                passThrough[fullId] = state.canPassThrough();
+                if (kind == CLASS_PLAIN) {
+                    box = new double[]{0, 0, 0, 1, 1, 1};
+                } else {
+                    AxisAlignedBB origin = boundingBoxAt(state, 0, 0, 0);
+                    AxisAlignedBB moved = boundingBoxAt(state, 1024, 64, -1024);
+                    if (origin == null && moved == null) {
+                        shapes[fullId] = SHAPE_NONE;
+                        continue;
+                    }
+
+                    box = kind == CLASS_BOUNDS && origin != null && moved != null ? relativeBox(origin, moved) : null;
+                    if (box == null) {
+                        shapes[fullId] = SHAPE_COMPLEX;
+                        continue;
+                    }
+                }
+            } catch (Throwable t) {
+                // Needs the level, only a block instance can tell
+                shapes[fullId] = SHAPE_COMPLEX;
+                continue;
+            }
+
+            List<Double> key = Arrays.asList(box[0], box[1], box[2], box[3], box[4], box[5]);
+            Short index = boxLookup.get(key);
+            if (index == null) {
+                index = (short) boxList.size();
+                boxList.add(box);
+                boxLookup.put(key, index);
+            }
+            shapes[fullId] = SHAPE_BOX;
+            boxIndex[fullId] = index;
+        }
+
+        boxes = boxList.toArray(new double[0][]);
+    }
+
+    private BlockCollision() {
+    }
+
+    private static int classKind(Class<?> clazz) {
+        int kind = CLASS_PLAIN;
+        for (Class<?> c = clazz; c != null && c != Block.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (SHAPE_METHODS.contains(method.getName())) {
+                    return CLASS_CUSTOM;
+                }
+                if (BOUNDS_METHODS.contains(method.getName()) && method.getParameterCount() == 0) {
+                    kind = CLASS_BOUNDS;
+                }
+            }
+        }
+        return kind;
+    }
+
+    private static AxisAlignedBB boundingBoxAt(Block state, int x, int y, int z) {
+        Block block = state.clone();
+        block.x = x;
+        block.y = y;
+        block.z = z;
+        block.level = null;
+        AxisAlignedBB bb = block.getBoundingBox();
+        return bb == null ? null : bb.clone();
+    }
+
+    private static double[] relativeBox(AxisAlignedBB origin, AxisAlignedBB moved) {
+        double[] box = {origin.getMinX(), origin.getMinY(), origin.getMinZ(), origin.getMaxX(), origin.getMaxY(), origin.getMaxZ()};
+        if (moved.getMinX() - 1024 != box[0] || moved.getMinY() - 64 != box[1] || moved.getMinZ() + 1024 != box[2]
+                || moved.getMaxX() - 1024 != box[3] || moved.getMaxY() - 64 != box[4] || moved.getMaxZ() + 1024 != box[5]) {
+            return null;
+        }
+        return box;
+    }
+
+    public static byte getShape(int fullId) {
+        return shapes[fullId];
+    }
+
+    public static boolean canPassThrough(int fullId) {
+        return passThrough[fullId];
+    }
+
+    /**
+     * @param fullId full id of a state with {@link #SHAPE_BOX}
+     * @return box relative to the block position as minX, minY, minZ, maxX, maxY, maxZ, must not be modified
+     */
+    public static double[] getBox(int fullId) {
+        return boxes[boxIndex[fullId]];
+    }
+
+    /**
+     * Check whether the box of a state at the given position intersects the bounding box, same as {@link Block#collidesWithBB(AxisAlignedBB)}.
+     *
+     * @param fullId full id of a state with {@link #SHAPE_BOX}
+     */
+    public static boolean intersects(int fullId, int x, int y, int z, AxisAlignedBB bb) {
+        double[] box = boxes[boxIndex[fullId]];
+        return bb.getMaxY() > y + box[1] && bb.getMinY() < y + box[4]
+                && bb.getMaxX() > x + box[0] && bb.getMinX() < x + box[3]
+                && bb.getMaxZ() > z + box[2] && bb.getMinZ() < z + box[5];
+    }
+}
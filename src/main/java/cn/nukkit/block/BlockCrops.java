@@ -96,6 +96,11 @@ public abstract class BlockCrops extends BlockFlowable {
         return 0;
     }
 
+    @Override
+    public boolean canRandomTick() {
+        return this.getDamage() < 0x07;
+    }
+
     @Override
     public BlockColor getColor() {
         return BlockColor.FOLIAGE_BLOCK_COLOR;
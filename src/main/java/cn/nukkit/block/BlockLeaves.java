@@ -136,6 +136,11 @@ public class BlockLeaves extends BlockTransparentMeta {
         return 0;
     }
 
+    @Override
+    public boolean canRandomTick() {
+        return isCheckDecay() && !isPersistent();
+    }
+
     public boolean isCheckDecay() {
         return (this.getDamage() & 0x08) != 0;
     }
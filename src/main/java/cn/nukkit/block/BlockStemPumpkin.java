@@ -72,6 +72,12 @@ public class BlockStemPumpkin extends BlockCrops {
         return 0;
     }
 
+    @Override
+    public boolean canRandomTick() {
+        // Fully grown stems still grow their fruit
+        return true;
+    }
+
     @Override
     public Item toItem() {
         return Item.get(Item.PUMPKIN_SEEDS);
@@ -96,6 +96,11 @@ public class BlockWater extends BlockLiquid {
         return super.onUpdate(type);
     }
 
+    @Override
+    public boolean canRandomTick() {
+        return this.getDamage() == 0;
+    }
+
     @Override
     public boolean usesWaterLogging() {
         return level == null || !(level.getProvider() instanceof Anvil);
@@ -95,6 +95,16 @@ public abstract class BlockEntity extends Position {
 
     private PersistentDataContainer persistentContainer;
 
+    /**
+     * Get a new unique block entity id. Block entities can be created by several level tick threads at once, use this
+     * instead of incrementing {@link #count} directly.
+     *
+     * @return block entity id
+     */
+    public static synchronized long nextBlockEntityId() {
+        return count++;
+    }
+
     public BlockEntity(FullChunk chunk, CompoundTag nbt) {
         if (chunk == null || chunk.getProvider() == null) {
             throw new ChunkException("Invalid garbage chunk given to BlockEntity");
@@ -105,7 +115,7 @@ public abstract class BlockEntity extends Position {
         this.setLevel(chunk.getProvider().getLevel());
         this.namedTag = nbt;
         this.name = "";
-        this.id = BlockEntity.count++;
+        this.id = nextBlockEntityId();
         this.x = this.namedTag.getInt("x");
         this.y = this.namedTag.getInt("y");
         this.z = this.namedTag.getInt("z");
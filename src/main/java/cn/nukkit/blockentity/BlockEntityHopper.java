@@ -214,9 +214,7 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                         continue;
                     }
 
-                    InventoryMoveItemEvent ev = new InventoryMoveItemEvent(inv, this.inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                    this.server.getPluginManager().callEvent(ev);
-                    if (ev.isCancelled()) {
+                    if (this.isMoveCancelled(inv, this.inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                         continue;
                     }
 
@@ -256,10 +254,7 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                         continue;
                     }
 
-                    InventoryMoveItemEvent ev = new InventoryMoveItemEvent(this.inventory, holderInventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                    this.server.getPluginManager().callEvent(ev);
-
-                    if (ev.isCancelled()) {
+                    if (this.isMoveCancelled(this.inventory, holderInventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                         continue;
                     }
 
@@ -299,10 +294,7 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                     return false;
                 }
 
-                InventoryMoveItemEvent ev = new InventoryMoveItemEvent(inv, this.inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                this.server.getPluginManager().callEvent(ev);
-
-                if (ev.isCancelled()) {
+                if (this.isMoveCancelled(inv, this.inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                     return false;
                 }
 
@@ -328,10 +320,7 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                         continue;
                     }
 
-                    InventoryMoveItemEvent ev = new InventoryMoveItemEvent(inv, this.inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                    this.server.getPluginManager().callEvent(ev);
-
-                    if (ev.isCancelled()) {
+                    if (this.isMoveCancelled(inv, this.inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                         continue;
                     }
 
@@ -358,9 +347,7 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
             if (!this.inventory.canAddItem(itemToAdd)) {
                 return false;
             }
-            InventoryMoveItemEvent ev = new InventoryMoveItemEvent(null, this.inventory, this, item, InventoryMoveItemEvent.Action.PICKUP);
-            this.server.getPluginManager().callEvent(ev);
-            if (ev.isCancelled()) {
+            if (this.isMoveCancelled(null, this.inventory, item, InventoryMoveItemEvent.Action.PICKUP)) {
                 return false;
             }
             Item[] items = inventory.addItem(itemToAdd);
@@ -390,10 +377,7 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                 continue;
             }
 
-            InventoryMoveItemEvent ev = new InventoryMoveItemEvent(null, this.inventory, this, item, InventoryMoveItemEvent.Action.PICKUP);
-            this.server.getPluginManager().callEvent(ev);
-
-            if (ev.isCancelled()) {
+            if (this.isMoveCancelled(null, this.inventory, item, InventoryMoveItemEvent.Action.PICKUP)) {
                 continue;
             }
 
@@ -432,6 +416,20 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
         inventory.clearAll();
     }
 
+    /**
+     * Call InventoryMoveItemEvent unless nothing listens to it.
+     *
+     * @return whether the move was cancelled
+     */
+    private boolean isMoveCancelled(Inventory from, Inventory to, Item item, InventoryMoveItemEvent.Action action) {
+        if (!this.server.getPluginManager().hasListeners(InventoryMoveItemEvent.class)) {
+            return false;
+        }
+        InventoryMoveItemEvent ev = new InventoryMoveItemEvent(from, to, this, item, action);
+        this.server.getPluginManager().callEvent(ev);
+        return ev.isCancelled();
+    }
+
     public boolean pushItems() {
         int blockData = this.level.getBlockDataAt(this.chunk, (int) x, (int) y, (int) z, Block.LAYER_NORMAL);
         BlockEntity be = this.level.getBlockEntity(this.chunk, this.getSide(BlockFace.fromIndex(blockData)));
@@ -440,8 +438,6 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
             return false;
         }
 
-        InventoryMoveItemEvent event;
-
         if (be instanceof BlockEntityFurnace) {
             FurnaceInventory inventory = ((BlockEntityFurnace) be).getInventory();
             if (inventory.isFull()) {
@@ -459,19 +455,13 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                     if (blockData == 0) {
                         Item smelting = inventory.getSmelting();
                         if (smelting.isNull()) {
-                            event = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                            this.server.getPluginManager().callEvent(event);
-
-                            if (!event.isCancelled()) {
+                            if (!this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                                 inventory.setSmelting(itemToAdd);
                                 item.count--;
                                 pushedItem = true;
                             }
                         } else if (smelting.getId() == itemToAdd.getId() && smelting.getDamage() == itemToAdd.getDamage() && smelting.count < smelting.getMaxStackSize()) {
-                            event = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                            this.server.getPluginManager().callEvent(event);
-
-                            if (!event.isCancelled()) {
+                            if (!this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                                 smelting.count++;
                                 inventory.setSmelting(smelting);
                                 item.count--;
@@ -481,19 +471,13 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                     } else if (Fuel.duration.containsKey(itemToAdd.getId())) {
                         Item fuel = inventory.getFuel();
                         if (fuel.isNull()) {
-                            event = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                            this.server.getPluginManager().callEvent(event);
-
-                            if (!event.isCancelled()) {
+                            if (!this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                                 inventory.setFuel(itemToAdd);
                                 item.count--;
                                 pushedItem = true;
                             }
                         } else if (fuel.getId() == itemToAdd.getId() && fuel.getDamage() == itemToAdd.getDamage() && fuel.count < fuel.getMaxStackSize()) {
-                            event = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                            this.server.getPluginManager().callEvent(event);
-
-                            if (!event.isCancelled()) {
+                            if (!this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                                 fuel.count++;
                                 inventory.setFuel(fuel);
                                 item.count--;
@@ -533,18 +517,12 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
 
                         Item ingredient = inventory.getIngredient();
                         if (ingredient.isNull()) {
-                            event = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                            this.server.getPluginManager().callEvent(event);
-
-                            if (!event.isCancelled()) {
+                            if (!this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                                 inventory.setIngredient(itemToAdd);
                                 pushedItem = true;
                             }
                         } else if (ingredient.getId() == itemToAdd.getId() && ingredient.getDamage() == itemToAdd.getDamage() && ingredient.count < ingredient.getMaxStackSize()) {
-                            event = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                            this.server.getPluginManager().callEvent(event);
-
-                            if (!event.isCancelled()) {
+                            if (!this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                                 ingredient.count++;
                                 inventory.setIngredient(ingredient);
                                 pushedItem = true;
@@ -553,18 +531,12 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                     } else if (itemToAdd.getId() == Item.BLAZE_POWDER) { // Only blaze powder to fuel slot
                         Item fuel = inventory.getFuel();
                         if (fuel.isNull()) {
-                            event = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                            this.server.getPluginManager().callEvent(event);
-
-                            if (!event.isCancelled()) {
+                            if (!this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                                 inventory.setFuel(itemToAdd);
                                 pushedItem = true;
                             }
                         } else if (fuel.getId() == itemToAdd.getId() && fuel.getDamage() == itemToAdd.getDamage() && fuel.count < fuel.getMaxStackSize()) {
-                            event = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                            this.server.getPluginManager().callEvent(event);
-
-                            if (!event.isCancelled()) {
+                            if (!this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                                 fuel.count++;
                                 inventory.setFuel(fuel);
                                 pushedItem = true;
@@ -605,10 +577,7 @@ public class BlockEntityHopper extends BlockEntitySpawnable implements Inventory
                         continue;
                     }
 
-                    InventoryMoveItemEvent ev = new InventoryMoveItemEvent(this.inventory, inventory, this, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE);
-                    this.server.getPluginManager().callEvent(ev);
-
-                    if (ev.isCancelled()) {
+                    if (this.isMoveCancelled(this.inventory, inventory, itemToAdd, InventoryMoveItemEvent.Action.SLOT_CHANGE)) {
                         continue;
                     }
 
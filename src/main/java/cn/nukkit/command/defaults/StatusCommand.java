@@ -3,10 +3,16 @@ package cn.nukkit.command.defaults;
 import cn.nukkit.Nukkit;
 import cn.nukkit.Server;
 import cn.nukkit.command.CommandSender;
+import cn.nukkit.item.EncodedSlot;
+import cn.nukkit.level.ChunkPacketCache;
+import cn.nukkit.level.ChunkSerializerPool;
 import cn.nukkit.level.Level;
 import cn.nukkit.math.NukkitMath;
+import cn.nukkit.plugin.PluginManager;
+import cn.nukkit.plugin.RegisteredListener;
 import cn.nukkit.utils.TextFormat;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
@@ -79,6 +85,40 @@ public class StatusCommand extends VanillaCommand {
         sender.sendMessage(TextFormat.GOLD + "Available processors: " + TextFormat.GREEN + runtime.availableProcessors());
 
 
+        long slotHits = EncodedSlot.getHits();
+        long slotEncodes = slotHits + EncodedSlot.getMisses();
+        sender.sendMessage(TextFormat.GOLD + "Item slots: " + TextFormat.GREEN + slotEncodes + " written, " +
+                (slotEncodes == 0 ? 0 : NukkitMath.round(slotHits * 100D / slotEncodes, 1)) + "% from memoized encodings");
+
+        PluginManager pluginManager = server.getPluginManager();
+        sender.sendMessage(TextFormat.GOLD + "Events: " + TextFormat.GREEN + NukkitMath.round(pluginManager.getCalledEventsPerSecond(), 1) + "/s called, " +
+                NukkitMath.round(pluginManager.getSkippedEventsPerSecond(), 1) + "/s skipped without listeners");
+        List<RegisteredListener> slowestListeners = pluginManager.getListenersByTime();
+        for (RegisteredListener listener : slowestListeners.subList(0, Math.min(3, slowestListeners.size()))) {
+            if (listener.getInvocations() == 0) {
+                break;
+            }
+            sender.sendMessage(TextFormat.GOLD + "  " + listener.getPlugin().getName() + " " + listener.getListener().getClass().getSimpleName() +
+                    (listener.getEventClass() != null ? " (" + listener.getEventClass().getSimpleName() + ")" : "") + ": " + TextFormat.GREEN +
+                    NukkitMath.round(listener.getTimeNanos() / 1_000_000D, 2) + "ms total, " + listener.getInvocations() + " calls, " +
+                    NukkitMath.round(listener.getTimeNanos() / 1000D / listener.getInvocations(), 2) + "us avg");
+        }
+
+        ChunkSerializerPool chunkSerializer = server.getChunkSerializerPool();
+        sender.sendMessage(TextFormat.GOLD + "Chunk serializer: " + TextFormat.GREEN + chunkSerializer.getQueueLength() + "/" + chunkSerializer.getMaxQueueLength() + " queued, " +
+                NukkitMath.round(chunkSerializer.getAverageWaitTime(), 2) + "ms avg wait (" + NukkitMath.round(chunkSerializer.getMaxWaitTime(), 2) + "ms max), " +
+                NukkitMath.round(chunkSerializer.getAverageRunTime(), 2) + "ms avg serialize, " +
+                TextFormat.RED + chunkSerializer.getRejectedTasks() + TextFormat.GREEN + " rejected");
+
+        ChunkPacketCache chunkCache = server.getChunkPacketCache();
+        if (chunkCache != null) {
+            sender.sendMessage(TextFormat.GOLD + "Chunk cache: " + TextFormat.GREEN + chunkCache.size() + " chunks, " +
+                    NukkitMath.round(chunkCache.getBytes() / 1024D / 1024D, 2) + "/" + NukkitMath.round(chunkCache.getMaxBytes() / 1024D / 1024D, 2) + " MB, " +
+                    NukkitMath.round(chunkCache.getHitRatio() * 100, 2) + "% hits, " +
+                    TextFormat.RED + chunkCache.getEvictions() + TextFormat.GREEN + " evictions");
+        }
+
+
         int players = server.getOnlinePlayersCount();
 
         TextFormat playerColor = TextFormat.GREEN;
@@ -96,7 +136,12 @@ public class StatusCommand extends VanillaCommand {
                             TextFormat.RED + level.entities.size() + TextFormat.GREEN + " entities, " +
                             TextFormat.RED + level.getBlockEntities().size() + TextFormat.GREEN + " block entities." +
                             " Time " + ((level.getTickRate() > 1 || level.getTickRateTime() > 40) ? TextFormat.RED : TextFormat.YELLOW) + NukkitMath.round(level.getTickRateTime(), 2) + "ms" +
-                            (level.getTickRate() > 1 ? " (tick rate " + level.getTickRate() + ')' : "")
+                            TextFormat.GREEN + " (avg " + level.getTickTimeAverage() + "ms)" +
+                            " TPS " + (level.getTicksPerSecond() < 17 ? TextFormat.RED : TextFormat.YELLOW) + level.getTicksPerSecond() +
+                            (level.getTickRate() > 1 ? " (tick rate " + level.getTickRate() + ')' : "") +
+                            TextFormat.GREEN + " Movement " + NukkitMath.round(level.getEntityTracker().getAverageMovementUpdateSize(), 1) + " B/update," +
+                            " Random ticks " + level.getRandomTickedBlocks() + " run, " + level.getSkippedRandomTicks() + " skipped without a block," +
+                            " Collision " + level.getSkippedCollisionBlocks() + " blocks skipped"
             );
         }
 
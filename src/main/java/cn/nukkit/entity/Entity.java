@@ -331,6 +331,7 @@ public abstract class Entity extends Location implements Metadatable {
 
     private static final Map<String, Class<? extends Entity>> knownEntities = new HashMap<>();
     private static final Map<String, String> shortNames = new HashMap<>();
+    private static final ThreadLocal<AxisAlignedBBBuffer> COLLISION_BUFFER = ThreadLocal.withInitial(AxisAlignedBBBuffer::new);
 
     public final Map<Integer, Player> hasSpawned = new HashMap<>();
 
@@ -353,6 +354,11 @@ public abstract class Entity extends Location implements Metadatable {
 
     public FullChunk chunk;
 
+    /**
+     * Section of the chunk the entity is indexed in
+     */
+    public int chunkSectionY;
+
     protected EntityDamageEvent lastDamageCause;
 
     public List<Block> blocksAround = new ArrayList<>();
@@ -552,7 +558,7 @@ public abstract class Entity extends Location implements Metadatable {
 
         this.temporalVector = new Vector3();
 
-        this.id = entityCount++;
+        this.id = nextEntityId();
         this.justCreated = true;
         this.namedTag = nbt;
 
@@ -990,6 +996,16 @@ public abstract class Entity extends Location implements Metadatable {
         this.setDataProperty(new LongEntityData(Entity.DATA_VISIBLE_MOB_EFFECTS, effectsData));
     }
 
+    /**
+     * Get a new unique entity id. Entities can be created by several level tick threads at once, use this instead of
+     * incrementing {@link #entityCount} directly.
+     *
+     * @return entity id
+     */
+    public static synchronized long nextEntityId() {
+        return entityCount++;
+    }
+
     public static Entity createEntity(String name, Position pos, Object... args) {
         return createEntity(name, pos.getChunk(), getDefaultNBT(pos), args);
     }
@@ -1484,7 +1500,7 @@ public abstract class Entity extends Location implements Metadatable {
     }
 
     protected boolean checkObstruction(double x, double y, double z) {
-        if (this.noClip || this.level.getCollisionCubes(this, this.boundingBox, false).length == 0) {
+        if (this.noClip || !this.level.hasCollision(this, this.boundingBox, false)) {
             return false;
         }
 
@@ -1717,14 +1733,7 @@ public abstract class Entity extends Location implements Metadatable {
 
     public void addMotion(double motionX, double motionY, double motionZ) {
         if (this instanceof EntityItem) return; // Seems to be unnecessary
-        SetEntityMotionPacket pk = new SetEntityMotionPacket();
-        pk.eid = this.id;
-        pk.motionX = (float) motionX;
-        pk.motionY = (float) motionY;
-        pk.motionZ = (float) motionZ;
-        for (Player p : this.hasSpawned.values()) {
-            p.dataPacket(pk);
-        }
+        this.level.addEntityMotion(this, motionX, motionY, motionZ);
     }
 
     public Vector2 getDirectionPlane() {
@@ -1895,7 +1904,9 @@ public abstract class Entity extends Location implements Metadatable {
 
     public final void scheduleUpdate() {
         if (!this.closed && !this.level.isBeingConverted) {
-            this.level.updateEntities.put(this.id, this);
+            synchronized (this.level.updateEntities) {
+                this.level.updateEntities.put(this.id, this);
+            }
         }
     }
 
@@ -2226,24 +2237,25 @@ public abstract class Entity extends Location implements Metadatable {
 
             AxisAlignedBB axisalignedbb = this.boundingBox.clone();
 
-            AxisAlignedBB[] list = this.noClip ? new AxisAlignedBB[0] : this.level.getCollisionCubes(this, this.boundingBox.addCoord(dx, dy, dz), false);
+            AxisAlignedBBBuffer list = COLLISION_BUFFER.get();
+            this.level.getCollisionCubes(this, this.boundingBox.addCoord(dx, dy, dz), false, false, list);
 
-            for (AxisAlignedBB bb : list) {
-                dy = bb.calculateYOffset(this.boundingBox, dy);
+            for (int i = 0; i < list.size(); i++) {
+                dy = list.get(i).calculateYOffset(this.boundingBox, dy);
             }
 
             this.boundingBox.offset(0, dy, 0);
 
             boolean fallingFlag = (this.onGround || (dy != movY && movY < 0));
 
-            for (AxisAlignedBB bb : list) {
-                dx = bb.calculateXOffset(this.boundingBox, dx);
+            for (int i = 0; i < list.size(); i++) {
+                dx = list.get(i).calculateXOffset(this.boundingBox, dx);
             }
 
             this.boundingBox.offset(dx, 0, 0);
 
-            for (AxisAlignedBB bb : list) {
-                dz = bb.calculateZOffset(this.boundingBox, dz);
+            for (int i = 0; i < list.size(); i++) {
+                dz = list.get(i).calculateZOffset(this.boundingBox, dz);
             }
 
             this.boundingBox.offset(0, 0, dz);
@@ -2260,29 +2272,29 @@ public abstract class Entity extends Location implements Metadatable {
 
                 this.boundingBox.setBB(axisalignedbb);
 
-                list = this.level.getCollisionCubes(this, this.boundingBox.addCoord(dx, dy, dz), false);
+                this.level.getCollisionCubes(this, this.boundingBox.addCoord(dx, dy, dz), false, false, list);
 
-                for (AxisAlignedBB bb : list) {
-                    dy = bb.calculateYOffset(this.boundingBox, dy);
+                for (int i = 0; i < list.size(); i++) {
+                    dy = list.get(i).calculateYOffset(this.boundingBox, dy);
                 }
 
                 this.boundingBox.offset(0, dy, 0);
 
-                for (AxisAlignedBB bb : list) {
-                    dx = bb.calculateXOffset(this.boundingBox, dx);
+                for (int i = 0; i < list.size(); i++) {
+                    dx = list.get(i).calculateXOffset(this.boundingBox, dx);
                 }
 
                 this.boundingBox.offset(dx, 0, 0);
 
-                for (AxisAlignedBB bb : list) {
-                    dz = bb.calculateZOffset(this.boundingBox, dz);
+                for (int i = 0; i < list.size(); i++) {
+                    dz = list.get(i).calculateZOffset(this.boundingBox, dz);
                 }
 
                 this.boundingBox.offset(0, 0, dz);
 
                 double reverseDY = -dy;
-                for (AxisAlignedBB bb : list) {
-                    reverseDY = bb.calculateYOffset(this.boundingBox, reverseDY);
+                for (int i = 0; i < list.size(); i++) {
+                    reverseDY = list.get(i).calculateYOffset(this.boundingBox, reverseDY);
                 }
                 dy += reverseDY;
                 this.boundingBox.offset(0, reverseDY, 0);
@@ -2479,6 +2491,8 @@ public abstract class Entity extends Location implements Metadatable {
             }
 
             this.chunk.addEntity(this);
+        } else {
+            this.chunk.updateEntitySection(this);
         }
     }
 
@@ -2586,8 +2600,32 @@ public abstract class Entity extends Location implements Metadatable {
         return this.teleport(location, PlayerTeleportEvent.TeleportCause.PLUGIN);
     }
 
+    /**
+     * Teleport the entity.
+     * <p>
+     * While regions of the level are ticked in parallel the teleport can't be done right away, because the target may be
+     * in another region. It is then run once all regions finished and false is returned, as it may still be cancelled.
+     * The same applies to a teleport to another level while levels are ticked in parallel, it is run after all levels
+     * finished their tick.
+     *
+     * @param location target
+     * @param cause    cause of the teleport, null to fire no event
+     * @return true if the entity was teleported, false if it was cancelled or deferred
+     */
     public boolean teleport(Location location, PlayerTeleportEvent.TeleportCause cause) {
-        if (!this.server.isPrimaryThread()) {
+        if (this.level.isTickingRegions()) {
+            // The target can be in another region, wait until all regions finished their tick
+            this.level.runAfterRegionTick(() -> this.teleport(location, cause));
+            return false;
+        }
+
+        if (location.level != null && location.level != this.level && this.server.isTickingLevelsInParallel()) {
+            // Changing the level touches both levels, wait until all levels finished their tick
+            this.server.runCrossLevel(() -> this.teleport(location, cause));
+            return false;
+        }
+
+        if (!this.server.isPrimaryThread() && !this.server.isTickingLevelsInParallel()) {
             this.server.getLogger().warning("Entity teleported asynchronously: " + this.getClass().getSimpleName());
         }
 
@@ -2619,6 +2657,7 @@ public abstract class Entity extends Location implements Metadatable {
             this.resetFallDistance();
             this.onGround = !this.noClip;
 
+            this.level.getEntityTracker().teleported(this);
             this.updateMovement();
 
             return true;
@@ -199,20 +199,18 @@ public class EntityItem extends Entity {
             // updateMode % 3 or age % 20 basically means on every reduced update, don't use updateMode % 2 because that would include every update with default updateMode
             if (this.onGround && this.item != null && (this.updateMode % 3 == 1 || this.age % 20 == 0)) {
                 if (this.item.getCount() < this.item.getMaxStackSize()) {
-                    Entity[] e = this.getLevel().getNearbyEntities(getBoundingBox().grow(1, 1, 1), this);
-
-                    for (Entity entity : e) {
+                    this.getLevel().visitNearbyEntities(getBoundingBox().grow(1, 1, 1), this, false, entity -> {
                         if (entity instanceof EntityItem) {
                             if (entity.closed || !entity.isAlive() || !entity.isOnGround()) {
-                                continue;
+                                return true;
                             }
                             Item closeItem = ((EntityItem) entity).getItem();
                             if (!closeItem.equals(item, true, true)) {
-                                continue;
+                                return true;
                             }
                             int newAmount = this.item.getCount() + closeItem.getCount();
                             if (newAmount > this.item.getMaxStackSize()) {
-                                continue;
+                                return true;
                             }
                             closeItem.setCount(0);
                             entity.close();
@@ -223,10 +221,8 @@ public class EntityItem extends Entity {
                             packet.event = EntityEventPacket.MERGE_ITEMS;
                             Server.broadcastPacket(this.getViewers().values(), packet);
                         }
-                        if (this.item.getCount() >= this.item.getMaxStackSize()) {
-                            break;
-                        }
-                    }
+                        return this.item.getCount() < this.item.getMaxStackSize();
+                    });
                 }
             }
 
@@ -1,22 +1,23 @@
 package cn.nukkit.event;
 
+import cn.nukkit.plugin.EventDispatcher;
 import cn.nukkit.plugin.Plugin;
 import cn.nukkit.plugin.RegisteredListener;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by Nukkit Team.
  */
 public class HandlerList {
 
-    private volatile RegisteredListener[] handlers = null;
+    private volatile Baked baked = null;
 
     private final EnumMap<EventPriority, List<RegisteredListener>> handlerslots;
     private static final List<HandlerList> allLists = new ObjectArrayList<>();
-    private static final Map<Class<?>, HandlerList> eventHandlerLists = new Object2ObjectOpenHashMap<>();
+    private static final Map<Class<?>, HandlerList> eventHandlerLists = new ConcurrentHashMap<>();
 
     public static void bakeAll() {
         synchronized (allLists) {
@@ -33,7 +34,7 @@ public class HandlerList {
                     for (List<RegisteredListener> list : h.handlerslots.values()) {
                         list.clear();
                     }
-                    h.handlers = null;
+                    h.baked = null;
                 }
             }
         }
@@ -68,7 +69,7 @@ public class HandlerList {
     public synchronized void register(RegisteredListener listener) {
         if (handlerslots.get(listener.getPriority()).contains(listener))
             throw new IllegalStateException("This listener is already registered to priority " + listener.getPriority().toString());
-        handlers = null;
+        baked = null;
         handlerslots.get(listener.getPriority()).add(listener);
     }
 
@@ -80,7 +81,7 @@ public class HandlerList {
 
     public synchronized void unregister(RegisteredListener listener) {
         if (handlerslots.get(listener.getPriority()).remove(listener)) {
-            handlers = null;
+            baked = null;
         }
     }
 
@@ -94,7 +95,7 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) baked = null;
     }
 
     public synchronized void unregister(Listener listener) {
@@ -107,26 +108,48 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) baked = null;
     }
 
     public synchronized void bake() {
-        if (handlers != null) return; // don't re-bake when still valid
+        if (baked != null) return; // don't re-bake when still valid
         List<RegisteredListener> entries = new ObjectArrayList<>();
         for (Map.Entry<EventPriority, List<RegisteredListener>> entry : handlerslots.entrySet()) {
             entries.addAll(entry.getValue());
         }
-        handlers = entries.toArray(new RegisteredListener[0]);
+        baked = new Baked(entries.toArray(new RegisteredListener[0]));
     }
 
-    public RegisteredListener[] getRegisteredListeners() {
-        RegisteredListener[] handlers;
-        while ((handlers = this.handlers) == null) {
+    private Baked getBaked() {
+        Baked baked;
+        while ((baked = this.baked) == null) {
             bake();
         } // This prevents fringe cases of returning null
-        return handlers;
+        return baked;
     }
 
+    public RegisteredListener[] getRegisteredListeners() {
+        return getBaked().handlers;
+    }
+
+    /**
+     * Get the dispatcher calling the listeners which can receive an event class.
+     *
+     * @param eventClass class of the dispatched events
+     * @return dispatcher, valid until the listeners change
+     */
+    public EventDispatcher getDispatcher(Class<? extends Event> eventClass) {
+        Baked baked = getBaked();
+        EventDispatcher dispatcher = baked.dispatchers.get(eventClass);
+        if (dispatcher == null) {
+            dispatcher = EventDispatcher.create(eventClass, baked.handlers);
+            EventDispatcher previous = baked.dispatchers.putIfAbsent(eventClass, dispatcher);
+            if (previous != null) {
+                dispatcher = previous;
+            }
+        }
+        return dispatcher;
+    }
 
     public static ArrayList<RegisteredListener> getRegisteredListeners(Plugin plugin) {
         ArrayList<RegisteredListener> listeners = new ArrayList<>();
@@ -159,4 +182,27 @@ public class HandlerList {
     public static void putCachedHandlerList(Class<? extends Event> clazz, HandlerList handlerList) {
         eventHandlerLists.put(clazz, handlerList);
     }
+
+    /**
+     * Cache the handler list of an event class unless another one was cached already.
+     *
+     * @return cached handler list
+     */
+    public static HandlerList putCachedHandlerListIfAbsent(Class<? extends Event> clazz, HandlerList handlerList) {
+        HandlerList previous = eventHandlerLists.putIfAbsent(clazz, handlerList);
+        return previous != null ? previous : handlerList;
+    }
+
+    /**
+     * Listeners in priority order and the dispatchers built from them, replaced as a whole when the listeners change
+     */
+    private static class Baked {
+
+        private final RegisteredListener[] handlers;
+        private final Map<Class<? extends Event>, EventDispatcher> dispatchers = new ConcurrentHashMap<>();
+
+        private Baked(RegisteredListener[] handlers) {
+            this.handlers = handlers;
+        }
+    }
 }
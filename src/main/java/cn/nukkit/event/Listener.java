@@ -36,6 +36,10 @@ package cn.nukkit.event;
  * <p>
  * 关于处理器的优先级和处理器是否忽略被取消的事件，请看：{@link EventHandler}.<br>
  * For the priority of handler and whether the handler ignore cancelled events or not, See: {@link EventHandler}.
+ * <p>
+ * Handlers are called on the thread which called the event. With parallel level or region ticking enabled, that can be
+ * several level tick threads at once, so handlers of level events must be thread-safe then.
+ * See: {@link cn.nukkit.plugin.PluginManager#callEvent}.
  *
  * @author Unknown(code) @ Nukkit Project
  * @author 粉鞋大妈(javadoc) @ Nukkit Project
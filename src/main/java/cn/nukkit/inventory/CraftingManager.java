@@ -7,6 +7,8 @@ import cn.nukkit.network.protocol.DataPacket;
 import cn.nukkit.utils.*;
 import io.netty.util.collection.CharObjectHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
@@ -27,6 +29,11 @@ public class CraftingManager {
     public static DataPacket packet;
     protected final Map<Integer, Map<UUID, ShapedRecipe>> shapedRecipes = new Int2ObjectOpenHashMap<>();
     protected final Map<Integer, Map<UUID, ShapelessRecipe>> shapelessRecipes = new Int2ObjectOpenHashMap<>();
+    /**
+     * Shaped and shapeless recipes by {@link #getIndexKey(int, Collection)} of their result and ingredients
+     */
+    private final Long2ObjectMap<List<ShapedRecipe>> shapedRecipeIndex = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<List<ShapelessRecipe>> shapelessRecipeIndex = new Long2ObjectOpenHashMap<>();
 
     public final Map<UUID, MultiRecipe> multiRecipes = new HashMap<>();
     public final Map<Integer, FurnaceRecipe> furnaceRecipes = new Int2ObjectOpenHashMap<>();
@@ -53,6 +60,19 @@ public class CraftingManager {
     };
 
     public CraftingManager() {
+        this(loadCustomRecipes());
+
+        this.rebuildPacket();
+
+        MainLogger.getLogger().info("Successfully loaded " + this.recipes.size() + " recipes");
+    }
+
+    /**
+     * Load the recipes of recipes.json and the given custom recipes, without building the recipe packet.
+     *
+     * @param customRecipes custom recipes in the format of recipes.json, or null
+     */
+    CraftingManager(Config customRecipes) {
         InputStream recipesStream = Server.class.getClassLoader().getResourceAsStream("recipes.json");
         if (recipesStream == null) {
             throw new AssertionError("Unable to find recipes.json");
@@ -62,19 +82,21 @@ public class CraftingManager {
         recipesConfig.load(recipesStream);
         this.loadRecipes(recipesConfig);
 
-        String path = Server.getInstance().getDataPath() + "custom_recipes.json";
-        File filePath = new File(path);
-
-        if (filePath.exists()) {
-            Config customRecipes = new Config(filePath, Config.JSON);
+        if (customRecipes != null) {
             this.loadRecipes(customRecipes);
         }
 
         this.registerSmithingRecipes();
+    }
 
-        this.rebuildPacket();
+    private static Config loadCustomRecipes() {
+        String path = Server.getInstance().getDataPath() + "custom_recipes.json";
+        File filePath = new File(path);
 
-        MainLogger.getLogger().info("Successfully loaded " + this.recipes.size() + " recipes");
+        if (filePath.exists()) {
+            return new Config(filePath, Config.JSON);
+        }
+        return null;
     }
 
     private void registerSmithingRecipes() {
@@ -256,7 +278,7 @@ public class CraftingManager {
         return recipe;
     }
 
-    private static UUID getMultiItemHash(Collection<Item> items) {
+    static UUID getMultiItemHash(Collection<Item> items) {
         BinaryStream stream = new BinaryStream(new byte[5 * items.size()]).reset();
         for (Item item : items) {
             stream.putVarInt(getFullItemHash(item));
@@ -281,11 +303,50 @@ public class CraftingManager {
         return (id << 12) | (meta & 0xfff);
     }
 
+    /**
+     * Key of a crafting result and the ids of its ingredients. Damage and counts are left out, so wildcard ingredients
+     * and crafting several results at once have the same key as the recipe. Different ingredients may share a key,
+     * candidates are always checked with matchItems.
+     *
+     * @param resultHash item hash of the result
+     * @param items      ingredients or items taken from the crafting grid
+     * @return index key
+     */
+    static long getIndexKey(int resultHash, Collection<Item> items) {
+        int[] ids = new int[items.size()];
+        int count = 0;
+        for (Item item : items) {
+            if (!item.isNull()) {
+                ids[count++] = item.getId();
+            }
+        }
+        Arrays.sort(ids, 0, count);
+
+        int idsHash = 1;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                idsHash = 31 * idsHash + ids[i];
+            }
+        }
+        return ((long) resultHash << 32) | (idsHash & 0xffffffffL);
+    }
+
+    private static <T extends CraftingRecipe> void index(Long2ObjectMap<List<T>> index, T recipe, T replaced) {
+        int resultHash = getItemHash(recipe.getResult());
+        if (replaced != null) {
+            List<T> recipes = index.get(getIndexKey(getItemHash(replaced.getResult()), replaced.getIngredientsAggregate()));
+            if (recipes != null) {
+                recipes.remove(replaced);
+            }
+        }
+        index.computeIfAbsent(getIndexKey(resultHash, recipe.getIngredientsAggregate()), k -> new ArrayList<>(1)).add(recipe);
+    }
+
     public void registerShapedRecipe(ShapedRecipe recipe) {
         int resultHash = getItemHash(recipe.getResult());
         Map<UUID, ShapedRecipe> map = shapedRecipes.computeIfAbsent(resultHash, k -> new HashMap<>());
-        List<Item> inputList = new LinkedList<>(recipe.getIngredientsAggregate());
-        map.put(getMultiItemHash(inputList), recipe);
+        ShapedRecipe replaced = map.put(getMultiItemHash(recipe.getIngredientsAggregate()), recipe);
+        index(this.shapedRecipeIndex, recipe, replaced);
     }
 
     public void registerRecipe(Recipe recipe) {
@@ -307,7 +368,8 @@ public class CraftingManager {
         int resultHash = getItemHash(recipe.getResult());
         Map<UUID, ShapelessRecipe> map = shapelessRecipes.computeIfAbsent(resultHash, k -> new HashMap<>());
 
-        map.put(hash, recipe);
+        ShapelessRecipe replaced = map.put(hash, recipe);
+        index(this.shapelessRecipeIndex, recipe, replaced);
     }
 
     private static int getPotionHash(Item ingredient, Item potion) {
@@ -350,47 +412,20 @@ public class CraftingManager {
     public CraftingRecipe matchRecipe(List<Item> inputList, Item primaryOutput, List<Item> extraOutputList) {
         //TODO: try to match special recipes before anything else (first they need to be implemented!)
 
-        int outputHash = getItemHash(primaryOutput);
-        if (this.shapedRecipes.containsKey(outputHash)) {
-            inputList.sort(recipeComparator);
-
-            UUID inputHash = getMultiItemHash(inputList);
-
-            Map<UUID, ShapedRecipe> recipeMap = shapedRecipes.get(outputHash);
+        long key = getIndexKey(getItemHash(primaryOutput), inputList);
 
-            if (recipeMap != null) {
-                ShapedRecipe recipe = recipeMap.get(inputHash);
-
-                if (recipe != null && (recipe.matchItems(inputList, extraOutputList) || matchItemsAccumulation(recipe, inputList, primaryOutput, extraOutputList))) {
-                    return recipe;
-                }
-
-                for (ShapedRecipe shapedRecipe : recipeMap.values()) {
-                    if (shapedRecipe.matchItems(inputList, extraOutputList) || matchItemsAccumulation(shapedRecipe, inputList, primaryOutput, extraOutputList)) {
-                        return shapedRecipe;
-                    }
+        List<ShapedRecipe> shapedRecipes = this.shapedRecipeIndex.get(key);
+        if (shapedRecipes != null) {
+            for (ShapedRecipe shapedRecipe : shapedRecipes) {
+                if (shapedRecipe.matchItems(inputList, extraOutputList) || matchItemsAccumulation(shapedRecipe, inputList, primaryOutput, extraOutputList)) {
+                    return shapedRecipe;
                 }
             }
         }
 
-        if (shapelessRecipes.containsKey(outputHash)) {
-            inputList.sort(recipeComparator);
-
-            UUID inputHash = getMultiItemHash(inputList);
-
-            Map<UUID, ShapelessRecipe> recipes = shapelessRecipes.get(outputHash);
-
-            if (recipes == null) {
-                return null;
-            }
-
-            ShapelessRecipe recipe = recipes.get(inputHash);
-
-            if (recipe != null && (recipe.matchItems(inputList, extraOutputList) || matchItemsAccumulation(recipe, inputList, primaryOutput, extraOutputList))) {
-                return recipe;
-            }
-
-            for (ShapelessRecipe shapelessRecipe : recipes.values()) {
+        List<ShapelessRecipe> shapelessRecipes = this.shapelessRecipeIndex.get(key);
+        if (shapelessRecipes != null) {
+            for (ShapelessRecipe shapelessRecipe : shapelessRecipes) {
                 if (shapelessRecipe.matchItems(inputList, extraOutputList) || matchItemsAccumulation(shapelessRecipe, inputList, primaryOutput, extraOutputList)) {
                     return shapelessRecipe;
                 }
@@ -406,7 +441,7 @@ public class CraftingManager {
         return recipe;
     }
 
-    private boolean matchItemsAccumulation(CraftingRecipe recipe, List<Item> inputList, Item primaryOutput, List<Item> extraOutputList) {
+    boolean matchItemsAccumulation(CraftingRecipe recipe, List<Item> inputList, Item primaryOutput, List<Item> extraOutputList) {
         Item recipeResult = recipe.getResult();
         if (primaryOutput.equals(recipeResult, recipeResult.hasMeta(), recipeResult.hasCompoundTag()) && primaryOutput.getCount() % recipeResult.getCount() == 0) {
             int multiplier = primaryOutput.getCount() / recipeResult.getCount();
@@ -226,6 +226,9 @@ public class ShapedRecipe implements CraftingRecipe {
                 continue;
             haveInputs.add(item.clone());
         }
+        // Items are matched greedily in the order of the sorted ingredients, a wildcard ingredient must not take the
+        // item a specific one needs
+        haveInputs.sort(CraftingManager.recipeComparator);
         List<Item> needInputs = new ArrayList<>();
         if (multiplier != 1) {
             for (Item item : ingredientsAggregate) {
@@ -0,0 +1,199 @@
+package cn.nukkit.item;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.item.RuntimeItemMapping.RuntimeEntry;
+import cn.nukkit.level.GlobalBlockPalette;
+import cn.nukkit.nbt.NBTIO;
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.nbt.tag.StringTag;
+import cn.nukkit.network.LittleEndianByteBufOutputStream;
+import cn.nukkit.utils.BinaryStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Network form of an item stack without its count, memoized on the item so inventory and equipment packets don't resolve
+ * runtime ids and serialize the NBT again for every send.
+ * <p>
+ * Instances are immutable. The encoding is reused as long as the id, damage, block and tags of the item are the same,
+ * the count is written separately because it is a public field that changes without a setter.
+ */
+public final class EncodedSlot {
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private final int id;
+    private final int meta;
+    private final int blockFullId;
+    private final byte[] tags;
+    private final boolean instanceItem;
+
+    private final int runtimeId;
+    private final int damage;
+    private final int blockRuntimeId;
+    private final byte[] userData;
+
+    private EncodedSlot(Item item, boolean instanceItem) {
+        this.id = item.getId();
+        this.meta = item.getDamage();
+        Block block = item instanceof ItemBlock ? item.getBlockUnsafe() : null;
+        this.blockFullId = block == null ? -1 : block.getFullId();
+        this.tags = item.getCompoundTag();
+        this.instanceItem = instanceItem;
+
+        boolean isDurable = item instanceof ItemDurable;
+        RuntimeEntry runtimeEntry = RuntimeItems.getMapping().toRuntime(this.id, this.meta);
+        this.runtimeId = runtimeEntry.getRuntimeId();
+        this.damage = item instanceof ItemBlock || isDurable || runtimeEntry.isHasDamage() ? 0 : this.meta;
+        this.blockRuntimeId = block == null ? 0 : GlobalBlockPalette.getOrCreateRuntimeId(block.getId(), block.getDamage());
+        this.userData = encodeUserData(item, !instanceItem && isDurable && !runtimeEntry.isHasDamage());
+    }
+
+    /**
+     * Get the encoding of an item, reusing the one memoized on it when it is still valid.
+     *
+     * @param item         item, not air
+     * @param instanceItem whether the item is written as an item instance, without a stack network id
+     * @return encoding of the item
+     */
+    public static EncodedSlot of(Item item, boolean instanceItem) {
+        EncodedSlot encoded = item.encodedSlot;
+        if (encoded != null && encoded.matches(item, instanceItem)) {
+            hits.increment();
+            return encoded;
+        }
+
+        misses.increment();
+        encoded = new EncodedSlot(item, instanceItem);
+        item.encodedSlot = encoded;
+        return encoded;
+    }
+
+    private boolean matches(Item item, boolean instanceItem) {
+        if (this.instanceItem != instanceItem || this.id != item.getId() || this.meta != item.getDamage()) {
+            return false;
+        }
+
+        Block block = item instanceof ItemBlock ? item.getBlockUnsafe() : null;
+        if ((block == null ? -1 : block.getFullId()) != this.blockFullId) {
+            return false;
+        }
+
+        // Clones get a copy of the tags, so compare the contents when the array was replaced
+        byte[] tags = item.getCompoundTag();
+        return tags == this.tags || Arrays.equals(tags, this.tags);
+    }
+
+    /**
+     * Write the item as an item slot.
+     *
+     * @param stream stream to write to
+     * @param count  count of the stack
+     */
+    public void write(BinaryStream stream, int count) {
+        stream.putVarInt(this.runtimeId);
+        stream.putLShort(count);
+        stream.putUnsignedVarInt(this.damage);
+
+        if (!this.instanceItem) {
+            stream.putBoolean(true);
+            stream.putVarInt(1); // Item is present
+        }
+
+        stream.putVarInt(this.blockRuntimeId);
+        stream.putByteArray(this.userData);
+    }
+
+    private static byte[] encodeUserData(Item item, boolean writeDamage) {
+        ByteBuf userDataBuf = ByteBufAllocator.DEFAULT.ioBuffer();
+        try (LittleEndianByteBufOutputStream stream = new LittleEndianByteBufOutputStream(userDataBuf)) {
+            if (writeDamage) {
+                byte[] nbt = item.getCompoundTag();
+                CompoundTag tag;
+                if (nbt == null || nbt.length == 0) {
+                    tag = new CompoundTag();
+                } else {
+                    tag = NBTIO.read(nbt, ByteOrder.LITTLE_ENDIAN);
+                }
+                if (tag.contains("Damage")) {
+                    tag.put("__DamageConflict__", tag.removeAndGet("Damage"));
+                }
+                tag.putInt("Damage", item.getDamage());
+                stream.writeShort(-1);
+                stream.writeByte(1); // Hardcoded in current version
+                stream.write(NBTIO.write(tag, ByteOrder.LITTLE_ENDIAN));
+            } else if (item.hasCompoundTag()) {
+                stream.writeShort(-1);
+                stream.writeByte(1); // Hardcoded in current version
+                stream.write(item.getCompoundTag());
+            } else {
+                userDataBuf.writeShortLE(0);
+            }
+
+            List<String> canPlaceOn = extractStringList(item, "CanPlaceOn");
+            stream.writeInt(canPlaceOn.size());
+            for (String string : canPlaceOn) {
+                stream.writeUTF(string);
+            }
+
+            List<String> canDestroy = extractStringList(item, "CanDestroy");
+            stream.writeInt(canDestroy.size());
+            for (String string : canDestroy) {
+                stream.writeUTF(string);
+            }
+
+            if (item.getId() == ItemID.SHIELD) {
+                stream.writeLong(0);
+            }
+
+            byte[] bytes = new byte[userDataBuf.readableBytes()];
+            userDataBuf.readBytes(bytes);
+            return bytes;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write item user data", e);
+        } finally {
+            userDataBuf.release();
+        }
+    }
+
+    private static List<String> extractStringList(Item item, String tagName) {
+        CompoundTag namedTag = item.getNamedTag();
+        if (namedTag == null) {
+            return Collections.emptyList();
+        }
+
+        ListTag<StringTag> listTag = namedTag.getList(tagName, StringTag.class);
+        if (listTag == null) {
+            return Collections.emptyList();
+        }
+
+        int size = listTag.size();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringTag stringTag = listTag.get(i);
+            if (stringTag != null) {
+                values.add(stringTag.data);
+            }
+        }
+
+        return values;
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+}
@@ -47,6 +47,10 @@ public class Item implements Cloneable, BlockID, ItemID, ProtocolInfo {
     protected boolean hasMeta = true;
     private byte[] tags = new byte[0];
     private CompoundTag cachedNBT;
+    /**
+     * Network form of this item, reused by {@link cn.nukkit.utils.BinaryStream#putSlot(Item)} while it is valid
+     */
+    EncodedSlot encodedSlot;
     public int count;
     protected String name;
     protected static final String UNKNOWN_STR = "Unknown";
@@ -1,5 +1,7 @@
 package cn.nukkit.level;
 
+import cn.nukkit.network.protocol.BatchPacket;
+
 class AsyncChunkData {
 
     final long timestamp;
@@ -8,13 +10,17 @@ class AsyncChunkData {
     final long hash;
     final byte[] data;
     final int count;
+    final long version;
+    final BatchPacket packet;
 
-    AsyncChunkData(long timestamp, int x, int z, long hash, byte[] data, int count) {
+    AsyncChunkData(long timestamp, int x, int z, long hash, byte[] data, int count, long version, BatchPacket packet) {
         this.timestamp = timestamp;
         this.x = x;
         this.z = z;
         this.hash = hash;
         this.data = data;
         this.count = count;
+        this.version = version;
+        this.packet = packet;
     }
 }
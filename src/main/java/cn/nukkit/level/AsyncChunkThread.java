@@ -1,41 +1,59 @@
 package cn.nukkit.level;
 
+import cn.nukkit.Player;
 import cn.nukkit.level.format.generic.BaseChunk;
-import cn.nukkit.Server;
 import cn.nukkit.level.format.generic.serializer.NetworkChunkData;
 import cn.nukkit.level.format.generic.serializer.NetworkChunkSerializer;
 import cn.nukkit.utils.BinaryStream;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.BiConsumer;
 
+/**
+ * Per level view of the shared {@link ChunkSerializerPool}, collecting serialized chunks for the level tick.
+ */
 class AsyncChunkThread {
 
-    private final ExecutorService threadedExecutor;
+    private final ChunkSerializerPool pool;
+    private final boolean compress;
     final Queue<AsyncChunkData> out = new ConcurrentLinkedQueue<>();
 
-    AsyncChunkThread(String levelName) {
-        ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
-        builder.setNameFormat("AsyncChunkThread for " + levelName);
-        builder.setUncaughtExceptionHandler((thread, ex) -> Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex));
-        this.threadedExecutor = Executors.newSingleThreadExecutor(builder.build());
+    private volatile boolean closed;
+
+    /**
+     * @param pool shared serializer pool
+     * @param compress also build the compressed chunk packet on the worker
+     */
+    AsyncChunkThread(ChunkSerializerPool pool, boolean compress) {
+        this.pool = pool;
+        this.compress = compress;
+    }
+
+    boolean queue(BaseChunk chunk, long timestamp, int x, int z, DimensionData dimensionData, int owner) {
+        return this.pool.execute(owner, () -> this.run(chunk, timestamp, x, z, dimensionData));
     }
 
-    void queue(BaseChunk chunk, long timestamp, int x, int z, DimensionData dimensionData) {
-        this.threadedExecutor.execute(() -> this.run(chunk, timestamp, x, z, dimensionData));
+    boolean isSaturated() {
+        return this.pool.isSaturated();
     }
 
     private void run(BaseChunk chunk, long timestamp, int x, int z, DimensionData dimensionData) {
-        BiConsumer<BinaryStream, NetworkChunkData> callback = (stream, data) ->
-                this.out.add(new AsyncChunkData(timestamp, x, z, Level.chunkHash(x, z), stream.getBuffer(), data.getChunkSections()));
+        if (this.closed) {
+            return;
+        }
+
+        BiConsumer<BinaryStream, NetworkChunkData> callback = (stream, data) -> {
+            byte[] payload = stream.getBuffer();
+            int count = data.getChunkSections();
+            this.out.add(new AsyncChunkData(timestamp, x, z, Level.chunkHash(x, z), payload, count, chunk.getVersion(),
+                    this.compress ? Player.getChunkCacheFromData(x, z, count, payload, dimensionData.getDimensionId()) : null));
+        };
         NetworkChunkSerializer.serialize(chunk, callback, dimensionData);
     }
 
     void shutdown() {
-        this.threadedExecutor.shutdownNow();
+        this.closed = true;
+        this.out.clear();
     }
 }
@@ -0,0 +1,71 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.utils.Hash;
+
+/**
+ * Incremental block light updates of a level. Each changed block is set to the light it emits, removing light
+ * around it when it got darker and spreading it when it got brighter, then its neighbours spread into it again.
+ */
+public class BlockLightUpdater extends LightUpdater {
+
+    public BlockLightUpdater(Level level) {
+        super(level, false);
+    }
+
+    @Override
+    public void capture(long[] changed, LightSnapshot snapshot) {
+        // Light travels at most 15 blocks, so it never leaves the neighbouring sections
+        for (long hash : changed) {
+            int x = Hash.hashBlockX(hash);
+            int y = Hash.hashBlockY(hash);
+            int z = Hash.hashBlockZ(hash);
+            for (int cx = (x >> 4) - 1; cx <= (x >> 4) + 1; cx++) {
+                for (int cz = (z >> 4) - 1; cz <= (z >> 4) + 1; cz++) {
+                    BaseFullChunk chunk = this.level.getChunkIfLoaded(cx, cz);
+                    if (chunk == null) {
+                        continue;
+                    }
+                    for (int sy = (y >> 4) - 1; sy <= (y >> 4) + 1; sy++) {
+                        snapshot.capture(chunk, sy);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void prepare(long[] changed) {
+        for (long hash : changed) {
+            int x = Hash.hashBlockX(hash);
+            int y = Hash.hashBlockY(hash);
+            int z = Hash.hashBlockZ(hash);
+            if (!this.select(x, y, z)) {
+                continue;
+            }
+
+            int current = this.getLight(x, y, z);
+            int emission = this.getEmission(this.getBlockId(x, y, z));
+            if (current > emission) {
+                this.setLight(x, y, z, emission);
+                this.enqueueRemoval(x, y, z, current);
+                if (emission > 1) {
+                    this.enqueueSpread(x, y, z);
+                }
+            } else {
+                if (current < emission) {
+                    this.setLight(x, y, z, emission);
+                    this.enqueueSpread(x, y, z);
+                }
+                // The block may let light through now
+                this.enqueueNeighbours(x, y, z);
+            }
+        }
+    }
+
+    @Override
+    protected int getEmission(int blockId) {
+        return Block.getBlockLight(blockId);
+    }
+}
@@ -0,0 +1,152 @@
+package cn.nukkit.level;
+
+import cn.nukkit.network.protocol.BatchPacket;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Server-wide LRU cache of compressed chunk packets, bounded by the total payload size.
+ * Entries are stamped with {@link cn.nukkit.level.format.generic.BaseFullChunk#getVersion()}
+ * so a modified chunk never hits an outdated packet.
+ */
+public class ChunkPacketCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ChunkPacketCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized BatchPacket get(int levelId, int dimension, long chunkHash, long version) {
+        Key key = new Key(levelId, dimension, chunkHash);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+
+        if (entry.version != version) {
+            this.entries.remove(key);
+            this.bytes -= entry.packet.payload.length;
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+        return entry.packet;
+    }
+
+    public synchronized void put(int levelId, int dimension, long chunkHash, long version, BatchPacket packet) {
+        int size = packet.payload.length;
+        if (size > this.maxBytes) {
+            return;
+        }
+
+        Entry old = this.entries.put(new Key(levelId, dimension, chunkHash), new Entry(version, packet));
+        if (old != null) {
+            this.bytes -= old.packet.payload.length;
+        }
+        this.bytes += size;
+
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while (this.bytes > this.maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            this.bytes -= eldest.packet.payload.length;
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Remove all packets of a level, used when it is unloaded.
+     *
+     * @param levelId level id
+     */
+    public synchronized void invalidate(int levelId) {
+        Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            if (entry.getKey().levelId == levelId) {
+                iterator.remove();
+                this.bytes -= entry.getValue().packet.payload.length;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    public synchronized double getHitRatio() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0 : (double) this.hits / total;
+    }
+
+    private static class Key {
+
+        private final int levelId;
+        private final int dimension;
+        private final long chunkHash;
+
+        private Key(int levelId, int dimension, long chunkHash) {
+            this.levelId = levelId;
+            this.dimension = dimension;
+            this.chunkHash = chunkHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return this.levelId == key.levelId && this.dimension == key.dimension && this.chunkHash == key.chunkHash;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.levelId;
+            result = 31 * result + this.dimension;
+            result = 31 * result + Long.hashCode(this.chunkHash);
+            return result;
+        }
+    }
+
+    private static class Entry {
+
+        private final long version;
+        private final BatchPacket packet;
+
+        private Entry(long version, BatchPacket packet) {
+            this.version = version;
+            this.packet = packet;
+        }
+    }
+}
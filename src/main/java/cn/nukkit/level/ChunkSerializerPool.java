@@ -0,0 +1,181 @@
+package cn.nukkit.level;
+
+import cn.nukkit.Server;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared pool serializing chunks for network sending for all levels.
+ * Tasks are grouped into lanes by the loader which requested them and lanes are served round-robin,
+ * so a single player loading a lot of chunks does not delay chunks of other players.
+ */
+public class ChunkSerializerPool {
+
+    private final ForkJoinPool pool;
+    private final int maxQueued;
+
+    private final Int2ObjectMap<Lane> lanes = new Int2ObjectOpenHashMap<>();
+    private final Queue<Lane> readyLanes = new ArrayDeque<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ChunkSerializerPool(int threads, int maxQueued) {
+        this.maxQueued = Math.max(1, maxQueued);
+        this.pool = new ForkJoinPool(Math.max(1, threads), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Chunk Serializer #" + thread.getPoolIndex());
+            return thread;
+        }, (thread, ex) -> Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex), true);
+    }
+
+    /**
+     * Queue a serialization task.
+     *
+     * @param owner loader id of the requester, used for fairness between players
+     * @param task task
+     * @return false if the queue is full and the task was rejected
+     */
+    public boolean execute(int owner, Runnable task) {
+        if (this.queued.incrementAndGet() > this.maxQueued) {
+            this.queued.decrementAndGet();
+            this.rejected.increment();
+            return false;
+        }
+
+        QueuedTask queuedTask = new QueuedTask(task, System.nanoTime());
+        synchronized (this.lanes) {
+            Lane lane = this.lanes.get(owner);
+            if (lane == null) {
+                lane = new Lane(owner);
+                this.lanes.put(owner, lane);
+            }
+            if (lane.tasks.isEmpty()) {
+                this.readyLanes.add(lane);
+            }
+            lane.tasks.add(queuedTask);
+        }
+
+        this.pool.execute(this::runNext);
+        return true;
+    }
+
+    private void runNext() {
+        QueuedTask task;
+        synchronized (this.lanes) {
+            // Every queued task has exactly one runNext call, so there is always a ready lane here
+            Lane lane = this.readyLanes.poll();
+            task = lane.tasks.poll();
+            if (lane.tasks.isEmpty()) {
+                this.lanes.remove(lane.owner);
+            } else {
+                this.readyLanes.add(lane);
+            }
+        }
+
+        long start = System.nanoTime();
+        long wait = start - task.queuedAt;
+        this.waitNanos.add(wait);
+        this.maxWaitNanos.accumulateAndGet(wait, Math::max);
+        try {
+            task.task.run();
+        } finally {
+            this.runNanos.add(System.nanoTime() - start);
+            this.completed.increment();
+            this.queued.decrementAndGet();
+        }
+    }
+
+    public boolean isSaturated() {
+        return this.queued.get() >= this.maxQueued;
+    }
+
+    /**
+     * @return number of tasks waiting or running
+     */
+    public int getQueueLength() {
+        return this.queued.get();
+    }
+
+    public int getMaxQueueLength() {
+        return this.maxQueued;
+    }
+
+    public int getThreads() {
+        return this.pool.getParallelism();
+    }
+
+    public long getCompletedTasks() {
+        return this.completed.sum();
+    }
+
+    public long getRejectedTasks() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * @return average time in milliseconds a task waited in the queue
+     */
+    public double getAverageWaitTime() {
+        long completed = this.completed.sum();
+        return completed == 0 ? 0 : this.waitNanos.sum() / (double) completed / 1_000_000D;
+    }
+
+    /**
+     * @return maximum time in milliseconds a task waited in the queue
+     */
+    public double getMaxWaitTime() {
+        return this.maxWaitNanos.get() / 1_000_000D;
+    }
+
+    /**
+     * @return average time in milliseconds spent serializing a chunk
+     */
+    public double getAverageRunTime() {
+        long completed = this.completed.sum();
+        return completed == 0 ? 0 : this.runNanos.sum() / (double) completed / 1_000_000D;
+    }
+
+    public void shutdown() {
+        this.pool.shutdownNow();
+        try {
+            this.pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Lane {
+
+        private final int owner;
+        private final Queue<QueuedTask> tasks = new ArrayDeque<>();
+
+        private Lane(int owner) {
+            this.owner = owner;
+        }
+    }
+
+    private static class QueuedTask {
+
+        private final Runnable task;
+        private final long queuedAt;
+
+        private QueuedTask(Runnable task, long queuedAt) {
+            this.task = task;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package cn.nukkit.level;
+
+import cn.nukkit.Player;
+import cn.nukkit.Server;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.entity.mob.EntityMob;
+import cn.nukkit.entity.passive.EntityAnimal;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.MoveEntityAbsolutePacket;
+import cn.nukkit.network.protocol.MoveEntityDeltaPacket;
+import cn.nukkit.network.protocol.SetEntityMotionPacket;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends entity movement and motion updates of a level depending on the distance of the viewers.
+ * <p>
+ * Viewers within the tracking range of the entity type get every update. Viewers further away only get updates every
+ * few ticks, at a tick which depends on the entity id, so the load is spread. Updates skipped for distant viewers are
+ * remembered and the latest one is sent to them on the next such tick, so they never keep a stale position.
+ * A range of 0 sends every update to all viewers.
+ * <p>
+ * The last sent position of each entity is kept, so movement is sent as a delta containing only the changed
+ * coordinates and rotations. An absolute update is sent for the first movement, after a teleport, to viewers which
+ * missed updates and periodically to correct any drift.
+ */
+public class EntityTracker {
+
+    private static final double ROTATION_STEP = 360d / 256d;
+
+    private final Level level;
+    private final double playerRangeSquared;
+    private final double animalRangeSquared;
+    private final double monsterRangeSquared;
+    private final double miscRangeSquared;
+    private final int farUpdateInterval;
+    private final boolean deltaMovement;
+    private final int absoluteUpdateInterval;
+
+    private final Long2ObjectMap<TrackedEntity> trackedEntities = new Long2ObjectOpenHashMap<>();
+
+    private final LongAdder movementUpdates = new LongAdder();
+    private final LongAdder deltaUpdates = new LongAdder();
+    private final LongAdder movementBytes = new LongAdder();
+
+    public EntityTracker(Level level) {
+        this.level = level;
+        Server server = level.getServer();
+        this.playerRangeSquared = square(server.getConfig("entity-tracking.range.players", 0));
+        this.animalRangeSquared = square(server.getConfig("entity-tracking.range.animals", 48));
+        this.monsterRangeSquared = square(server.getConfig("entity-tracking.range.monsters", 48));
+        this.miscRangeSquared = square(server.getConfig("entity-tracking.range.misc", 32));
+        this.farUpdateInterval = Math.max(1, server.getConfig("entity-tracking.far-update-interval", 4));
+        this.deltaMovement = server.getConfig("entity-tracking.delta-movement", true);
+        this.absoluteUpdateInterval = Math.max(1, server.getConfig("entity-tracking.absolute-update-interval", 100));
+    }
+
+    private static double square(int range) {
+        return range <= 0 ? 0 : (double) range * range;
+    }
+
+    /**
+     * @return squared tracking range of the entity or 0 if all viewers get every update
+     */
+    public double getTrackingRangeSquared(Entity entity) {
+        if (entity instanceof Player) {
+            return this.playerRangeSquared;
+        } else if (entity instanceof EntityMob) {
+            return this.monsterRangeSquared;
+        } else if (entity instanceof EntityAnimal) {
+            return this.animalRangeSquared;
+        }
+        return this.miscRangeSquared;
+    }
+
+    private boolean isFarUpdateTick(Entity entity, int currentTick) {
+        return this.farUpdateInterval == 1 || (currentTick + entity.getId()) % this.farUpdateInterval == 0;
+    }
+
+    private TrackedEntity getTrackedEntity(Entity entity) {
+        synchronized (this.trackedEntities) {
+            return this.trackedEntities.computeIfAbsent(entity.getId(), id -> new TrackedEntity(entity));
+        }
+    }
+
+    /**
+     * Forget the last sent state of an entity, e.g. when it leaves the level.
+     */
+    public void removeEntity(Entity entity) {
+        synchronized (this.trackedEntities) {
+            this.trackedEntities.remove(entity.getId());
+        }
+    }
+
+    /**
+     * Send the next movement of an entity as an absolute teleport.
+     */
+    public void teleported(Entity entity) {
+        TrackedEntity tracked = this.getTrackedEntity(entity);
+        synchronized (tracked) {
+            tracked.teleported = true;
+        }
+    }
+
+    /**
+     * Send a movement update of an entity.
+     */
+    public void sendMovement(Entity entity, double x, double y, double z, double yaw, double pitch, double headYaw) {
+        int currentTick = this.level.getServer().getTick();
+        TrackedEntity tracked = this.getTrackedEntity(entity);
+        synchronized (tracked) {
+            float lastX = tracked.x;
+            float lastY = tracked.y;
+            float lastZ = tracked.z;
+            byte lastYaw = tracked.yaw;
+            byte lastPitch = tracked.pitch;
+            byte lastHeadYaw = tracked.headYaw;
+            boolean lastOnGround = tracked.onGround;
+
+            boolean absolute = !this.deltaMovement || !tracked.sent || tracked.teleported ||
+                    currentTick - tracked.lastAbsoluteTick >= this.absoluteUpdateInterval;
+            boolean teleport = tracked.teleported;
+
+            tracked.x = (float) x;
+            tracked.y = (float) y;
+            tracked.z = (float) z;
+            tracked.yaw = (byte) (yaw / ROTATION_STEP);
+            tracked.pitch = (byte) (pitch / ROTATION_STEP);
+            tracked.headYaw = (byte) (headYaw / ROTATION_STEP);
+            tracked.onGround = entity.onGround;
+            tracked.sent = true;
+            tracked.teleported = false;
+
+            DataPacket packet;
+            if (absolute) {
+                tracked.lastAbsoluteTick = currentTick;
+                packet = tracked.createAbsolutePacket(teleport);
+            } else {
+                int flags = 0;
+                if (tracked.x != lastX) flags |= MoveEntityDeltaPacket.FLAG_HAS_X;
+                if (tracked.y != lastY) flags |= MoveEntityDeltaPacket.FLAG_HAS_Y;
+                if (tracked.z != lastZ) flags |= MoveEntityDeltaPacket.FLAG_HAS_Z;
+                if (tracked.pitch != lastPitch) flags |= MoveEntityDeltaPacket.FLAG_HAS_PITCH;
+                if (tracked.yaw != lastYaw) flags |= MoveEntityDeltaPacket.FLAG_HAS_YAW;
+                if (tracked.headYaw != lastHeadYaw) flags |= MoveEntityDeltaPacket.FLAG_HAS_HEAD_YAW;
+                if (flags == 0 && tracked.onGround == lastOnGround) {
+                    // Nothing changed after rounding, viewers which missed updates are caught up later
+                    return;
+                }
+                if (tracked.onGround) flags |= MoveEntityDeltaPacket.FLAG_ON_GROUND;
+
+                MoveEntityDeltaPacket pk = new MoveEntityDeltaPacket();
+                pk.eid = entity.getId();
+                pk.flags = flags;
+                pk.x = tracked.x;
+                pk.y = tracked.y;
+                pk.z = tracked.z;
+                pk.pitchDelta = pitch;
+                pk.yawDelta = yaw;
+                pk.headYawDelta = headYaw;
+                packet = pk;
+            }
+
+            List<Player> recipients = this.selectRecipients(entity, tracked.staleMovement, currentTick);
+            if (recipients.isEmpty()) {
+                return;
+            }
+
+            // Viewers which missed updates can't apply a delta
+            List<Player> catchingUp = null;
+            if (!absolute && !tracked.staleMovement.isEmpty()) {
+                for (int i = recipients.size() - 1; i >= 0; i--) {
+                    Player viewer = recipients.get(i);
+                    if (tracked.staleMovement.remove(viewer.getLoaderId())) {
+                        if (catchingUp == null) {
+                            catchingUp = new ArrayList<>();
+                        }
+                        catchingUp.add(viewer);
+                        recipients.remove(i);
+                    }
+                }
+            } else {
+                for (Player viewer : recipients) {
+                    tracked.staleMovement.remove(viewer.getLoaderId());
+                }
+            }
+
+            if (!recipients.isEmpty()) {
+                this.broadcastMovement(recipients, packet);
+            }
+            if (catchingUp != null) {
+                this.broadcastMovement(catchingUp, tracked.createAbsolutePacket(false));
+            }
+        }
+    }
+
+    /**
+     * Send a motion update of an entity.
+     */
+    public void sendMotion(Entity entity, SetEntityMotionPacket packet) {
+        int currentTick = this.level.getServer().getTick();
+        TrackedEntity tracked = this.getTrackedEntity(entity);
+        synchronized (tracked) {
+            tracked.motion = packet;
+            List<Player> recipients = this.selectRecipients(entity, tracked.staleMotion, currentTick);
+            for (Player viewer : recipients) {
+                tracked.staleMotion.remove(viewer.getLoaderId());
+            }
+            if (!recipients.isEmpty()) {
+                Server.broadcastPacket(recipients, packet);
+            }
+        }
+    }
+
+    /**
+     * Select the viewers which get an update now and remember the others as stale.
+     */
+    private List<Player> selectRecipients(Entity entity, IntSet stale, int currentTick) {
+        Collection<Player> viewers = entity.getViewers().values();
+        double rangeSquared = this.getTrackingRangeSquared(entity);
+        if (rangeSquared <= 0 || this.isFarUpdateTick(entity, currentTick)) {
+            return new ArrayList<>(viewers);
+        }
+
+        List<Player> near = new ArrayList<>(viewers.size());
+        for (Player viewer : viewers) {
+            if (viewer.distanceSquared(entity) <= rangeSquared) {
+                near.add(viewer);
+            } else {
+                stale.add(viewer.getLoaderId());
+            }
+        }
+        return near;
+    }
+
+    private void broadcastMovement(List<Player> players, DataPacket packet) {
+        packet.tryEncode();
+        this.movementUpdates.add(players.size());
+        this.movementBytes.add((long) packet.getCount() * players.size());
+        if (packet instanceof MoveEntityDeltaPacket) {
+            this.deltaUpdates.add(players.size());
+        }
+        Server.broadcastPacket(players, packet);
+    }
+
+    /**
+     * Send the skipped updates to the viewers which missed them, for entities whose turn it is. Called once per tick.
+     */
+    public void sendPendingUpdates(int currentTick) {
+        List<TrackedEntity> due = new ArrayList<>();
+        synchronized (this.trackedEntities) {
+            if (this.trackedEntities.isEmpty()) {
+                return;
+            }
+            this.trackedEntities.values().removeIf(tracked -> tracked.entity.closed);
+            for (TrackedEntity tracked : this.trackedEntities.values()) {
+                if (this.isFarUpdateTick(tracked.entity, currentTick)) {
+                    due.add(tracked);
+                }
+            }
+        }
+
+        for (TrackedEntity tracked : due) {
+            synchronized (tracked) {
+                if (tracked.staleMovement.isEmpty() && tracked.staleMotion.isEmpty()) {
+                    continue;
+                }
+
+                List<Player> movementViewers = new ArrayList<>();
+                List<Player> motionViewers = new ArrayList<>();
+                for (Player viewer : tracked.entity.getViewers().values()) {
+                    if (tracked.staleMovement.contains(viewer.getLoaderId())) {
+                        movementViewers.add(viewer);
+                    }
+                    if (tracked.staleMotion.contains(viewer.getLoaderId())) {
+                        motionViewers.add(viewer);
+                    }
+                }
+                tracked.staleMovement.clear();
+                tracked.staleMotion.clear();
+
+                if (tracked.sent && !movementViewers.isEmpty()) {
+                    this.broadcastMovement(movementViewers, tracked.createAbsolutePacket(false));
+                }
+                if (tracked.motion != null && !motionViewers.isEmpty()) {
+                    Server.broadcastPacket(motionViewers, tracked.motion);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of movement updates sent to players
+     */
+    public long getMovementUpdates() {
+        return this.movementUpdates.sum();
+    }
+
+    /**
+     * @return number of movement updates sent to players as a delta
+     */
+    public long getDeltaMovementUpdates() {
+        return this.deltaUpdates.sum();
+    }
+
+    /**
+     * @return uncompressed size of all movement updates sent to players in bytes
+     */
+    public long getMovementBytes() {
+        return this.movementBytes.sum();
+    }
+
+    /**
+     * @return average uncompressed size of a movement update in bytes
+     */
+    public double getAverageMovementUpdateSize() {
+        long updates = this.movementUpdates.sum();
+        return updates == 0 ? 0 : this.movementBytes.sum() / (double) updates;
+    }
+
+    private static class TrackedEntity {
+
+        private final Entity entity;
+
+        /**
+         * Last sent movement, rounded like on the network
+         */
+        private boolean sent;
+        private float x;
+        private float y;
+        private float z;
+        private byte yaw;
+        private byte pitch;
+        private byte headYaw;
+        private boolean onGround;
+        private int lastAbsoluteTick;
+        private boolean teleported;
+
+        private SetEntityMotionPacket motion;
+
+        /**
+         * Loader ids of the viewers which missed updates
+         */
+        private final IntSet staleMovement = new IntOpenHashSet();
+        private final IntSet staleMotion = new IntOpenHashSet();
+
+        private TrackedEntity(Entity entity) {
+            this.entity = entity;
+        }
+
+        private MoveEntityAbsolutePacket createAbsolutePacket(boolean teleport) {
+            MoveEntityAbsolutePacket pk = new MoveEntityAbsolutePacket();
+            pk.eid = this.entity.getId();
+            pk.x = this.x;
+            pk.y = this.y;
+            pk.z = this.z;
+            pk.yaw = this.yaw * ROTATION_STEP;
+            pk.headYaw = this.headYaw * ROTATION_STEP;
+            pk.pitch = this.pitch * ROTATION_STEP;
+            pk.onGround = this.onGround;
+            pk.teleport = teleport;
+            return pk;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package cn.nukkit.level;
+
+import cn.nukkit.entity.Entity;
+
+/**
+ * Callback for entity queries which don't collect the entities into an array.
+ */
+@FunctionalInterface
+public interface EntityVisitor {
+
+    /**
+     * @param entity found entity
+     * @return false to stop the query
+     */
+    boolean visit(Entity entity);
+}
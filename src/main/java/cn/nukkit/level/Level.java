@@ -67,6 +67,7 @@ import javax.annotation.Nullable;
 import java.lang.ref.SoftReference;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
@@ -212,12 +213,33 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     private final Int2ObjectOpenHashMap<Object> changeBlocksFullMap = new Int2ObjectOpenHashMap<>();
 
     private final BlockUpdateScheduler updateQueue;
+    private final EntityTracker entityTracker;
+
+    /**
+     * Random ticks that created a located block, and the ones skipped on the shared state without creating one
+     */
+    private final LongAdder randomTickedBlocks = new LongAdder();
+    private final LongAdder skippedRandomTicks = new LongAdder();
+    /**
+     * Complex collision shapes that could pass through, answered on the shared state without creating a block
+     */
+    private final LongAdder skippedCollisionBlocks = new LongAdder();
+
+    private static final ThreadLocal<AxisAlignedBBBuffer> COLLISION_BUFFER = ThreadLocal.withInitial(AxisAlignedBBBuffer::new);
     private final Queue<Block> normalUpdateQueue = new ConcurrentLinkedDeque<>();
-    private final Map<Long, Set<Integer>> lightQueue = new ConcurrentHashMap<>(8, 0.9f, 1);
+    private final BlockLightUpdater blockLightUpdater = new BlockLightUpdater(this);
+    private final SkyLightUpdater skyLightUpdater = new SkyLightUpdater(this);
+    /**
+     * Light update running on the lighting pool, null if there is none
+     */
+    private CompletableFuture<LightSnapshot> lightingJob;
 
     private final ConcurrentMap<Long, Int2ObjectMap<Player>> chunkSendQueue = new ConcurrentHashMap<>();
     private final LongSet chunkSendTasks = new LongOpenHashSet();
 
+    private final Long2ObjectMap<CompletableFuture<BaseFullChunk>> chunkLoadFutures = new Long2ObjectOpenHashMap<>();
+    private final Queue<Runnable> asyncChunkLoads = new ConcurrentLinkedQueue<>();
+
     private final LongOpenHashSet chunkPopulationQueue = new LongOpenHashSet();
     private final LongOpenHashSet chunkPopulationLock = new LongOpenHashSet();
     private final LongOpenHashSet chunkGenerationQueue = new LongOpenHashSet();
@@ -248,6 +270,17 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     public int tickRateCounter;
     private long levelCurrentTick;
 
+    private volatile boolean tickingRegions;
+    private final Queue<Runnable> regionHandoffQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Recent tick samples, written only by the thread ticking the level and read without locking.
+     * The sample count is published after the sample, readers may see a sample overwritten while they read.
+     */
+    private final long[] tickStarts = new long[20];
+    private final long[] tickDurations = new long[20];
+    private volatile long tickSamples;
+
     private boolean raining;
     private int rainTime;
     private boolean thundering;
@@ -330,6 +363,7 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
 
         this.levelCurrentTick = this.provider.getCurrentTick();
         this.updateQueue = new BlockUpdateScheduler(this, levelCurrentTick);
+        this.entityTracker = new EntityTracker(this);
 
         this.chunkTickRadius = Math.min(this.server.getViewDistance(), Math.max(1, this.server.getConfig("chunk-ticking.tick-radius", 3)));
         this.chunksPerTicks = this.server.getConfig("chunk-ticking.per-tick", 40);
@@ -339,7 +373,7 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
 
         this.skyLightSubtracted = this.calculateSkylightSubtracted(1);
 
-        this.asyncChunkThread = new AsyncChunkThread(name);
+        this.asyncChunkThread = new AsyncChunkThread(server.getChunkSerializerPool(), server.getChunkPacketCache() != null || server.cacheChunks);
     }
 
     public static long chunkHash(int x, int z) {
@@ -413,6 +447,59 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         this.tickRate = tickRate;
     }
 
+    /**
+     * Record a finished tick for the tick time and TPS statistics of this level.
+     *
+     * @param startNanos {@link System#nanoTime()} when the tick started
+     * @param durationNanos time the tick took in nanoseconds
+     */
+    public void addTickSample(long startNanos, long durationNanos) {
+        long samples = this.tickSamples;
+        int index = (int) (samples % this.tickStarts.length);
+        this.tickStarts[index] = startNanos;
+        this.tickDurations[index] = durationNanos;
+        this.tickSamples = samples + 1;
+    }
+
+    /**
+     * Get average time of the recent ticks of this level
+     *
+     * @return average tick time in milliseconds
+     */
+    public float getTickTimeAverage() {
+        int count = (int) Math.min(this.tickSamples, this.tickDurations.length);
+        if (count == 0) {
+            return 0;
+        }
+
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += this.tickDurations[i];
+        }
+        return (float) NukkitMath.round(sum / (double) count / 1000000D, 2);
+    }
+
+    /**
+     * Get how many times per second this level was ticked recently, lower than the server TPS when the level is slow
+     * or its tick rate was raised
+     *
+     * @return TPS of this level
+     */
+    public float getTicksPerSecond() {
+        long samples = this.tickSamples;
+        int length = this.tickStarts.length;
+        int count = (int) Math.min(samples, length);
+        if (count < 2) {
+            return 20;
+        }
+
+        int newest = (int) ((samples - 1) % length);
+        int oldest = (int) ((samples - count) % length);
+        long elapsed = this.tickStarts[newest] - this.tickStarts[oldest];
+        float tps = (float) Math.min(20, (count - 1) * 1000000000D / Math.max(1, elapsed));
+        return (float) NukkitMath.round(tps, 2);
+    }
+
     public void initLevel() {
         Generator generator = generators.get();
         this.dimensionData = generator.getDimensionData();
@@ -449,6 +536,10 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
             this.asyncChunkThread.shutdown();
         }
 
+        if (this.server.getChunkPacketCache() != null) {
+            this.server.getChunkPacketCache().invalidate(this.levelId);
+        }
+
         this.saveLevelData();
         this.provider.close(); // Also saves chunks on unload
         this.provider = null;
@@ -781,13 +872,72 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         return gameRules;
     }
 
+    private void updateLight() {
+        ExecutorService executor = this.server.getLightingExecutor();
+        if (executor == null) {
+            this.blockLightUpdater.update();
+            this.skyLightUpdater.update();
+            return;
+        }
+
+        if (this.lightingJob != null) {
+            if (!this.lightingJob.isDone()) {
+                // Blocks changed meanwhile stay queued for the next job
+                return;
+            }
+
+            try {
+                this.lightingJob.join().publish(this);
+            } catch (CompletionException e) {
+                this.server.getLogger().error("Light update of level " + this.getName() + " failed", e.getCause());
+            }
+            this.lightingJob = null;
+        }
+
+        long[] blocks = this.blockLightUpdater.drain();
+        long[] sky = this.skyLightUpdater.drain();
+        if (blocks == null && sky == null) {
+            return;
+        }
+
+        LightSnapshot snapshot = new LightSnapshot(this);
+        if (blocks != null) {
+            this.blockLightUpdater.capture(blocks, snapshot);
+        }
+        if (sky != null) {
+            this.skyLightUpdater.capture(sky, snapshot);
+        }
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        this.lightingJob = CompletableFuture.supplyAsync(() -> {
+            if (blocks != null) {
+                this.blockLightUpdater.update(blocks, snapshot);
+            }
+            if (sky != null) {
+                this.skyLightUpdater.update(sky, snapshot);
+            }
+            return snapshot;
+        }, executor);
+    }
+
     public void doTick(int currentTick) {
         AsyncChunkData data;
         while ((data = this.asyncChunkThread.out.poll()) != null) {
-            this.chunkRequestCallback(data.timestamp, data.x, data.z, data.count, data.data, data.hash);
+            if (data.packet != null) {
+                this.chunkPacketCallback(data.timestamp, data.version, data.x, data.z, data.hash, data.packet);
+            } else {
+                this.chunkRequestCallback(data.timestamp, data.x, data.z, data.count, data.data, data.hash);
+            }
+        }
+
+        Runnable chunkLoad;
+        while ((chunkLoad = this.asyncChunkLoads.poll()) != null) {
+            chunkLoad.run();
         }
 
-        this.updateBlockLight(this.lightQueue);
+        this.updateLight();
         this.checkTime();
 
         if (currentTick % 6000 == 0) { // Keep the time in sync
@@ -849,22 +999,30 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         }
 
 
-        if (!this.updateEntities.isEmpty()) {
-            for (long id : new ArrayList<>(this.updateEntities.keySet())) {
-                Entity entity = this.updateEntities.get(id);
-                if (entity == null) {
-                    this.updateEntities.remove(id);
-                    continue;
-                }
-                if (entity.closed || !entity.onUpdate(currentTick)) {
-                    this.updateEntities.remove(id);
+        List<FullChunk> tickedChunks = this.selectTickedChunks();
+        ExecutorService regionExecutor = this.server.getRegionTickExecutor();
+        if (regionExecutor == null || !this.tickRegions(currentTick, tickedChunks, regionExecutor)) {
+            if (!this.updateEntities.isEmpty()) {
+                for (long id : new ArrayList<>(this.updateEntities.keySet())) {
+                    Entity entity = this.updateEntities.get(id);
+                    if (entity == null) {
+                        this.updateEntities.remove(id);
+                        continue;
+                    }
+                    if (entity.closed || !entity.onUpdate(currentTick)) {
+                        this.updateEntities.remove(id);
+                    }
                 }
             }
-        }
 
-        this.updateBlockEntities.removeIf(blockEntity -> !blockEntity.isValid() || !blockEntity.onUpdate());
+            this.updateBlockEntities.removeIf(blockEntity -> !blockEntity.isValid() || !blockEntity.onUpdate());
 
-        this.tickChunks();
+            for (FullChunk chunk : tickedChunks) {
+                this.tickChunk(chunk);
+            }
+        }
+
+        this.entityTracker.sendPendingUpdates(currentTick);
 
         synchronized (changedBlocks) {
             if (!this.changedBlocks.isEmpty()) {
@@ -912,10 +1070,8 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
                 int chunkZ = Level.getHashZ(index);
                 Map<Integer, Player> map = this.getChunkPlayers(chunkX, chunkZ);
                 if (!map.isEmpty()) {
-                    Player[] chunkPlayers = map.values().toArray(new Player[0]);
-                    for (DataPacket pk : this.chunkPackets.get(index)) {
-                        Server.broadcastPacket(chunkPlayers, pk);
-                    }
+                    Deque<DataPacket> packets = this.chunkPackets.get(index);
+                    Server.broadcastPackets(map.values().toArray(new Player[0]), packets.toArray(new DataPacket[0]));
                 }
             }
             this.chunkPackets.clear();
@@ -1127,10 +1283,15 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         }
     }
 
-    private void tickChunks() {
+    /**
+     * Pick the chunks around the loaders which get random ticks this tick.
+     *
+     * @return chunks to tick
+     */
+    private List<FullChunk> selectTickedChunks() {
         if (this.chunksPerTicks <= 0 || this.loaders.isEmpty()) {
             this.chunkTickList.clear();
-            return;
+            return Collections.emptyList();
         }
 
         int chunksPerLoader = Math.min(200, Math.max(1, (int) (((double) (this.chunksPerTicks - this.loaders.size()) / this.loaders.size() + 0.5))));
@@ -1154,8 +1315,7 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
             }
         }
 
-        int blockTest = 0;
-
+        List<FullChunk> chunks = new ArrayList<>(this.chunkTickList.size());
         if (!chunkTickList.isEmpty()) {
             ObjectIterator<Long2IntMap.Entry> iter = chunkTickList.long2IntEntrySet().iterator();
             while (iter.hasNext()) {
@@ -1179,61 +1339,254 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
                     iter.remove();
                 }
 
-                for (Entity entity : chunk.getEntities().values()) {
-                    if (entity.updateMode < 1 || (entity.updateMode % 3 == 2 && server.getTick() - entity.lastUpdate > 300)) { // Force an update every 15 seconds to check age for despawning
-                        if (entity.updateMode % 2 == 1) {
-                            entity.updateMode = 1;
-                        }
-                        entity.scheduleUpdate();
-                    }
+                chunks.add(chunk);
+            }
+        }
+
+        if (this.clearChunksOnTick) {
+            this.chunkTickList.clear();
+        }
+        return chunks;
+    }
+
+    private void tickChunk(FullChunk chunk) {
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
+
+        for (Entity entity : chunk.getEntities().values()) {
+            if (entity.updateMode < 1 || (entity.updateMode % 3 == 2 && server.getTick() - entity.lastUpdate > 300)) { // Force an update every 15 seconds to check age for despawning
+                if (entity.updateMode % 2 == 1) {
+                    entity.updateMode = 1;
                 }
+                entity.scheduleUpdate();
+            }
+        }
+
+        if (this.useSections) {
+            for (ChunkSection section : ((Chunk) chunk).getSections()) {
+                if (!(section instanceof EmptyChunkSection)) {
+                    int Y = section.getY();
+                    for (int i = 0; i < gameRules.getInteger(GameRule.RANDOM_TICK_SPEED); ++i) {
+                        int n = ThreadLocalRandom.current().nextInt();
+                        int x = n & 0xF;
+                        int z = n >> 8 & 0xF;
+                        int y = n >> 16 & 0xF;
 
-                if (this.useSections) {
-                    for (ChunkSection section : ((Chunk) chunk).getSections()) {
-                        if (!(section instanceof EmptyChunkSection)) {
-                            int Y = section.getY();
-                            for (int i = 0; i < gameRules.getInteger(GameRule.RANDOM_TICK_SPEED); ++i) {
-                                int n = ThreadLocalRandom.current().nextInt();
-                                int x = n & 0xF;
-                                int z = n >> 8 & 0xF;
-                                int y = n >> 16 & 0xF;
-
-                                int fullId = section.getFullBlock(x, y, z);
-                                int blockId = fullId >> Block.DATA_BITS;
-                                if (blockId < randomTickBlocks.length && randomTickBlocks[blockId]) {
-                                    Block block = Block.get(fullId, this, (chunkX << 4) + x, (Y << 4) + y, (chunkZ << 4) + z);
-                                    block.onUpdate(BLOCK_UPDATE_RANDOM);
-                                }
+                        int fullId = section.getFullBlock(x, y, z);
+                        int blockId = fullId >> Block.DATA_BITS;
+                        if (blockId < randomTickBlocks.length && randomTickBlocks[blockId]) {
+                            if (!Block.getState(fullId).canRandomTick()) {
+                                this.skippedRandomTicks.increment();
+                                continue;
                             }
+                            this.randomTickedBlocks.increment();
+                            Block block = Block.get(fullId, this, (chunkX << 4) + x, (Y << 4) + y, (chunkZ << 4) + z);
+                            block.onUpdate(BLOCK_UPDATE_RANDOM);
                         }
                     }
-                } else {
-                    for (int Y = 0; Y < 8 && (Y < 3 || blockTest != 0); ++Y) {
-                        blockTest = 0;
-                        for (int i = 0; i < gameRules.getInteger(GameRule.RANDOM_TICK_SPEED); ++i) {
-                            int n = ThreadLocalRandom.current().nextInt();
-                            int x = n & 0xF;
-                            int z = n >> 8 & 0xF;
-                            int y = n >> 16 & 0xF;
-
-                            int fullId = chunk.getFullBlock(x, y + (Y << 4), z);
-                            int blockId = fullId >> Block.DATA_BITS;
-                            blockTest |= fullId;
-                            if (blockId < randomTickBlocks.length && randomTickBlocks[blockId]) {
-                                Block block = Block.get(fullId, this, x, y + (Y << 4), z);
-                                block.onUpdate(BLOCK_UPDATE_RANDOM);
-                            }
+                }
+            }
+        } else {
+            int blockTest = 0;
+            for (int Y = 0; Y < 8 && (Y < 3 || blockTest != 0); ++Y) {
+                blockTest = 0;
+                for (int i = 0; i < gameRules.getInteger(GameRule.RANDOM_TICK_SPEED); ++i) {
+                    int n = ThreadLocalRandom.current().nextInt();
+                    int x = n & 0xF;
+                    int z = n >> 8 & 0xF;
+                    int y = n >> 16 & 0xF;
+
+                    int fullId = chunk.getFullBlock(x, y + (Y << 4), z);
+                    int blockId = fullId >> Block.DATA_BITS;
+                    blockTest |= fullId;
+                    if (blockId < randomTickBlocks.length && randomTickBlocks[blockId]) {
+                        if (!Block.getState(fullId).canRandomTick()) {
+                            this.skippedRandomTicks.increment();
+                            continue;
                         }
+                        this.randomTickedBlocks.increment();
+                        Block block = Block.get(fullId, this, (chunkX << 4) + x, y + (Y << 4), (chunkZ << 4) + z);
+                        block.onUpdate(BLOCK_UPDATE_RANDOM);
                     }
                 }
             }
         }
+    }
 
-        if (this.clearChunksOnTick) {
-            this.chunkTickList.clear();
+    /**
+     * Tick entities, block entities and random ticks of independent regions of the level in parallel.
+     * Chunks with work are grouped by {@link TickRegions}, the calling thread ticks the first region and waits for the others.
+     *
+     * @return false if everything is in one region and nothing was ticked, the caller should tick normally then
+     */
+    private boolean tickRegions(int currentTick, List<FullChunk> tickedChunks, ExecutorService executor) {
+        LongSet active = new LongOpenHashSet();
+        List<Entity> entities = new ArrayList<>(this.updateEntities.size());
+        ObjectIterator<Long2ObjectMap.Entry<Entity>> iter = this.updateEntities.long2ObjectEntrySet().fastIterator();
+        while (iter.hasNext()) {
+            Entity entity = iter.next().getValue();
+            if (entity == null) {
+                iter.remove();
+                continue;
+            }
+            entities.add(entity);
+            active.add(chunkHash(entity.getChunkX(), entity.getChunkZ()));
+        }
+        List<BlockEntity> blockEntities = new ArrayList<>(this.updateBlockEntities);
+        for (BlockEntity blockEntity : blockEntities) {
+            active.add(chunkHash(blockEntity.getChunkX(), blockEntity.getChunkZ()));
+        }
+        for (FullChunk chunk : tickedChunks) {
+            active.add(chunkHash(chunk.getX(), chunk.getZ()));
+        }
+
+        long[] chunks = active.toLongArray();
+        int[] regionOf = new int[chunks.length];
+        int count = TickRegions.partition(chunks, this.server.getRegionTickMargin(), regionOf);
+        if (count <= 1) {
+            return false;
+        }
+
+        Long2IntMap regionIndex = new Long2IntOpenHashMap(chunks.length);
+        for (int i = 0; i < chunks.length; i++) {
+            regionIndex.put(chunks[i], regionOf[i]);
+        }
+        RegionTick[] regions = new RegionTick[count];
+        for (int i = 0; i < count; i++) {
+            regions[i] = new RegionTick();
+        }
+        List<Player> players = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (entity instanceof Player) {
+                // Players reach outside of their region (sessions, inventories, level changes), tick them afterwards
+                players.add((Player) entity);
+                continue;
+            }
+            regions[regionIndex.get(chunkHash(entity.getChunkX(), entity.getChunkZ()))].entities.add(entity);
+        }
+        for (BlockEntity blockEntity : blockEntities) {
+            regions[regionIndex.get(chunkHash(blockEntity.getChunkX(), blockEntity.getChunkZ()))].blockEntities.add(blockEntity);
+        }
+        for (FullChunk chunk : tickedChunks) {
+            regions[regionIndex.get(chunkHash(chunk.getX(), chunk.getZ()))].chunks.add(chunk);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(count - 1);
+        this.tickingRegions = true;
+        try {
+            for (int i = 1; i < count; i++) {
+                RegionTick region = regions[i];
+                futures.add(executor.submit(() -> this.tickRegion(region, currentTick)));
+            }
+            this.tickRegion(regions[0], currentTick);
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    this.server.getLogger().error("Exception while ticking a region of level " + this.getFolderName(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            this.tickingRegions = false;
+        }
+
+        for (RegionTick region : regions) {
+            synchronized (this.updateEntities) {
+                for (Entity entity : region.finishedEntities) {
+                    this.updateEntities.remove(entity.getId());
+                }
+            }
+            this.updateBlockEntities.removeAll(region.finishedBlockEntities);
+        }
+
+        for (Player player : players) {
+            if (player.closed || !player.onUpdate(currentTick)) {
+                synchronized (this.updateEntities) {
+                    this.updateEntities.remove(player.getId());
+                }
+            }
+        }
+
+        Runnable task;
+        while ((task = this.regionHandoffQueue.poll()) != null) {
+            task.run();
+        }
+        return true;
+    }
+
+    /**
+     * Tick the entities, block entities and chunks of a region.
+     * <p>
+     * Region tasks are not serialized against each other, they are only kept apart by distance: chunks of two regions are
+     * more than the region margin apart on one axis at least. A task may therefore read and change blocks, entities and
+     * block entities up to half the margin in chunks around its own chunks, and nothing further away. Block writes hold
+     * the level monitor, but block reads don't lock and only see a consistent chunk section, so a read followed by a
+     * write of the same block is safe only because no other region reaches it.
+     * <p>
+     * The level-wide state a task reaches synchronizes itself: the entity, block entity and player maps, the block update
+     * scheduler and the changed blocks. Players are not ticked here and teleports are deferred,
+     * see {@link #runAfterRegionTick(Runnable)}. Plugin events called from here run on the region threads,
+     * see {@link cn.nukkit.plugin.PluginManager#callEvent(cn.nukkit.event.Event)}.
+     */
+    private void tickRegion(RegionTick region, int currentTick) {
+        for (Entity entity : region.entities) {
+            if (entity.closed || !entity.onUpdate(currentTick)) {
+                region.finishedEntities.add(entity);
+            }
+        }
+
+        for (BlockEntity blockEntity : region.blockEntities) {
+            if (!blockEntity.isValid() || !blockEntity.onUpdate()) {
+                region.finishedBlockEntities.add(blockEntity);
+            }
+        }
+
+        for (FullChunk chunk : region.chunks) {
+            this.tickChunk(chunk);
         }
     }
 
+    /**
+     * Whether regions of this level are being ticked in parallel right now. Code called from a region tick may then only
+     * touch blocks and entities near the chunk it runs for, anything else has to go through
+     * {@link #runAfterRegionTick(Runnable)}.
+     *
+     * @return true while region ticks are running
+     */
+    public boolean isTickingRegions() {
+        return this.tickingRegions;
+    }
+
+    /**
+     * Run an operation which can reach outside of the region it is called from, like a teleport.
+     * While regions are ticked in parallel it is queued and run once all regions of the level finished,
+     * otherwise it is run right away.
+     *
+     * @param task task
+     * @return true if the task was run right away, false if it was queued
+     */
+    public boolean runAfterRegionTick(Runnable task) {
+        if (this.tickingRegions) {
+            this.regionHandoffQueue.offer(task);
+            return false;
+        }
+        task.run();
+        return true;
+    }
+
+    private static class RegionTick {
+
+        private final List<Entity> entities = new ArrayList<>();
+        private final List<BlockEntity> blockEntities = new ArrayList<>();
+        private final List<FullChunk> chunks = new ArrayList<>();
+        private final List<Entity> finishedEntities = new ArrayList<>();
+        private final List<BlockEntity> finishedBlockEntities = new ArrayList<>();
+    }
+
     public boolean save() {
         return this.save(false);
     }
@@ -1417,26 +1770,19 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         int maxZ = NukkitMath.ceilDouble(bb.getMaxZ());
 
         List<Block> collides = new ArrayList<>();
+        FullChunk chunk = entity == null ? null : entity.chunk;
 
-        if (targetFirst) {
-            for (int z = minZ; z <= maxZ; ++z) {
-                for (int x = minX; x <= maxX; ++x) {
-                    for (int y = minY; y <= maxY; ++y) {
-                        Block block = this.getBlock(entity == null ? null : entity.chunk, x, y, z, false);
-                        if (block != null && block.getId() != 0 && block.collidesWithBB(bb)) {
+        for (int z = minZ; z <= maxZ; ++z) {
+            for (int x = minX; x <= maxX; ++x) {
+                chunk = this.getCollisionChunk(chunk, x >> 4, z >> 4);
+                for (int y = minY; y <= maxY; ++y) {
+                    int fullId = this.getCollisionFullBlock(chunk, x, y, z);
+                    if (fullId != 0 && this.collidesWith(fullId, x, y, z, bb, false)) {
+                        Block block = Block.get(fullId, this, x, y, z);
+                        if (targetFirst) {
                             return new Block[]{block};
                         }
-                    }
-                }
-            }
-        } else {
-            for (int z = minZ; z <= maxZ; ++z) {
-                for (int x = minX; x <= maxX; ++x) {
-                    for (int y = minY; y <= maxY; ++y) {
-                        Block block = this.getBlock(entity == null ? null : entity.chunk, x, y, z, false);
-                        if (block != null && block.getId() != 0 && block.collidesWithBB(bb)) {
-                            collides.add(block);
-                        }
+                        collides.add(block);
                     }
                 }
             }
@@ -1446,6 +1792,16 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     }
 
     public boolean hasCollisionBlocks(Entity entity, AxisAlignedBB bb) {
+        return this.hasCollision(entity, bb, false, false);
+    }
+
+    /**
+     * Check whether a block collides with the bounding box.
+     * Works on full block ids and {@link BlockCollision} shapes, only blocks whose shape depends on their surroundings are instantiated.
+     *
+     * @param solidOnly ignore blocks entities can pass through
+     */
+    private boolean hasCollision(Entity entity, AxisAlignedBB bb, boolean solidOnly, boolean entities) {
         int minX = NukkitMath.floorDouble(bb.getMinX());
         int minY = NukkitMath.floorDouble(bb.getMinY());
         int minZ = NukkitMath.floorDouble(bb.getMinZ());
@@ -1453,20 +1809,54 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         int maxY = NukkitMath.ceilDouble(bb.getMaxY());
         int maxZ = NukkitMath.ceilDouble(bb.getMaxZ());
 
+        FullChunk chunk = entity.chunk;
         for (int z = minZ; z <= maxZ; ++z) {
             for (int x = minX; x <= maxX; ++x) {
+                chunk = this.getCollisionChunk(chunk, x >> 4, z >> 4);
                 for (int y = minY; y <= maxY; ++y) {
-                    Block block = this.getBlock(entity.chunk, x, y, z, false);
-                    if (block != null && block.getId() != 0 && block.collidesWithBB(bb)) {
+                    int fullId = this.getCollisionFullBlock(chunk, x, y, z);
+                    if (fullId != 0 && this.collidesWith(fullId, x, y, z, bb, solidOnly)) {
                         return true;
                     }
                 }
             }
         }
 
+        if (entities) {
+            return this.getCollidingEntities(bb.grow(0.25f, 0.25f, 0.25f), entity).length > 0;
+        }
         return false;
     }
 
+    private FullChunk getCollisionChunk(FullChunk chunk, int chunkX, int chunkZ) {
+        if (chunk == null || chunk.getX() != chunkX || chunk.getZ() != chunkZ) {
+            return this.getChunkIfLoaded(chunkX, chunkZ);
+        }
+        return chunk;
+    }
+
+    private int getCollisionFullBlock(FullChunk chunk, int x, int y, int z) {
+        if (chunk == null || y < this.getMinBlockY() || y > this.getMaxBlockY()) {
+            return 0;
+        }
+        return chunk.getFullBlock(x & 0x0f, y, z & 0x0f, Block.LAYER_NORMAL);
+    }
+
+    private boolean collidesWith(int fullId, int x, int y, int z, AxisAlignedBB bb, boolean solidOnly) {
+        switch (BlockCollision.getShape(fullId)) {
+            case BlockCollision.SHAPE_BOX:
+                return !(solidOnly && BlockCollision.canPassThrough(fullId)) && BlockCollision.intersects(fullId, x, y, z, bb);
+            case BlockCollision.SHAPE_COMPLEX:
+                if (solidOnly && BlockCollision.canPassThrough(fullId)) {
+                    this.skippedCollisionBlocks.increment();
+                    return false;
+                }
+                return Block.get(fullId, this, x, y, z).collidesWithBB(bb);
+            default:
+                return false;
+        }
+    }
+
     public boolean isFullBlock(Vector3 pos) {
         AxisAlignedBB bb;
         if (pos instanceof Block) {
@@ -1492,6 +1882,21 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     public AxisAlignedBB[] getCollisionCubes(Entity entity, AxisAlignedBB bb, boolean entities, boolean solidEntities) {
         if (entity.noClip) return new AxisAlignedBB[0];
 
+        AxisAlignedBBBuffer buffer = COLLISION_BUFFER.get();
+        this.getCollisionCubes(entity, bb, entities, solidEntities, buffer);
+        return buffer.toArray();
+    }
+
+    /**
+     * Collect the collision boxes of blocks and entities in the bounding box into a reusable buffer, without creating block instances for ordinary blocks.
+     *
+     * @param buffer buffer the boxes are written to, cleared first
+     * @return number of boxes
+     */
+    public int getCollisionCubes(Entity entity, AxisAlignedBB bb, boolean entities, boolean solidEntities, AxisAlignedBBBuffer buffer) {
+        buffer.clear();
+        if (entity.noClip) return 0;
+
         int minX = NukkitMath.floorDouble(bb.getMinX());
         int minY = NukkitMath.floorDouble(bb.getMinY());
         int minZ = NukkitMath.floorDouble(bb.getMinZ());
@@ -1499,14 +1904,29 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         int maxY = NukkitMath.ceilDouble(bb.getMaxY());
         int maxZ = NukkitMath.ceilDouble(bb.getMaxZ());
 
-        List<AxisAlignedBB> collides = new ArrayList<>();
-
+        FullChunk chunk = entity.chunk;
         for (int z = minZ; z <= maxZ; ++z) {
             for (int x = minX; x <= maxX; ++x) {
+                chunk = this.getCollisionChunk(chunk, x >> 4, z >> 4);
                 for (int y = minY; y <= maxY; ++y) {
-                    Block block = this.getBlock(entity.chunk, x, y, z, false);
-                    if (!block.canPassThrough() && block.collidesWithBB(bb)) {
-                        collides.add(block.getBoundingBox());
+                    int fullId = this.getCollisionFullBlock(chunk, x, y, z);
+                    switch (BlockCollision.getShape(fullId)) {
+                        case BlockCollision.SHAPE_BOX:
+                            if (!BlockCollision.canPassThrough(fullId) && BlockCollision.intersects(fullId, x, y, z, bb)) {
+                                double[] box = BlockCollision.getBox(fullId);
+                                buffer.add(x + box[0], y + box[1], z + box[2], x + box[3], y + box[4], z + box[5]);
+                            }
+                            break;
+                        case BlockCollision.SHAPE_COMPLEX:
+                            if (BlockCollision.canPassThrough(fullId)) {
+                                this.skippedCollisionBlocks.increment();
+                                break;
+                            }
+                            Block block = Block.get(fullId, this, x, y, z);
+                            if (block.collidesWithBB(bb)) {
+                                buffer.add(block.getBoundingBox());
+                            }
+                            break;
                     }
                 }
             }
@@ -1515,37 +1935,16 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         if (entities || solidEntities) {
             for (Entity ent : this.getCollidingEntities(bb.grow(0.25f, 0.25f, 0.25f), entity)) {
                 if (solidEntities && !ent.canPassThrough()) {
-                    collides.add(ent.boundingBox.clone());
+                    buffer.add(ent.boundingBox);
                 }
             }
         }
 
-        return collides.toArray(new AxisAlignedBB[0]);
+        return buffer.size();
     }
 
     public boolean hasCollision(Entity entity, AxisAlignedBB bb, boolean entities) {
-        int minX = NukkitMath.floorDouble(bb.getMinX());
-        int minY = NukkitMath.floorDouble(bb.getMinY());
-        int minZ = NukkitMath.floorDouble(bb.getMinZ());
-        int maxX = NukkitMath.ceilDouble(bb.getMaxX());
-        int maxY = NukkitMath.ceilDouble(bb.getMaxY());
-        int maxZ = NukkitMath.ceilDouble(bb.getMaxZ());
-
-        for (int z = minZ; z <= maxZ; ++z) {
-            for (int x = minX; x <= maxX; ++x) {
-                for (int y = minY; y <= maxY; ++y) {
-                    Block block = this.getBlock(entity.chunk, x, y, z, false);
-                    if (!block.canPassThrough() && block.collidesWithBB(bb)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        if (entities) {
-            return this.getCollidingEntities(bb.grow(0.25f, 0.25f, 0.25f), entity).length > 0;
-        }
-        return false;
+        return this.hasCollision(entity, bb, true, entities);
     }
 
     public int getFullLight(Vector3 pos) {
@@ -1614,32 +2013,32 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         return chunk.getFullBlock(x & 0x0f, y, z & 0x0f, Block.LAYER_NORMAL);
     }
 
-    public synchronized Block getBlock(Vector3 pos) { // Original API
+    public Block getBlock(Vector3 pos) { // Original API
         return this.getBlock(null, pos.getFloorX(), pos.getFloorY(), pos.getFloorZ(), Block.LAYER_NORMAL, true);
     }
 
-    public synchronized Block getBlock(Vector3 pos, boolean load) { // Original API
+    public Block getBlock(Vector3 pos, boolean load) { // Original API
         return this.getBlock(null, pos.getFloorX(), pos.getFloorY(), pos.getFloorZ(), Block.LAYER_NORMAL, load);
     }
 
-    public synchronized Block getBlock(Vector3 pos, BlockLayer layer, boolean load) {
+    public Block getBlock(Vector3 pos, BlockLayer layer, boolean load) {
         return this.getBlock(null, pos.getFloorX(), pos.getFloorY(), pos.getFloorZ(), layer, load);
     }
 
-    public synchronized Block getBlock(int x, int y, int z) { // Original API
+    public Block getBlock(int x, int y, int z) { // Original API
         return getBlock(null, x, y, z, Block.LAYER_NORMAL, true);
     }
 
-    public synchronized Block getBlock(int x, int y, int z, boolean load) { // Original API
+    public Block getBlock(int x, int y, int z, boolean load) { // Original API
         return this.getBlock(null, x, y, z, Block.LAYER_NORMAL, load);
     }
 
-    public synchronized Block getBlock(FullChunk chunk, int x, int y, int z, boolean load) {
+    public Block getBlock(FullChunk chunk, int x, int y, int z, boolean load) {
         return this.getBlock(chunk, x, y, z, Block.LAYER_NORMAL, load);
     }
 
     // The chunk doesn't have to be correct, give the most likely one
-    public synchronized Block getBlock(FullChunk chunk, int x, int y, int z, BlockLayer layer, boolean load) {
+    public Block getBlock(FullChunk chunk, int x, int y, int z, BlockLayer layer, boolean load) {
         int fullState;
         if (y >= this.getMinBlockY() && y <= this.getMaxBlockY()) {
             int cx = x >> 4;
@@ -1704,129 +2103,20 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         this.addLightUpdate((int) pos.x, (int) pos.y, (int) pos.z);
     }
 
+    /**
+     * Queue a sky light update around a changed block, processed with the other sky light updates of the next tick.
+     */
     public void updateBlockSkyLight(int x, int y, int z) {
-    }
-
-    private void updateBlockLight(Map<Long, Set<Integer>> map) {
-        int size = map.size();
-        if (size == 0) {
-            return;
-        }
-        Queue<Long> lightPropagationQueue = new ConcurrentLinkedQueue<>();
-        Queue<Object[]> lightRemovalQueue = new ConcurrentLinkedQueue<>();
-        LongOpenHashSet visited = new LongOpenHashSet();
-        LongOpenHashSet removalVisited = new LongOpenHashSet();
-
-        Iterator<Map.Entry<Long, Set<Integer>>> iter = map.entrySet().iterator();
-        while (iter.hasNext() && size-- > 0) {
-            Map.Entry<Long, Set<Integer>> entry = iter.next();
-            iter.remove();
-            long index = entry.getKey();
-            Set<Integer> blocks = entry.getValue();
-
-            for (int blockHash : blocks) {
-                Vector3 pos = getBlockXYZ(index, blockHash, this.getDimensionData());
-                BaseFullChunk chunk = getChunk(((int) pos.x) >> 4, ((int) pos.z) >> 4, false);
-
-                if (chunk != null) {
-                    int lcx = ((int) pos.x) & 0xF;
-                    int lcz = ((int) pos.z) & 0xF;
-                    int oldLevel = chunk.getBlockLight(lcx, ((int) pos.y), lcz);
-                    int newLevel = Block.getBlockLight(chunk.getBlockId(lcx, ((int) pos.y), lcz));
-                    if (oldLevel != newLevel) {
-                        this.setBlockLightAt(((int) pos.x), ((int) pos.y), ((int) pos.z), newLevel);
-
-                        long hash = Hash.hashBlock(((int) pos.x), ((int) pos.y), ((int) pos.z));
-                        if (newLevel < oldLevel) {
-                            removalVisited.add(hash);
-                            lightRemovalQueue.add(new Object[]{hash, oldLevel});
-                        } else {
-                            visited.add(hash);
-                            lightPropagationQueue.add(hash);
-                        }
-                    }
-                }
-            }
-        }
-
-        while (!lightRemovalQueue.isEmpty()) {
-            Object[] val = lightRemovalQueue.poll();
-            long node = (long) val[0];
-            int x = Hash.hashBlockX(node);
-            int y = Hash.hashBlockY(node);
-            int z = Hash.hashBlockZ(node);
-
-            int lightLevel = (int) val[1];
-
-            this.computeRemoveBlockLight(x - 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(x + 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(x, y - 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(x, y + 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(x, y, z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(x, y, z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-        }
-
-        while (!lightPropagationQueue.isEmpty()) {
-            long node = lightPropagationQueue.poll();
-
-            int x = Hash.hashBlockX(node);
-            int y = Hash.hashBlockY(node);
-            int z = Hash.hashBlockZ(node);
-
-            int lightLevel = this.getBlockLightAt(x, y, z)
-                    - Block.getBlockLightFilter(this.getBlockIdAt(x, y, z));
-
-            if (lightLevel >= 1) {
-                this.computeSpreadBlockLight(x - 1, y, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x + 1, y, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y - 1, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y + 1, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y, z - 1, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y, z + 1, lightLevel, lightPropagationQueue, visited);
-            }
-        }
-    }
-
-    private void computeRemoveBlockLight(int x, int y, int z, int currentLight, Queue<Object[]> queue,
-                                         Queue<Long> spreadQueue, Set<Long> visited, Set<Long> spreadVisited) {
-        int current = this.getBlockLightAt(x, y, z);
-        if (current != 0 && current < currentLight) {
-            this.setBlockLightAt(x, y, z, 0);
-            if (current > 1) {
-                long index = Hash.hashBlock(x, y, z);
-                if (!visited.contains(index)) {
-                    visited.add(index);
-                    queue.add(new Object[]{index, current});
-                }
-            }
-        } else if (current >= currentLight) {
-            long index = Hash.hashBlock(x, y, z);
-            if (!spreadVisited.contains(index)) {
-                spreadVisited.add(index);
-                spreadQueue.add(index);
-            }
-        }
-    }
-
-    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, Queue<Long> queue, Set<Long> visited) {
-        int current = this.getBlockLightAt(x, y, z);
-        if (current < currentLight - 1) {
-            this.setBlockLightAt(x, y, z, currentLight);
-
-            long index = Hash.hashBlock(x, y, z);
-            if (!visited.contains(index)) {
-                visited.add(index);
-                if (currentLight > 1) {
-                    queue.add(index);
-                }
-            }
+        if (this.getDimension() != DIMENSION_NETHER && this.getDimension() != DIMENSION_THE_END) {
+            this.skyLightUpdater.queue(x, y, z);
         }
     }
 
+    /**
+     * Queue a block light update around a changed block, processed with the other block light updates of the next tick.
+     */
     public void addLightUpdate(int x, int y, int z) {
-        long index = chunkHash(x >> 4, z >> 4);
-        Set<Integer> currentMap = this.lightQueue.computeIfAbsent(index, k -> ConcurrentHashMap.newKeySet(8));
-        currentMap.add(Level.localBlockHash(x, y, z, this.getDimensionData()));
+        this.blockLightUpdater.queue(x, y, z);
     }
 
     @Override
@@ -1907,6 +2197,9 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
             if (this.lightUpdatesEnabled && (blockPrevious.isTransparent() != block.isTransparent() || blockPrevious.getLightLevel() != block.getLightLevel())) {
                 addLightUpdate(x, y, z);
             }
+            if (this.lightUpdatesEnabled && Block.getBlockLightFilter(blockPrevious.getId()) != Block.getBlockLightFilter(block.getId())) {
+                this.updateBlockSkyLight(x, y, z);
+            }
             BlockUpdateEvent ev = new BlockUpdateEvent(block);
             this.server.getPluginManager().callEvent(ev);
             if (!ev.isCancelled()) {
@@ -2448,11 +2741,15 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     }
 
     public Entity getEntity(long entityId) {
-        return this.entities.get(entityId);
+        synchronized (this.entities) {
+            return this.entities.get(entityId);
+        }
     }
 
     public Entity[] getEntities() {
-        return entities.values().toArray(new Entity[0]);
+        synchronized (this.entities) {
+            return entities.values().toArray(new Entity[0]);
+        }
     }
 
     public Entity[] getCollidingEntities(AxisAlignedBB bb) {
@@ -2461,25 +2758,23 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
 
     public Entity[] getCollidingEntities(AxisAlignedBB bb, Entity entity) {
         List<Entity> nearby = new ArrayList<>();
+        this.visitCollidingEntities(bb, entity, nearby::add);
+        return nearby.toArray(new Entity[0]);
+    }
 
-        if (entity == null || entity.canCollide()) {
-            int minX = NukkitMath.floorDouble((bb.getMinX() - 2) / 16);
-            int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) / 16);
-            int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) / 16);
-            int maxZ = NukkitMath.ceilDouble((bb.getMaxZ() + 2) / 16);
-
-            for (int x = minX; x <= maxX; ++x) {
-                for (int z = minZ; z <= maxZ; ++z) {
-                    for (Entity ent : this.getChunkEntities(x, z, false).values()) {
-                        if ((entity == null || (ent != entity && entity.canCollideWith(ent))) && ent.boundingBox.intersectsWith(bb)) {
-                            nearby.add(ent);
-                        }
-                    }
-                }
-            }
+    /**
+     * Visit the entities colliding with a bounding box without collecting them into an array.
+     *
+     * @param bb bounding box
+     * @param entity entity the bounding box belongs to, it is skipped and only entities it can collide with are visited
+     * @param visitor visitor, returning false stops the query
+     * @return false if the visitor stopped the query
+     */
+    public boolean visitCollidingEntities(AxisAlignedBB bb, Entity entity, EntityVisitor visitor) {
+        if (entity != null && !entity.canCollide()) {
+            return true;
         }
-
-        return nearby.toArray(new Entity[0]);
+        return this.visitEntities(bb, entity, true, false, visitor);
     }
 
     public Entity[] getNearbyEntities(AxisAlignedBB bb) {
@@ -2492,23 +2787,48 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
 
     public Entity[] getNearbyEntities(AxisAlignedBB bb, Entity entity, boolean loadChunks) {
         List<Entity> nearby = new ArrayList<>();
+        this.visitNearbyEntities(bb, entity, loadChunks, nearby::add);
+        return nearby.toArray(new Entity[0]);
+    }
+
+    /**
+     * Visit the entities intersecting with a bounding box without collecting them into an array.
+     *
+     * @param bb bounding box
+     * @param entity entity to skip, may be null
+     * @param loadChunks load the chunks around the bounding box
+     * @param visitor visitor, returning false stops the query
+     * @return false if the visitor stopped the query
+     */
+    public boolean visitNearbyEntities(AxisAlignedBB bb, Entity entity, boolean loadChunks, EntityVisitor visitor) {
+        return this.visitEntities(bb, entity, false, loadChunks, visitor);
+    }
 
+    private boolean visitEntities(AxisAlignedBB bb, Entity entity, boolean colliding, boolean loadChunks, EntityVisitor visitor) {
         int minX = NukkitMath.floorDouble((bb.getMinX() - 2) * 0.0625);
         int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) * 0.0625);
         int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) * 0.0625);
         int maxZ = NukkitMath.ceilDouble((bb.getMaxZ() + 2) * 0.0625);
 
+        EntityVisitor filter = ent -> {
+            if (ent == entity || !ent.boundingBox.intersectsWith(bb)) {
+                return true;
+            }
+            if (colliding && entity != null && !entity.canCollideWith(ent)) {
+                return true;
+            }
+            return visitor.visit(ent);
+        };
+
         for (int x = minX; x <= maxX; ++x) {
             for (int z = minZ; z <= maxZ; ++z) {
-                for (Entity ent : this.getChunkEntities(x, z, loadChunks).values()) {
-                    if (ent != entity && ent.boundingBox.intersectsWith(bb)) {
-                        nearby.add(ent);
-                    }
+                FullChunk chunk = loadChunks ? this.getChunk(x, z) : this.getChunkIfLoaded(x, z);
+                if (chunk != null && !chunk.visitEntities(bb.getMinY(), bb.getMaxY(), filter)) {
+                    return false;
                 }
             }
         }
-
-        return nearby.toArray(new Entity[0]);
+        return true;
     }
 
     public Map<Long, BlockEntity> getBlockEntities() {
@@ -2589,7 +2909,7 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     }
 
     @Override
-    public synchronized int getBlockIdAt(int x, int y, int z, BlockLayer layer) {
+    public int getBlockIdAt(int x, int y, int z, BlockLayer layer) {
         if (y < this.getMinBlockY() || y > this.getMaxBlockY()) {
             return 0;
         }
@@ -2600,7 +2920,7 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         return chunk.getBlockId(x & 0x0f, y, z & 0x0f, layer);
     }
 
-    public synchronized int getBlockIdAt(FullChunk chunk, int x, int y, int z) {
+    public int getBlockIdAt(FullChunk chunk, int x, int y, int z) {
         if (y < this.getMinBlockY() || y > this.getMaxBlockY()) {
             return 0;
         }
@@ -2705,16 +3025,16 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     }
 
     @Override
-    public synchronized int getBlockDataAt(int x, int y, int z) {
+    public int getBlockDataAt(int x, int y, int z) {
         return this.getBlockDataAt(null, x, y, z, Block.LAYER_NORMAL);
     }
 
     @Override
-    public synchronized int getBlockDataAt(int x, int y, int z, BlockLayer layer) {
+    public int getBlockDataAt(int x, int y, int z, BlockLayer layer) {
         return this.getBlockDataAt(null, x, y, z, layer);
     }
 
-    public synchronized int getBlockDataAt(FullChunk chunk, int x, int y, int z, BlockLayer layer) {
+    public int getBlockDataAt(FullChunk chunk, int x, int y, int z, BlockLayer layer) {
         if (y < this.getMinBlockY() || y > this.getMaxBlockY()) {
             return 0;
         }
@@ -3120,19 +3440,51 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
             }
             int x = getHashX(index);
             int z = getHashZ(index);
-            this.chunkSendTasks.add(index);
-            BaseFullChunk chunk = getChunk(x, z);
-            if (chunk != null) {
-                BatchPacket packet = chunk.getChunkPacket();
-                if (packet != null) {
-                    this.sendChunk(x, z, index, packet);
-                    continue;
+            BaseFullChunk chunk = this.getChunkIfLoaded(x, z);
+            if (chunk == null) {
+                // Don't block the tick on disk reads, the request is retried once the chunk is attached
+                if (!this.chunkLoadFutures.containsKey(index)) {
+                    this.loadChunkAsync(x, z).thenAccept(loaded -> {
+                        if (loaded == null) {
+                            this.chunkSendQueue.remove(index);
+                        }
+                    });
                 }
+                continue;
+            }
+            this.chunkSendTasks.add(index);
+            BatchPacket packet = chunk.getChunkPacket();
+            if (packet == null && this.server.getChunkPacketCache() != null) {
+                packet = this.server.getChunkPacketCache().get(this.levelId, this.getDimension(), index, chunk.getVersion());
+            }
+            if (packet != null) {
+                this.sendChunk(x, z, index, packet);
+                continue;
+            }
+            if (this.asyncChunkThread.isSaturated()) {
+                // Retry on the next tick instead of cloning chunks the serializer can't accept
+                this.chunkSendTasks.remove(index);
+                continue;
             }
             this.provider.requestChunkTask(x, z);
         }
     }
 
+    private void chunkPacketCallback(long timestamp, long version, int x, int z, long index, BatchPacket packet) {
+        BaseFullChunk chunk = this.getChunkIfLoaded(x, z);
+        if (chunk != null) {
+            if (server.cacheChunks && chunk.getChanges() <= timestamp) {
+                chunk.setChunkPacket(packet);
+            }
+
+            ChunkPacketCache cache = this.server.getChunkPacketCache();
+            if (cache != null && chunk.getVersion() == version) {
+                cache.put(this.levelId, this.getDimension(), index, version, packet);
+            }
+        }
+        this.sendChunk(x, z, index, packet);
+    }
+
     public void chunkRequestCallback(long timestamp, int x, int z, int subChunkCount, byte[] payload, long index) {
         if (server.cacheChunks) {
             BatchPacket data = Player.getChunkCacheFromData(x, z, subChunkCount, payload, this.getDimension());
@@ -3162,14 +3514,21 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         }
 
         if (entity instanceof Player) {
-            this.players.remove(entity.getId());
+            synchronized (this.players) {
+                this.players.remove(entity.getId());
+            }
             this.checkSleep();
         } else {
             entity.close();
         }
 
-        this.entities.remove(entity.getId());
-        this.updateEntities.remove(entity.getId());
+        synchronized (this.entities) {
+            this.entities.remove(entity.getId());
+        }
+        synchronized (this.updateEntities) {
+            this.updateEntities.remove(entity.getId());
+        }
+        this.entityTracker.removeEntity(entity);
     }
 
     public void addEntity(Entity entity) {
@@ -3178,16 +3537,22 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         }
 
         if (entity instanceof Player) {
-            this.players.put(entity.getId(), (Player) entity);
+            synchronized (this.players) {
+                this.players.put(entity.getId(), (Player) entity);
+            }
+        }
+        synchronized (this.entities) {
+            this.entities.put(entity.getId(), entity);
         }
-        this.entities.put(entity.getId(), entity);
     }
 
     public void addBlockEntity(BlockEntity blockEntity) {
         if (blockEntity.getLevel() != this) {
             throw new LevelException("BlockEntity is not in this level");
         }
-        blockEntities.put(blockEntity.getId(), blockEntity);
+        synchronized (this.blockEntities) {
+            blockEntities.put(blockEntity.getId(), blockEntity);
+        }
     }
 
     public void scheduleBlockEntityUpdate(BlockEntity entity) {
@@ -3203,7 +3568,9 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         if (entity.getLevel() != this) {
             throw new LevelException("BlockEntity is not in this level");
         }
-        blockEntities.remove(entity.getId());
+        synchronized (this.blockEntities) {
+            blockEntities.remove(entity.getId());
+        }
         updateBlockEntities.remove(entity);
     }
 
@@ -3228,8 +3595,81 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         return forceLoadChunk(index, x, z, generate) != null;
     }
 
+    /**
+     * Load a chunk without blocking the calling thread. The chunk is read and deserialized by the provider
+     * in the background and attached to the level during the next tick.
+     * Must be called from the main thread.
+     *
+     * @param x chunk x
+     * @param z chunk z
+     * @return future completed on the main thread with the loaded chunk, or null if it does not exist
+     */
+    public CompletableFuture<BaseFullChunk> loadChunkAsync(int x, int z) {
+        return this.loadChunkAsync(x, z, false);
+    }
+
+    /**
+     * Load a chunk without blocking the calling thread. The chunk is read and deserialized by the provider
+     * in the background and attached to the level during the next tick.
+     * Must be called from the main thread.
+     *
+     * @param x chunk x
+     * @param z chunk z
+     * @param create create an empty chunk if it does not exist
+     * @return future completed on the main thread with the loaded chunk
+     */
+    public CompletableFuture<BaseFullChunk> loadChunkAsync(int x, int z, boolean create) {
+        long index = Level.chunkHash(x, z);
+        BaseFullChunk chunk = this.provider.getLoadedChunk(index);
+        if (chunk != null) {
+            return CompletableFuture.completedFuture(chunk);
+        }
+
+        CompletableFuture<BaseFullChunk> future = this.chunkLoadFutures.get(index);
+        if (future == null) {
+            CompletableFuture<BaseFullChunk> result = new CompletableFuture<>();
+            this.chunkLoadFutures.put(index, result);
+            this.provider.loadChunkAsync(x, z).whenComplete((loaded, throwable) ->
+                    this.asyncChunkLoads.add(() -> this.attachAsyncChunk(index, x, z, loaded, throwable, result)));
+            future = result;
+        }
+
+        if (create) {
+            return future.thenApply(loaded -> loaded != null ? loaded : this.getChunk(x, z, true));
+        }
+        return future;
+    }
+
+    private void attachAsyncChunk(long index, int x, int z, BaseFullChunk chunk, Throwable throwable, CompletableFuture<BaseFullChunk> future) {
+        this.chunkLoadFutures.remove(index);
+        if (this.provider == null) {
+            future.complete(null);
+            return;
+        }
+
+        if (throwable != null) {
+            this.server.getLogger().error("Failed to read chunk " + x + ", " + z, throwable);
+            chunk = null;
+        }
+
+        synchronized (this) {
+            boolean loaded = this.provider.isChunkLoaded(index);
+            chunk = this.provider.attachChunk(x, z, chunk);
+            if (!loaded && chunk != null) {
+                chunk = this.initLoadedChunk(index, x, z, chunk);
+            }
+        }
+        future.complete(chunk);
+    }
+
     private synchronized BaseFullChunk forceLoadChunk(long index, int x, int z, boolean generate) {
-        BaseFullChunk chunk = this.provider.getChunk(x, z, generate);
+        // Block getters don't hold the level monitor, another thread may have loaded the chunk while this one waited
+        BaseFullChunk chunk = this.provider.getLoadedChunk(index);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        chunk = this.provider.getChunk(x, z, generate);
 
         if (chunk == null) {
             if (generate) {
@@ -3238,6 +3678,10 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
             return null;
         }
 
+        return this.initLoadedChunk(index, x, z, chunk);
+    }
+
+    private BaseFullChunk initLoadedChunk(long index, int x, int z, BaseFullChunk chunk) {
         if (chunk.getProvider() != null) {
             this.server.getPluginManager().callEvent(new ChunkLoadEvent(chunk, !chunk.isGenerated()));
         } else {
@@ -3246,6 +3690,7 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
         }
 
         chunk.initChunk();
+        this.updateQueue.loadChunk(x, z);
 
         /*if (!chunk.isLightPopulated() && chunk.isPopulated()) {
             this.server.getScheduler().scheduleAsyncTask(new LightPopulationTask(this, chunk));
@@ -3321,8 +3766,10 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
 
         try {
             if (chunk != null) {
+                boolean persisted = false;
                 if (trySave && this.saveOnUnloadEnabled) {
-                    boolean needSave = chunk.hasChanged();
+                    // Pending block updates are stored with the chunk, so saving drops them from memory in the same step
+                    boolean needSave = chunk.hasChanged() || this.updateQueue.hasPendingBlockUpdates(x, z);
 
                     if (!needSave) {
                         for (Entity e : chunk.getEntities().values()) {
@@ -3337,7 +3784,9 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
                         this.provider.setChunk(x, z, chunk);
                         this.provider.saveChunk(x, z, chunk);
                     }
+                    persisted = true;
                 }
+                this.updateQueue.unloadChunk(x, z, persisted);
 
                 if (this.useChunkLoaderApi) {
                     for (ChunkLoader loader : this.getChunkLoaders(x, z)) {
@@ -3378,7 +3827,7 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
             boolean wasAir = chunk.getBlockId(x, y - 1, z) == 0;
             for (; y > this.getMinBlockY(); --y) {
                 int fullId = chunk.getFullBlock(x, y, z);
-                Block block = Block.get(fullId >> Block.DATA_BITS, fullId & Block.DATA_MASK);
+                Block block = Block.getState(fullId);
                 if (this.isFullBlock(block)) {
                     if (wasAir) {
                         y++;
@@ -3391,10 +3840,10 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
 
             for (; y >= this.getMinBlockY() && y < this.getMaxBlockY(); y++) {
                 int fullId = chunk.getFullBlock(x, y + 1, z);
-                Block block = Block.get(fullId >>  Block.DATA_BITS, fullId & Block.DATA_MASK);
+                Block block = Block.getState(fullId);
                 if (!this.isFullBlock(block)) {
                     fullId = chunk.getFullBlock(x, y, z);
-                    block = Block.get(fullId >>  Block.DATA_BITS, fullId & Block.DATA_MASK);
+                    block = Block.getState(fullId);
                     if (!this.isFullBlock(block)) {
                         return new Position(pos.x + 0.5, y + 0.51, pos.z + 0.5, this); // Hack: + 0.51 for slabs
                     }
@@ -3464,7 +3913,12 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
             return false;
         }
 
-        BaseFullChunk chunk = this.getChunk(x, z, true);
+        BaseFullChunk chunk = this.getChunkIfLoaded(x, z);
+        if (chunk == null) {
+            this.loadChunkAsync(x, z, true);
+            return false;
+        }
+
         if (!chunk.isPopulated()) {
             boolean populate = true;
 
@@ -3478,6 +3932,18 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
                 }
             }
 
+            if (populate) {
+                // PopulationTask needs all neighbours, read the missing ones in the background first
+                for (int xx = -1; xx <= 1; ++xx) {
+                    for (int zz = -1; zz <= 1; ++zz) {
+                        if (!this.provider.isChunkLoaded(Level.chunkHash(x + xx, z + zz))) {
+                            this.loadChunkAsync(x + xx, z + zz, true);
+                            populate = false;
+                        }
+                    }
+                }
+            }
+
             if (populate) {
                 if (!this.chunkPopulationQueue.contains(index)) {
                     this.chunkPopulationQueue.add(index);
@@ -3728,17 +4194,33 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     }
 
     public void addEntityMovement(Entity entity, double x, double y, double z, double yaw, double pitch, double headYaw) {
-        MoveEntityAbsolutePacket pk = new MoveEntityAbsolutePacket();
+        this.entityTracker.sendMovement(entity, x, y, z, yaw, pitch, headYaw);
+    }
+
+    public void addEntityMotion(Entity entity, double motionX, double motionY, double motionZ) {
+        SetEntityMotionPacket pk = new SetEntityMotionPacket();
         pk.eid = entity.getId();
-        pk.x = x;
-        pk.y = y;
-        pk.z = z;
-        pk.yaw = yaw;
-        pk.headYaw = headYaw;
-        pk.pitch = pitch;
-        pk.onGround = entity.onGround;
+        pk.motionX = (float) motionX;
+        pk.motionY = (float) motionY;
+        pk.motionZ = (float) motionZ;
 
-        Server.broadcastPacket(entity.getViewers().values(), pk);
+        this.entityTracker.sendMotion(entity, pk);
+    }
+
+    public EntityTracker getEntityTracker() {
+        return this.entityTracker;
+    }
+
+    public long getRandomTickedBlocks() {
+        return this.randomTickedBlocks.sum();
+    }
+
+    public long getSkippedRandomTicks() {
+        return this.skippedRandomTicks.sum();
+    }
+
+    public long getSkippedCollisionBlocks() {
+        return this.skippedCollisionBlocks.sum();
     }
 
     public boolean isRaining() {
@@ -4234,7 +4716,14 @@ public class Level implements ChunkManager, Metadatable, GeneratorTaskFactory {
     }
 
     public void asyncChunk(BaseChunk chunk, long timestamp, int x, int z) {
-        this.asyncChunkThread.queue(chunk, timestamp, x, z, this.dimensionData);
+        long index = Level.chunkHash(x, z);
+        Int2ObjectMap<Player> requesters = this.chunkSendQueue.get(index);
+        int owner = requesters == null || requesters.isEmpty() ? 0 : requesters.keySet().iterator().nextInt();
+
+        if (!this.asyncChunkThread.queue(chunk, timestamp, x, z, this.dimensionData, owner)) {
+            // Serializer queue is full, the request is retried on the next tick
+            this.chunkSendTasks.remove(index);
+        }
     }
 
     public PersistentDataContainer getPersistentDataContainer(Vector3 position) {
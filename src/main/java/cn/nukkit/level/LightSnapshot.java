@@ -0,0 +1,222 @@
+package cn.nukkit.level;
+
+import cn.nukkit.level.format.ChunkSection;
+import cn.nukkit.level.format.generic.BaseChunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.level.format.generic.EmptyChunkSection;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Copies of the chunk sections around queued light updates, so the lighting worker can compute light without touching
+ * the live chunks. Sections are captured on the level thread, the worker writes light into the copied arrays and the
+ * cells it changed are published back on the level thread. Light the level thread wrote into other cells meanwhile is kept,
+ * blocks changed meanwhile are queued again and computed by the next job.
+ */
+public class LightSnapshot {
+
+    private final int minBlockY;
+    private final int maxBlockY;
+    private final int minSection;
+    private final int sectionCount;
+    private final Long2ObjectMap<Section[]> columns = new Long2ObjectOpenHashMap<>();
+
+    public LightSnapshot(Level level) {
+        this(level.getMinBlockY(), level.getMaxBlockY());
+    }
+
+    /**
+     * @param minBlockY lowest block y of the level
+     * @param maxBlockY highest block y of the level
+     */
+    public LightSnapshot(int minBlockY, int maxBlockY) {
+        this.minBlockY = minBlockY;
+        this.maxBlockY = maxBlockY;
+        this.minSection = minBlockY >> 4;
+        this.sectionCount = (maxBlockY >> 4) - this.minSection + 1;
+    }
+
+    /**
+     * Copy a section of a chunk, does nothing if it was copied already.
+     *
+     * @param chunk loaded chunk
+     * @param sectionY section y
+     */
+    public void capture(BaseFullChunk chunk, int sectionY) {
+        if (!(chunk instanceof BaseChunk) || sectionY < this.minSection || sectionY >= this.minSection + this.sectionCount) {
+            return;
+        }
+
+        Section[] column = this.columns.computeIfAbsent(Level.chunkHash(chunk.getX(), chunk.getZ()), i -> new Section[this.sectionCount]);
+        int index = sectionY - this.minSection;
+        if (column[index] == null) {
+            ChunkSection section = ((BaseChunk) chunk).getSection(sectionY);
+            column[index] = new Section(
+                    section instanceof EmptyChunkSection ? null : section.copy(),
+                    section.getLightArray().clone(),
+                    section.getSkyLightArray().clone());
+        }
+    }
+
+    /**
+     * Copy all sections of a chunk.
+     *
+     * @param chunk loaded chunk
+     */
+    public void captureColumn(BaseFullChunk chunk) {
+        for (int sectionY = this.minSection; sectionY < this.minSection + this.sectionCount; sectionY++) {
+            this.capture(chunk, sectionY);
+        }
+    }
+
+    public int getMinBlockY() {
+        return this.minBlockY;
+    }
+
+    public int getMaxBlockY() {
+        return this.maxBlockY;
+    }
+
+    public boolean isEmpty() {
+        return this.columns.isEmpty();
+    }
+
+    /**
+     * @return copied section or null if it was not captured
+     */
+    public Section get(int chunkX, int chunkZ, int sectionY) {
+        Section[] column = this.columns.get(Level.chunkHash(chunkX, chunkZ));
+        if (column == null || sectionY < this.minSection || sectionY >= this.minSection + this.sectionCount) {
+            return null;
+        }
+        return column[sectionY - this.minSection];
+    }
+
+    /**
+     * Write the cells changed by the worker into the live sections. Must be called from the level thread.
+     *
+     * @param level level the snapshot was taken from
+     * @return number of published sections
+     */
+    public int publish(Level level) {
+        int published = 0;
+        for (Long2ObjectMap.Entry<Section[]> entry : this.columns.long2ObjectEntrySet()) {
+            BaseFullChunk chunk = level.getChunkIfLoaded(Level.getHashX(entry.getLongKey()), Level.getHashZ(entry.getLongKey()));
+            if (!(chunk instanceof BaseChunk)) {
+                continue;
+            }
+
+            boolean changed = false;
+            Section[] column = entry.getValue();
+            for (int i = 0; i < column.length; i++) {
+                Section section = column[i];
+                if (section == null || !(section.blockLightChanged || section.skyLightChanged)) {
+                    continue;
+                }
+
+                int sectionY = i + this.minSection;
+                ChunkSection live = ((BaseChunk) chunk).getSection(sectionY);
+                if (section.blockLightChanged) {
+                    publish(chunk, sectionY, section, live, false);
+                }
+                if (section.skyLightChanged) {
+                    publish(chunk, sectionY, section, live, true);
+                }
+                changed = true;
+                published++;
+            }
+
+            if (changed) {
+                chunk.setChanged();
+            }
+        }
+        return published;
+    }
+
+    private static void publish(BaseFullChunk chunk, int sectionY, Section section, ChunkSection live, boolean sky) {
+        long[] changedCells = sky ? section.changedSkyLight : section.changedBlockLight;
+        for (int word = 0; word < changedCells.length; word++) {
+            long bits = changedCells[word];
+            while (bits != 0) {
+                int cell = (word << 6) | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                int x = cell & 0x0f;
+                int z = (cell >> 4) & 0x0f;
+                int y = cell >> 8;
+                int light = section.getLight(sky, x, y, z);
+                if (live instanceof EmptyChunkSection) {
+                    // Let the chunk create the section for the first cell which differs from an empty one
+                    if (light == (sky ? live.getBlockSkyLight(x, y, z) : live.getBlockLight(x, y, z))) {
+                        continue;
+                    }
+                    if (sky) {
+                        chunk.setBlockSkyLight(x, (sectionY << 4) | y, z, light);
+                    } else {
+                        chunk.setBlockLight(x, (sectionY << 4) | y, z, light);
+                    }
+                    live = ((BaseChunk) chunk).getSection(sectionY);
+                } else if (sky) {
+                    live.setBlockSkyLight(x, y, z, light);
+                } else {
+                    live.setBlockLight(x, y, z, light);
+                }
+            }
+        }
+    }
+
+    public static class Section {
+
+        private final ChunkSection blocks;
+        private final byte[] blockLight;
+        private final byte[] skyLight;
+        private boolean blockLightChanged;
+        private boolean skyLightChanged;
+        /**
+         * Cells written by the worker, one bit per (y << 8) | (z << 4) | x
+         */
+        private final long[] changedBlockLight = new long[64];
+        private final long[] changedSkyLight = new long[64];
+
+        private Section(ChunkSection blocks, byte[] blockLight, byte[] skyLight) {
+            this.blocks = blocks;
+            this.blockLight = blockLight;
+            this.skyLight = skyLight;
+        }
+
+        public boolean isEmpty() {
+            return this.blocks == null;
+        }
+
+        public int getBlockId(int x, int y, int z) {
+            return this.blocks == null ? 0 : this.blocks.getBlockId(x, y, z);
+        }
+
+        public int getLight(boolean sky, int x, int y, int z) {
+            int value = (sky ? this.skyLight : this.blockLight)[(y << 7) | (z << 3) | (x >> 1)] & 0xff;
+            return (x & 1) == 0 ? value & 0x0f : value >> 4;
+        }
+
+        public void setLight(boolean sky, int x, int y, int z, int light) {
+            byte[] array;
+            int cell = (y << 8) | (z << 4) | x;
+            if (sky) {
+                array = this.skyLight;
+                this.skyLightChanged = true;
+                this.changedSkyLight[cell >> 6] |= 1L << cell;
+            } else {
+                array = this.blockLight;
+                this.blockLightChanged = true;
+                this.changedBlockLight[cell >> 6] |= 1L << cell;
+            }
+
+            int i = (y << 7) | (z << 3) | (x >> 1);
+            int old = array[i] & 0xff;
+            if ((x & 1) == 0) {
+                array[i] = (byte) ((old & 0xf0) | (light & 0x0f));
+            } else {
+                array[i] = (byte) (((light & 0x0f) << 4) | (old & 0x0f));
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.level.format.ChunkSection;
+import cn.nukkit.level.format.generic.BaseChunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.level.format.generic.EmptyChunkSection;
+import cn.nukkit.utils.ChunkException;
+import cn.nukkit.utils.Hash;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/**
+ * Base of the incremental light updates of a level.
+ * <p>
+ * Changed blocks are queued from any thread and processed together once per tick: {@link #prepare(long[])} seeds the
+ * removal and spread queues, then light is removed from blocks which lost their source and spread again from the
+ * remaining sources. Nodes are packed into longs with {@link Hash#hashBlock(int, int, int)} and kept in array-backed
+ * queues reused across ticks, and light is read and written on the chunk sections through a cached chunk and section
+ * lookup, so an update does not allocate per visited block. Touched sections are tracked and each modified chunk
+ * is marked as changed once per update.
+ * <p>
+ * An update can also run off the level thread on a {@link LightSnapshot}: the queued blocks are drained and the
+ * sections around them captured on the level thread, the light is computed on the copies and the snapshot is
+ * published back later.
+ */
+public abstract class LightUpdater {
+
+    protected final Level level;
+    private final boolean sky;
+    private final LongSet queued = new LongOpenHashSet();
+
+    private final LongArrayFIFOQueue removalQueue = new LongArrayFIFOQueue();
+    private final IntArrayFIFOQueue removalLevels = new IntArrayFIFOQueue();
+    private final LongArrayFIFOQueue spreadQueue = new LongArrayFIFOQueue();
+    private final LongSet dirtySections = new LongOpenHashSet();
+
+    private BaseFullChunk chunk;
+    private int chunkX;
+    private int chunkZ;
+    private ChunkSection section;
+    private int sectionY;
+
+    private LightSnapshot snapshot;
+    private LightSnapshot.Section snapshotSection;
+
+    protected LightUpdater(Level level, boolean sky) {
+        this.level = level;
+        this.sky = sky;
+    }
+
+    /**
+     * Queue a changed block for the next update.
+     */
+    public void queue(int x, int y, int z) {
+        synchronized (this.queued) {
+            this.queued.add(Hash.hashBlock(x, y, z));
+        }
+    }
+
+    public boolean hasQueued() {
+        synchronized (this.queued) {
+            return !this.queued.isEmpty();
+        }
+    }
+
+    /**
+     * Take all queued blocks out of the queue.
+     *
+     * @return queued blocks as {@link Hash#hashBlock(int, int, int)} or null if there are none
+     */
+    public long[] drain() {
+        synchronized (this.queued) {
+            if (this.queued.isEmpty()) {
+                return null;
+            }
+            long[] changed = this.queued.toLongArray();
+            this.queued.clear();
+            return changed;
+        }
+    }
+
+    /**
+     * Update the light around all queued blocks.
+     *
+     * @return number of sections whose light was changed
+     */
+    public int update() {
+        long[] changed = this.drain();
+        if (changed == null) {
+            return 0;
+        }
+
+        synchronized (this.level) {
+            return this.run(changed, null);
+        }
+    }
+
+    /**
+     * Update the light around drained blocks on a snapshot captured by {@link #capture(long[], LightSnapshot)}.
+     * Does not touch the level, so it can run on any thread, but only one update may run at a time.
+     *
+     * @return number of sections whose light was changed
+     */
+    public int update(long[] changed, LightSnapshot snapshot) {
+        return this.run(changed, snapshot);
+    }
+
+    private int run(long[] changed, LightSnapshot snapshot) {
+        this.snapshot = snapshot;
+        try {
+            this.prepare(changed);
+            this.removeLight();
+            this.spreadLight();
+            return snapshot == null ? this.markChanged() : this.dirtySections.size();
+        } finally {
+            this.snapshot = null;
+            this.snapshotSection = null;
+            this.chunk = null;
+            this.section = null;
+            this.removalQueue.clear();
+            this.removalLevels.clear();
+            this.spreadQueue.clear();
+            this.dirtySections.clear();
+        }
+    }
+
+    /**
+     * Copy the sections an update of the changed blocks may reach. Must be called from the level thread.
+     *
+     * @param changed drained blocks
+     * @param snapshot snapshot to fill
+     */
+    public abstract void capture(long[] changed, LightSnapshot snapshot);
+
+    /**
+     * Seed the removal and spread queues from the changed blocks.
+     *
+     * @param changed changed blocks as {@link Hash#hashBlock(int, int, int)}
+     */
+    protected abstract void prepare(long[] changed);
+
+    /**
+     * @return light emitted by the block itself, which is never removed
+     */
+    protected int getEmission(int blockId) {
+        return 0;
+    }
+
+    /**
+     * Select the block for the following {@link #getLight}, {@link #getBlockId} and {@link #setLight} calls.
+     *
+     * @return false if the block is outside of the world or its chunk is not loaded
+     */
+    protected final boolean select(int x, int y, int z) {
+        int cx = x >> 4;
+        int cz = z >> 4;
+        int sy = y >> 4;
+        if (this.snapshot != null) {
+            // The snapshot has no sections outside of the world
+            if (this.snapshotSection == null || this.chunkX != cx || this.chunkZ != cz || this.sectionY != sy) {
+                this.snapshotSection = this.snapshot.get(cx, cz, sy);
+                this.chunkX = cx;
+                this.chunkZ = cz;
+                this.sectionY = sy;
+            }
+            return this.snapshotSection != null;
+        }
+
+        if (y < this.level.getMinBlockY() || y > this.level.getMaxBlockY()) {
+            return false;
+        }
+
+        if (this.chunk == null || this.chunkX != cx || this.chunkZ != cz) {
+            BaseFullChunk chunk = this.level.getChunkIfLoaded(cx, cz);
+            if (chunk == null) {
+                return false;
+            }
+            this.chunk = chunk;
+            this.chunkX = cx;
+            this.chunkZ = cz;
+            this.section = null;
+        }
+
+        if (this.section == null || this.sectionY != sy) {
+            this.section = this.chunk instanceof BaseChunk ? ((BaseChunk) this.chunk).getSection(sy) : null;
+            this.sectionY = sy;
+        }
+        return true;
+    }
+
+    /**
+     * @return lowest block y of the level, taken from the snapshot during snapshot updates
+     */
+    protected final int getMinBlockY() {
+        return this.snapshot != null ? this.snapshot.getMinBlockY() : this.level.getMinBlockY();
+    }
+
+    /**
+     * @return highest block y of the level, taken from the snapshot during snapshot updates
+     */
+    protected final int getMaxBlockY() {
+        return this.snapshot != null ? this.snapshot.getMaxBlockY() : this.level.getMaxBlockY();
+    }
+
+    protected final boolean isSelectedSectionEmpty() {
+        if (this.snapshot != null) {
+            return this.snapshotSection.isEmpty();
+        }
+        return this.section instanceof EmptyChunkSection;
+    }
+
+    protected final int getLight(int x, int y, int z) {
+        if (this.snapshot != null) {
+            return this.snapshotSection.getLight(this.sky, x & 0x0f, y & 0x0f, z & 0x0f);
+        }
+        if (this.sky) {
+            // The chunk knows how to estimate sky light of sections which were saved without it
+            return this.chunk.getBlockSkyLight(x & 0x0f, y, z & 0x0f);
+        }
+        if (this.section != null) {
+            return this.section.getBlockLight(x & 0x0f, y & 0x0f, z & 0x0f);
+        }
+        return this.chunk.getBlockLight(x & 0x0f, y, z & 0x0f);
+    }
+
+    protected final int getBlockId(int x, int y, int z) {
+        if (this.snapshot != null) {
+            return this.snapshotSection.getBlockId(x & 0x0f, y & 0x0f, z & 0x0f);
+        }
+        if (this.section != null) {
+            return this.section.getBlockId(x & 0x0f, y & 0x0f, z & 0x0f);
+        }
+        return this.chunk.getBlockId(x & 0x0f, y, z & 0x0f);
+    }
+
+    protected final void setLight(int x, int y, int z, int light) {
+        if (this.snapshot != null) {
+            this.snapshotSection.setLight(this.sky, x & 0x0f, y & 0x0f, z & 0x0f, light);
+            this.dirtySections.add(Hash.hashBlock(x >> 4, y >> 4, z >> 4));
+            return;
+        }
+        if (this.section != null) {
+            try {
+                if (this.sky) {
+                    this.section.setBlockSkyLight(x & 0x0f, y & 0x0f, z & 0x0f, light);
+                } else {
+                    this.section.setBlockLight(x & 0x0f, y & 0x0f, z & 0x0f, light);
+                }
+                this.dirtySections.add(Hash.hashBlock(x >> 4, y >> 4, z >> 4));
+                return;
+            } catch (ChunkException e) {
+                // Empty section, let the chunk create it
+                this.section = null;
+            }
+        }
+        if (this.sky) {
+            this.chunk.setBlockSkyLight(x & 0x0f, y, z & 0x0f, light);
+        } else {
+            this.chunk.setBlockLight(x & 0x0f, y, z & 0x0f, light);
+        }
+        this.dirtySections.add(Hash.hashBlock(x >> 4, y >> 4, z >> 4));
+    }
+
+    protected final void enqueueRemoval(int x, int y, int z, int oldLight) {
+        this.removalQueue.enqueue(Hash.hashBlock(x, y, z));
+        this.removalLevels.enqueue(oldLight);
+    }
+
+    protected final void enqueueSpread(int x, int y, int z) {
+        this.spreadQueue.enqueue(Hash.hashBlock(x, y, z));
+    }
+
+    protected final void enqueueNeighbours(int x, int y, int z) {
+        this.enqueueSpread(x - 1, y, z);
+        this.enqueueSpread(x + 1, y, z);
+        this.enqueueSpread(x, y - 1, z);
+        this.enqueueSpread(x, y + 1, z);
+        this.enqueueSpread(x, y, z - 1);
+        this.enqueueSpread(x, y, z + 1);
+    }
+
+    private void removeLight() {
+        while (!this.removalQueue.isEmpty()) {
+            long node = this.removalQueue.dequeueLong();
+            int lightLevel = this.removalLevels.dequeueInt();
+            int x = Hash.hashBlockX(node);
+            int y = Hash.hashBlockY(node);
+            int z = Hash.hashBlockZ(node);
+
+            this.computeRemove(x - 1, y, z, lightLevel);
+            this.computeRemove(x + 1, y, z, lightLevel);
+            this.computeRemove(x, y - 1, z, lightLevel);
+            this.computeRemove(x, y + 1, z, lightLevel);
+            this.computeRemove(x, y, z - 1, lightLevel);
+            this.computeRemove(x, y, z + 1, lightLevel);
+        }
+    }
+
+    private void computeRemove(int x, int y, int z, int removedLight) {
+        if (!this.select(x, y, z)) {
+            return;
+        }
+
+        int current = this.getLight(x, y, z);
+        if (current != 0 && current < removedLight) {
+            int emission = this.getEmission(this.getBlockId(x, y, z));
+            this.setLight(x, y, z, emission);
+            if (current > 1) {
+                this.enqueueRemoval(x, y, z, current);
+            }
+            if (emission > 1) {
+                this.enqueueSpread(x, y, z);
+            }
+        } else if (current >= removedLight) {
+            // Lit from somewhere else, fill the removed area again from here
+            this.enqueueSpread(x, y, z);
+        }
+    }
+
+    private void spreadLight() {
+        while (!this.spreadQueue.isEmpty()) {
+            long node = this.spreadQueue.dequeueLong();
+            int x = Hash.hashBlockX(node);
+            int y = Hash.hashBlockY(node);
+            int z = Hash.hashBlockZ(node);
+            if (!this.select(x, y, z)) {
+                continue;
+            }
+
+            int lightLevel = this.getLight(x, y, z);
+            if (lightLevel > 1) {
+                this.computeSpread(x - 1, y, z, lightLevel);
+                this.computeSpread(x + 1, y, z, lightLevel);
+                this.computeSpread(x, y - 1, z, lightLevel);
+                this.computeSpread(x, y + 1, z, lightLevel);
+                this.computeSpread(x, y, z - 1, lightLevel);
+                this.computeSpread(x, y, z + 1, lightLevel);
+            }
+        }
+    }
+
+    private void computeSpread(int x, int y, int z, int sourceLight) {
+        if (!this.select(x, y, z)) {
+            return;
+        }
+
+        int newLight = sourceLight - Math.max(1, Block.getBlockLightFilter(this.getBlockId(x, y, z)));
+        if (newLight > this.getLight(x, y, z)) {
+            this.setLight(x, y, z, newLight);
+            if (newLight > 1) {
+                this.enqueueSpread(x, y, z);
+            }
+        }
+    }
+
+    private int markChanged() {
+        int sections = this.dirtySections.size();
+        LongSet chunks = new LongOpenHashSet();
+        LongIterator iterator = this.dirtySections.iterator();
+        while (iterator.hasNext()) {
+            long section = iterator.nextLong();
+            int chunkX = Hash.hashBlockX(section);
+            int chunkZ = Hash.hashBlockZ(section);
+            if (chunks.add(Level.chunkHash(chunkX, chunkZ))) {
+                BaseFullChunk chunk = this.level.getChunkIfLoaded(chunkX, chunkZ);
+                if (chunk != null) {
+                    chunk.setChanged();
+                }
+            }
+        }
+        return sections;
+    }
+}
@@ -0,0 +1,126 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.utils.Hash;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/**
+ * Incremental sky light updates of a level.
+ * <p>
+ * The columns of the changed blocks are rescanned for direct sunlight first: blocks above the highest light-blocking
+ * block get full light and spread it, outdated full light below it is removed. Changed blocks below the top are then
+ * recalculated from their neighbours.
+ */
+public class SkyLightUpdater extends LightUpdater {
+
+    public SkyLightUpdater(Level level) {
+        super(level, true);
+    }
+
+    @Override
+    public void capture(long[] changed, LightSnapshot snapshot) {
+        // Column updates reach the whole height, so whole columns of the neighbouring chunks are needed
+        LongSet chunks = new LongOpenHashSet();
+        for (long hash : changed) {
+            int chunkX = Hash.hashBlockX(hash) >> 4;
+            int chunkZ = Hash.hashBlockZ(hash) >> 4;
+            for (int cx = chunkX - 1; cx <= chunkX + 1; cx++) {
+                for (int cz = chunkZ - 1; cz <= chunkZ + 1; cz++) {
+                    if (chunks.add(Level.chunkHash(cx, cz))) {
+                        BaseFullChunk chunk = this.level.getChunkIfLoaded(cx, cz);
+                        if (chunk != null) {
+                            snapshot.captureColumn(chunk);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void prepare(long[] changed) {
+        LongSet columns = new LongOpenHashSet(changed.length);
+        for (long hash : changed) {
+            int x = Hash.hashBlockX(hash);
+            int z = Hash.hashBlockZ(hash);
+            if (columns.add(Level.chunkHash(x, z))) {
+                this.updateColumn(x, z);
+            }
+            this.updateBlock(x, Hash.hashBlockY(hash), z);
+        }
+    }
+
+    private void updateColumn(int x, int z) {
+        int maxY = this.getMaxBlockY();
+        int minY = this.getMinBlockY();
+        if (!this.select(x, maxY, z)) {
+            return;
+        }
+
+        int top = this.getSkyTop(x, z);
+        for (int y = maxY; y > top; y--) {
+            this.select(x, y, z);
+            if (this.getLight(x, y, z) != 15) {
+                this.setLight(x, y, z, 15);
+                this.enqueueSpread(x, y, z);
+            }
+        }
+
+        // Covered blocks can get at most 14 from their neighbours, any 15 left below the top is outdated
+        for (int y = top; y >= minY; y--) {
+            this.select(x, y, z);
+            if (this.getLight(x, y, z) != 15) {
+                break;
+            }
+            this.setLight(x, y, z, 0);
+            this.enqueueRemoval(x, y, z, 15);
+        }
+    }
+
+    private void updateBlock(int x, int y, int z) {
+        if (!this.select(x, y, z)) {
+            return;
+        }
+
+        int current = this.getLight(x, y, z);
+        if (current == 15 && this.getSkyTop(x, z) < y) {
+            return;
+        }
+
+        this.select(x, y, z);
+        if (current > 0) {
+            this.setLight(x, y, z, 0);
+            this.enqueueRemoval(x, y, z, current);
+        } else {
+            this.enqueueNeighbours(x, y, z);
+        }
+    }
+
+    /**
+     * Find the top of the direct sunlight of a column. Air has a light filter of 1 as well, so a filter of 1 means the
+     * block attenuates light no more than air: glass, leaves and other transparent blocks let direct sunlight through
+     * unchanged, as they do when light spreads sideways. Only blocks with a filter above 1, like water, ice and opaque
+     * blocks, end the column.
+     *
+     * @return y of the highest block of the column which reduces sky light, or one below the world if there is none
+     */
+    private int getSkyTop(int x, int z) {
+        int minY = this.getMinBlockY();
+        int y = this.getMaxBlockY();
+        while (y >= minY) {
+            this.select(x, y, z);
+            if (this.isSelectedSectionEmpty()) {
+                y = (y & ~0x0f) - 1;
+                continue;
+            }
+            // Not > 0, every block including air has a filter of at least 1
+            if (Block.getBlockLightFilter(this.getBlockId(x, y, z)) > 1) {
+                return y;
+            }
+            y--;
+        }
+        return minY - 1;
+    }
+}
@@ -0,0 +1,92 @@
+package cn.nukkit.level;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Splits the active chunks of a level into regions which can be ticked in parallel.
+ * Chunks closer to each other than the margin always end up in the same region, so work in one region
+ * does not reach chunks of another one. Regions are rebuilt every tick, so they merge and split as players move.
+ */
+public final class TickRegions {
+
+    private TickRegions() {
+    }
+
+    /**
+     * Partition chunks into regions.
+     *
+     * @param chunks distinct chunk hashes, see {@link Level#chunkHash(int, int)}
+     * @param margin chunks at most this many chunks apart on both axes are in the same region
+     * @param regions receives the region index of each chunk, from 0 to the returned count
+     * @return number of regions
+     */
+    public static int partition(long[] chunks, int margin, int[] regions) {
+        int count = chunks.length;
+        int[] parent = new int[count];
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+
+        // Chunks within the margin are always in the same or a neighbouring cell
+        int cellSize = margin + 1;
+        Long2ObjectMap<IntList> cells = new Long2ObjectOpenHashMap<>();
+        for (int i = 0; i < count; i++) {
+            long cell = Level.chunkHash(Math.floorDiv(Level.getHashX(chunks[i]), cellSize), Math.floorDiv(Level.getHashZ(chunks[i]), cellSize));
+            cells.computeIfAbsent(cell, c -> new IntArrayList()).add(i);
+        }
+
+        for (int i = 0; i < count; i++) {
+            int x = Level.getHashX(chunks[i]);
+            int z = Level.getHashZ(chunks[i]);
+            int cellX = Math.floorDiv(x, cellSize);
+            int cellZ = Math.floorDiv(z, cellSize);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    IntList cell = cells.get(Level.chunkHash(cellX + dx, cellZ + dz));
+                    if (cell == null) {
+                        continue;
+                    }
+
+                    for (int n = 0, size = cell.size(); n < size; n++) {
+                        int j = cell.getInt(n);
+                        if (j > i && Math.abs(Level.getHashX(chunks[j]) - x) <= margin && Math.abs(Level.getHashZ(chunks[j]) - z) <= margin) {
+                            union(parent, i, j);
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] index = new int[count];
+        int regionCount = 0;
+        for (int i = 0; i < count; i++) {
+            int root = find(parent, i);
+            if (root == i) {
+                index[i] = regionCount++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            regions[i] = index[find(parent, i)];
+        }
+        return regionCount;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
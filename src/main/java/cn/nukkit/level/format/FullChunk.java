@@ -4,6 +4,7 @@ import cn.nukkit.block.Block;
 import cn.nukkit.block.BlockLayer;
 import cn.nukkit.blockentity.BlockEntity;
 import cn.nukkit.entity.Entity;
+import cn.nukkit.level.EntityVisitor;
 import cn.nukkit.level.util.PalettedBlockStorage;
 
 import java.io.IOException;
@@ -164,6 +165,22 @@ public interface FullChunk extends Cloneable {
 
     void removeEntity(Entity entity);
 
+    /**
+     * Move an entity of this chunk to the section of its current position, must be called after it moved vertically.
+     */
+    void updateEntitySection(Entity entity);
+
+    /**
+     * Visit the entities of this chunk which can reach into a height range.
+     * The visitor may close the entity it visits, but must not add entities to the chunk.
+     *
+     * @param minY minimum y
+     * @param maxY maximum y
+     * @param visitor visitor, returning false stops the query
+     * @return false if the visitor stopped the query
+     */
+    boolean visitEntities(double minY, double maxY, EntityVisitor visitor);
+
     void addBlockEntity(BlockEntity blockEntity);
 
     void removeBlockEntity(BlockEntity blockEntity);
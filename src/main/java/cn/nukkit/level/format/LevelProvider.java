@@ -6,6 +6,7 @@ import cn.nukkit.level.format.generic.BaseFullChunk;
 import cn.nukkit.math.Vector3;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author MagicDroidX
@@ -60,6 +61,37 @@ public interface LevelProvider {
 
     void setChunk(int chunkX, int chunkZ, FullChunk chunk);
 
+    /**
+     * Read a chunk from the storage without registering it as loaded.
+     * The returned future may complete on a worker thread with null if the chunk does not exist.
+     * Providers which can not read chunks concurrently load them on the calling thread.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return future of the read chunk
+     */
+    default CompletableFuture<BaseFullChunk> loadChunkAsync(int chunkX, int chunkZ) {
+        return CompletableFuture.completedFuture(this.getChunk(chunkX, chunkZ, false));
+    }
+
+    /**
+     * Register a chunk returned by {@link #loadChunkAsync(int, int)} as loaded.
+     * Must be called from the main thread.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @param chunk read chunk
+     * @return the chunk now loaded at the given position, which may differ if it was loaded in the meantime
+     */
+    default BaseFullChunk attachChunk(int chunkX, int chunkZ, BaseFullChunk chunk) {
+        BaseFullChunk loaded = this.getLoadedChunk(chunkX, chunkZ);
+        if (loaded != null || chunk == null) {
+            return loaded;
+        }
+        this.setChunk(chunkX, chunkZ, chunk);
+        return chunk;
+    }
+
     String getName();
 
     boolean isRaining();
@@ -10,6 +10,7 @@ import cn.nukkit.level.generator.Generator;
 import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.CompoundTag;
 import cn.nukkit.utils.ChunkException;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
 import java.io.File;
@@ -27,6 +28,11 @@ import java.util.regex.Pattern;
  */
 public class Anvil extends BaseLevelProvider {
 
+    /**
+     * Maximum number of region files kept open, the least recently used one is closed to open another one
+     */
+    public static final int MAX_OPEN_REGIONS = 64;
+
     public Anvil(Level level, String path) throws IOException {
         super(level, path);
     }
@@ -193,12 +199,17 @@ public class Anvil extends BaseLevelProvider {
     protected synchronized BaseRegionLoader loadRegion(int x, int z) {
         BaseRegionLoader tmp = lastRegion.get();
         if (tmp != null && x == tmp.getX() && z == tmp.getZ()) {
+            // Keep the garbage collection from closing it while it is used
+            tmp.lastUsed = System.currentTimeMillis();
             return tmp;
         }
         long index = Level.chunkHash(x, z);
         synchronized (regions) {
             BaseRegionLoader region = this.regions.get(index);
             if (region == null) {
+                if (this.regions.size() >= MAX_OPEN_REGIONS) {
+                    this.closeLeastRecentlyUsedRegion();
+                }
                 try {
                     region = new RegionLoader(this, x, z);
                 } catch (IOException e) {
@@ -206,8 +217,30 @@ public class Anvil extends BaseLevelProvider {
                 }
                 this.regions.put(index, region);
             }
+            region.lastUsed = System.currentTimeMillis();
             lastRegion.set(region);
             return region;
         }
     }
+
+    private void closeLeastRecentlyUsedRegion() {
+        long index = 0;
+        BaseRegionLoader oldest = null;
+        for (Long2ObjectMap.Entry<BaseRegionLoader> entry : this.regions.long2ObjectEntrySet()) {
+            if (oldest == null || entry.getValue().lastUsed < oldest.lastUsed) {
+                index = entry.getLongKey();
+                oldest = entry.getValue();
+            }
+        }
+
+        if (oldest != null) {
+            try {
+                oldest.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to close RegionLoader", e);
+            }
+            this.regions.remove(index);
+            lastRegion.compareAndSet(oldest, null);
+        }
+    }
 }
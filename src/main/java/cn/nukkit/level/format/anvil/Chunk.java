@@ -7,17 +7,25 @@ import cn.nukkit.entity.Entity;
 import cn.nukkit.level.format.LevelProvider;
 import cn.nukkit.level.format.anvil.palette.BiomePalette;
 import cn.nukkit.level.format.generic.BaseChunk;
+import cn.nukkit.level.format.generic.BaseRegionLoader;
 import cn.nukkit.level.format.generic.EmptyChunkSection;
 import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.*;
 import cn.nukkit.utils.*;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * @author MagicDroidX
@@ -239,6 +247,31 @@ public class Chunk extends BaseChunk {
         }
     }
 
+    /**
+     * Read a chunk straight from compressed region data, without copying it to an array first.
+     *
+     * @param data compressed chunk, from its position to its limit
+     * @param compression {@link BaseRegionLoader#COMPRESSION_ZLIB} or {@link BaseRegionLoader#COMPRESSION_GZIP}
+     * @param provider level provider
+     * @return chunk or null if the data is not a valid chunk
+     */
+    public static Chunk fromBinary(ByteBuffer data, byte compression, LevelProvider provider) {
+        InputStream compressed = new ByteBufInputStream(Unpooled.wrappedBuffer(data));
+        try (InputStream stream = new BufferedInputStream(compression == BaseRegionLoader.COMPRESSION_GZIP ?
+                new GZIPInputStream(compressed) : new InflaterInputStream(compressed))) {
+            CompoundTag chunk = NBTIO.read(stream, ByteOrder.BIG_ENDIAN);
+
+            Tag levelTag = chunk.get("Level");
+            if (!(levelTag instanceof CompoundTag)) {
+                return null;
+            }
+
+            return new Chunk(provider, (CompoundTag) levelTag);
+        } catch (Exception e) {
+            Server.getInstance().getLogger().logException(e);
+            return null;
+        }
+    }
 
     public static Chunk fromFastBinary(byte[] data) {
         return fromFastBinary(data, null);
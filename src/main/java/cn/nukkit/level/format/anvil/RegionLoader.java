@@ -4,14 +4,15 @@ import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.level.format.LevelProvider;
 import cn.nukkit.level.format.generic.BaseRegionLoader;
 import cn.nukkit.utils.*;
+import com.google.common.io.ByteStreams;
 
-import java.io.EOFException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @author MagicDroidX
@@ -23,16 +24,27 @@ public class RegionLoader extends BaseRegionLoader {
         super(level, regionX, regionZ, "mca");
     }
 
+    private int getSectorOffset(int index) {
+        return this.locationTable[index] >>> 8;
+    }
+
+    private int getSectorCount(int index) {
+        return this.locationTable[index] & 0xff;
+    }
+
+    private void setLocation(int index, int sectorOffset, int sectorCount) {
+        this.locationTable[index] = (sectorOffset << 8) | (sectorCount & 0xff);
+    }
+
     @Override
     protected boolean isChunkGenerated(int index) {
-        Integer[] array = this.locationTable.get(index);
-        return !(array[0] == 0 || array[1] == 0);
+        return !(this.getSectorOffset(index) == 0 || this.getSectorCount(index) == 0);
     }
 
     @Override
-    public Chunk readChunk(int x, int z) throws IOException {
+    public synchronized Chunk readChunk(int x, int z) throws IOException {
         int index = getChunkOffset(x, z);
-        if (index < 0 || index >= 4096) {
+        if (index < 0 || index >= 1024) {
             return null;
         }
 
@@ -42,50 +54,50 @@ public class RegionLoader extends BaseRegionLoader {
             return null;
         }
 
-        try {
-            Integer[] table = this.locationTable.get(index);
-            RandomAccessFile raf = this.getRandomAccessFile();
-            raf.seek(table[0] << 12);
-            int length = raf.readInt();
-            byte compression = raf.readByte();
-            if (length <= 0 || length >= MAX_SECTOR_LENGTH) {
-                if (length >= MAX_SECTOR_LENGTH) {
-                    table[0] = ++this.lastSector;
-                    table[1] = 1;
-                    this.locationTable.put(index, table);
-                    MainLogger.getLogger().error("Corrupted chunk header detected (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
-                }
-                return null;
-            }
+        int sectorOffset = this.getSectorOffset(index);
+        ByteBuffer buffer = this.mapSectors(sectorOffset);
+        if (buffer == null || buffer.remaining() < 5) {
+            MainLogger.getLogger().error("World corruption occurred (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
+            return null;
+        }
 
-            if (length > (table[1] << 12)) {
-                MainLogger.getLogger().error("Corrupted bigger chunk detected (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
-                table[1] = length >> 12;
-                this.locationTable.put(index, table);
-                this.writeLocationIndex(index);
-            } else if (compression != COMPRESSION_ZLIB && compression != COMPRESSION_GZIP) {
-                MainLogger.getLogger().error("Invalid compression type (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
-                return null;
+        int length = buffer.getInt();
+        byte compression = buffer.get();
+        if (length <= 0 || length >= MAX_SECTOR_LENGTH) {
+            if (length >= MAX_SECTOR_LENGTH) {
+                this.setLocation(index, ++this.lastSector, 1);
+                MainLogger.getLogger().error("Corrupted chunk header detected (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
             }
+            return null;
+        }
 
-            byte[] data = new byte[length - 1];
-            raf.readFully(data);
-            Chunk chunk = this.unserializeChunk(data);
-            if (chunk != null) {
-                return chunk;
-            } else {
-                MainLogger.getLogger().error("Corrupted chunk detected (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
-                return null;
-            }
-            } catch (EOFException e) {
+        if (length > (this.getSectorCount(index) << 12)) {
+            MainLogger.getLogger().error("Corrupted bigger chunk detected (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
+            this.setLocation(index, sectorOffset, length >> 12);
+            this.writeLocationIndex(index);
+        } else if (compression != COMPRESSION_ZLIB && compression != COMPRESSION_GZIP) {
+            MainLogger.getLogger().error("Invalid compression type (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
+            return null;
+        }
+
+        if (length - 1 > buffer.remaining()) {
             MainLogger.getLogger().error("World corruption occurred (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
             return null;
         }
+
+        buffer.limit(buffer.position() + length - 1);
+        Chunk chunk = this.unserializeChunk(buffer, compression);
+        if (chunk != null) {
+            return chunk;
+        } else {
+            MainLogger.getLogger().error("Corrupted chunk detected (" + x + ", " + z + ") (" + this.levelProvider.getName() + "/r." + this.x + "." + this.z + ".mca)");
+            return null;
+        }
     }
 
     @Override
-    protected Chunk unserializeChunk(byte[] data) {
-        return Chunk.fromBinary(data, this.levelProvider);
+    protected Chunk unserializeChunk(ByteBuffer data, byte compression) {
+        return Chunk.fromBinary(data, compression, this.levelProvider);
     }
 
     @Override
@@ -94,44 +106,35 @@ public class RegionLoader extends BaseRegionLoader {
     }
 
     @Override
-    protected void saveChunk(int x, int z, byte[] chunkData) throws IOException {
+    protected synchronized void saveChunk(int x, int z, byte[] chunkData) throws IOException {
         int length = chunkData.length + 1;
-        if (length + 4 > MAX_SECTOR_LENGTH) {
-            throw new ChunkException("Chunk [" + x + ", " + z + "] is too big! " + (length + 4) + " > " + MAX_SECTOR_LENGTH);
+        int sectors = (length + 4 + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        // The sector count has to fit into a byte of the location table
+        if (sectors > 0xff) {
+            throw new ChunkException("Chunk [" + x + ", " + z + "] is too big! " + (length + 4) + " > " + (0xff << 12));
         }
-        int sectors = (int) Math.ceil((length + 4) / 4096d);
         int index = getChunkOffset(x, z);
         boolean indexChanged = false;
-        Integer[] table = this.locationTable.get(index);
+        int sectorOffset = this.getSectorOffset(index);
+        int sectorCount = this.getSectorCount(index);
 
-        if (table[1] < sectors) {
-            table[0] = this.lastSector + 1;
-            this.locationTable.put(index, table);
+        if (sectorCount < sectors) {
+            sectorOffset = this.lastSector + 1;
             this.lastSector += sectors;
             indexChanged = true;
-        } else if (table[1] != sectors) {
+        } else if (sectorCount != sectors) {
             indexChanged = true;
         }
 
-        table[1] = sectors;
-        table[2] = (int) (System.currentTimeMillis() / 1000d);
-
-        this.locationTable.put(index, table);
-        RandomAccessFile raf = this.getRandomAccessFile();
-        raf.seek(table[0] << 12);
-
-        BinaryStream stream = new BinaryStream(new byte[5 + chunkData.length]).reset();
-        stream.put(Binary.writeInt(length));
-        stream.putByte(COMPRESSION_ZLIB);
-        stream.put(chunkData);
-        byte[] data = stream.getBuffer();
-        if (data.length < sectors << 12) {
-            byte[] newData = new byte[sectors << 12];
-            System.arraycopy(data, 0, newData, 0, data.length);
-            data = newData;
-        }
+        this.setLocation(index, sectorOffset, sectors);
+        this.timestampTable[index] = (int) (System.currentTimeMillis() / 1000d);
 
-        raf.write(data);
+        ByteBuffer buffer = ByteBuffer.allocate(sectors << 12);
+        buffer.putInt(length);
+        buffer.put(COMPRESSION_ZLIB);
+        buffer.put(chunkData);
+        buffer.clear();
+        this.writeSectors(sectorOffset, buffer);
 
         if (indexChanged) {
             this.writeLocationIndex(index);
@@ -140,11 +143,7 @@ public class RegionLoader extends BaseRegionLoader {
 
     @Override
     public void removeChunk(int x, int z) {
-        int index = getChunkOffset(x, z);
-        Integer[] table = this.locationTable.get(0);
-        table[0] = 0;
-        table[1] = 0;
-        this.locationTable.put(index, table);
+        this.setLocation(getChunkOffset(x, z), 0, 0);
     }
 
     @Override
@@ -159,50 +158,58 @@ public class RegionLoader extends BaseRegionLoader {
     }
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        if (this.isClosed()) {
+            return;
+        }
         this.writeLocationTable();
         this.levelProvider = null;
         super.close();
     }
 
     @Override
-    public int doSlowCleanUp() throws Exception {
-        RandomAccessFile raf = this.getRandomAccessFile();
+    public synchronized int doSlowCleanUp() throws Exception {
         for (int i = 0; i < 1024; i++) {
-            Integer[] table = this.locationTable.get(i);
-            if (table[0] == 0 || table[1] == 0) {
+            if (!this.isChunkGenerated(i)) {
                 continue;
             }
-            raf.seek(table[0] << 12);
-            byte[] chunk = new byte[table[1] << 12];
-            raf.readFully(chunk);
-            int length = Binary.readInt(Arrays.copyOfRange(chunk, 0, 3));
-            if (length <= 1) {
-                this.locationTable.put(i, (table = new Integer[]{0, 0, 0}));
+
+            int sectorOffset = this.getSectorOffset(i);
+            ByteBuffer buffer = this.mapSectors(sectorOffset);
+            int length = buffer == null || buffer.remaining() < 5 ? 0 : buffer.getInt();
+            if (length <= 1 || length > buffer.remaining()) {
+                this.setLocation(i, 0, 0);
+                continue;
+            }
+            byte compression = buffer.get();
+            if (compression != COMPRESSION_ZLIB && compression != COMPRESSION_GZIP) {
+                // Keep chunks which can't be read here, like the read path does
+                continue;
             }
+
+            byte[] chunk = new byte[length - 1];
+            buffer.get(chunk);
             try {
-                chunk = Zlib.inflate(Arrays.copyOf(chunk, 5));
+                chunk = compression == COMPRESSION_GZIP ? inflateGzip(chunk) : Zlib.inflate(chunk);
             } catch (Exception e) {
-                this.locationTable.put(i, new Integer[]{0, 0, 0});
+                this.setLocation(i, 0, 0);
                 continue;
             }
             chunk = Zlib.deflate(chunk, 9);
-            ByteBuffer buffer = ByteBuffer.allocate(4 + 1 + chunk.length);
-            buffer.put(Binary.writeInt(chunk.length + 1));
-            buffer.put(COMPRESSION_ZLIB);
-            buffer.put(chunk);
-            chunk = buffer.array();
-            int sectors = (int) Math.ceil(chunk.length / 4096d);
-            if (sectors > table[1]) {
-                table[0] = this.lastSector + 1;
+
+            int sectors = (chunk.length + 5 + SECTOR_BYTES - 1) / SECTOR_BYTES;
+            if (sectors > this.getSectorCount(i)) {
+                sectorOffset = this.lastSector + 1;
                 this.lastSector += sectors;
-                this.locationTable.put(i, table);
             }
-            raf.seek(table[0] << 12);
-            byte[] bytes = new byte[sectors << 12];
-            ByteBuffer buffer1 = ByteBuffer.wrap(bytes);
-            buffer1.put(chunk);
-            raf.write(buffer1.array());
+            this.setLocation(i, sectorOffset, sectors);
+
+            ByteBuffer data = ByteBuffer.allocate(sectors << 12);
+            data.putInt(chunk.length + 1);
+            data.put(COMPRESSION_ZLIB);
+            data.put(chunk);
+            data.clear();
+            this.writeSectors(sectorOffset, data);
         }
         this.writeLocationTable();
         int n = this.cleanGarbage();
@@ -210,104 +217,97 @@ public class RegionLoader extends BaseRegionLoader {
         return n;
     }
 
+    private static byte[] inflateGzip(byte[] data) throws IOException {
+        try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return ByteStreams.toByteArray(stream);
+        }
+    }
+
     @Override
     protected void loadLocationTable() throws IOException {
-        RandomAccessFile raf = this.getRandomAccessFile();
-        raf.seek(0);
+        ByteBuffer header = this.getHeader();
         this.lastSector = 1;
-        int[] data = new int[2048]; //1024 records * 2 times
-        for (int i = 0; i < 2048; i++) {
-            data[i] = raf.readInt();
-        }
         for (int i = 0; i < 1024; ++i) {
-            int index = data[i];
-            this.locationTable.put(i, new Integer[]{index >> 8, index & 0xff, data[1024 + i]});
-            int value = this.locationTable.get(i)[0] + this.locationTable.get(i)[1] - 1;
+            this.locationTable[i] = header.getInt(i << 2);
+            this.timestampTable[i] = header.getInt(SECTOR_BYTES + (i << 2));
+            int value = this.getSectorOffset(i) + this.getSectorCount(i) - 1;
             if (value > this.lastSector) {
                 this.lastSector = value;
             }
         }
     }
 
-    private void writeLocationTable() throws IOException {
-        RandomAccessFile raf = this.getRandomAccessFile();
-        raf.seek(0);
+    private void writeLocationTable() {
+        ByteBuffer header = this.getHeader();
         for (int i = 0; i < 1024; ++i) {
-            Integer[] array = this.locationTable.get(i);
-            raf.writeInt((array[0] << 8) | array[1]);
-        }
-        for (int i = 0; i < 1024; ++i) {
-            Integer[] array = this.locationTable.get(i);
-            raf.writeInt(array[2]);
+            header.putInt(i << 2, this.locationTable[i]);
+            header.putInt(SECTOR_BYTES + (i << 2), this.timestampTable[i]);
         }
     }
 
+    /**
+     * Move all chunks to the beginning of the file, so there are no unused sectors between them, and cut the file.
+     *
+     * @return number of freed sectors
+     */
     private int cleanGarbage() throws IOException {
-        RandomAccessFile raf = this.getRandomAccessFile();
         Map<Integer, Integer> sectors = new TreeMap<>();
-        this.locationTable.forEach((key, value) -> {
-            int index = key;
-            if (value[0] == 0 || value[1] == 0) {
-                this.locationTable.put(index, new Integer[]{0, 0, 0});
-                return;
+        for (int i = 0; i < 1024; i++) {
+            if (!this.isChunkGenerated(i)) {
+                this.setLocation(i, 0, 0);
+                continue;
             }
-            sectors.put(value[0], index);
-        });
-
-        if (sectors.size() == (this.lastSector - 2)) {
-            return 0;
+            sectors.put(this.getSectorOffset(i), i);
         }
-        int shift = 0;
-        int lastSector = 1;
-
-        raf.seek(8192);
-        int s = 2;
-        for (int sector : sectors.keySet()) {
-            s = sector;
-            int index = sectors.get(sector);
-            if ((sector - lastSector) > 1) {
-                shift += sector - lastSector - 1;
-            }
-            if (shift > 0) {
-                raf.seek(sector << 12);
-                byte[] old = new byte[4096];
-                raf.readFully(old);
-                raf.seek((sector - shift) << 12);
-                raf.write(old);
+
+        int nextSector = 2;
+        for (Map.Entry<Integer, Integer> entry : sectors.entrySet()) {
+            int sectorOffset = entry.getKey();
+            int index = entry.getValue();
+            int sectorCount = this.getSectorCount(index);
+            if (sectorOffset != nextSector) {
+                ByteBuffer buffer = this.mapSectors(sectorOffset);
+                if (buffer == null) {
+                    this.setLocation(index, 0, 0);
+                    continue;
+                }
+
+                byte[] data = new byte[Math.min(sectorCount << 12, buffer.remaining())];
+                buffer.get(data);
+                this.writeSectors(nextSector, ByteBuffer.wrap(data));
+                this.setLocation(index, nextSector, sectorCount);
             }
-            Integer[] v = this.locationTable.get(index);
-            v[0] -= shift;
-            this.locationTable.put(index, v);
-            this.lastSector = sector;
+            nextSector += sectorCount;
         }
-        raf.setLength((s + 1) << 12);
-        return shift;
+
+        int freed = Math.max(0, this.lastSector + 1 - nextSector);
+        this.lastSector = nextSector - 1;
+        this.unmapSectors();
+        try {
+            this.getRandomAccessFile().setLength((long) nextSector << 12);
+        } catch (IOException e) {
+            // Some platforms refuse to cut mapped files, the trailing sectors are unused anyway
+            MainLogger.getLogger().debug("Unable to cut r." + this.x + "." + this.z + ".mca", e);
+        }
+        return freed;
     }
 
     @Override
     protected void writeLocationIndex(int index) throws IOException {
-        RandomAccessFile raf = this.getRandomAccessFile();
-        Integer[] array = this.locationTable.get(index);
-        raf.seek(index << 2);
-        raf.writeInt((array[0] << 8) | array[1]);
-        raf.seek(4096 + (index << 2));
-        raf.writeInt(array[2]);
+        ByteBuffer header = this.getHeader();
+        header.putInt(index << 2, this.locationTable[index]);
+        header.putInt(SECTOR_BYTES + (index << 2), this.timestampTable[index]);
     }
 
     @Override
     protected void createBlank() throws IOException {
-        RandomAccessFile raf = this.getRandomAccessFile();
-        raf.seek(0);
-        raf.setLength(0);
         this.lastSector = 1;
         int time = (int) (System.currentTimeMillis() / 1000d);
         for (int i = 0; i < 1024; ++i) {
-            this.locationTable.put(i, new Integer[]{0, 0, time});
-            raf.writeInt(0);
-        }
-        for (int i = 0; i < 1024; ++i) {
-            raf.writeInt(time);
+            this.locationTable[i] = 0;
+            this.timestampTable[i] = time;
         }
+        this.writeLocationTable();
     }
 
     @Override
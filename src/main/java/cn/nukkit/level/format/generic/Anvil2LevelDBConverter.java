@@ -10,40 +10,80 @@ import cn.nukkit.level.format.leveldb.LevelDBProvider;
 import cn.nukkit.level.format.leveldb.structure.LevelDBChunk;
 import cn.nukkit.level.generator.Generator;
 import cn.nukkit.nbt.tag.CompoundTag;
-import cn.nukkit.scheduler.TaskHandler;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
+import org.iq80.leveldb.WriteBatch;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.IntConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Converts an Anvil level to a new LevelDB level next to it.
+ * <p>
+ * Regions are converted in parallel, each one by a single worker which reads its chunks, converts them and writes them
+ * in large batches. Finished regions are recorded in a checkpoint file in the target level, so a conversion which was
+ * interrupted continues with the remaining regions when it is started again.
+ */
 public class Anvil2LevelDBConverter {
 
+    public static final String CHECKPOINT_FILE = "convert-progress.txt";
+    /**
+     * Number of chunks written to the database at once
+     */
+    private static final int CHUNKS_PER_BATCH = 256;
+
     private final Level sourceLevel;
     private final Level targetLevel;
+    private final Path checkpointPath;
+    private final Set<String> finishedRegions = new HashSet<>();
     private final ExecutorService executor;
 
+    private final AtomicInteger regionsConverted = new AtomicInteger();
+    private final AtomicInteger chunksConverted = new AtomicInteger();
+    private volatile int regionCount;
+    private volatile long startTime;
+
     public Anvil2LevelDBConverter(Level sourceLevel) {
+        this(sourceLevel, sourceLevel.getServer().getConfig("level-settings.convert-threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+    }
+
+    public Anvil2LevelDBConverter(Level sourceLevel, int threads) {
         this.sourceLevel = sourceLevel;
 
         Server server = sourceLevel.getServer();
         String levelName = sourceLevel.getFolderName() + "-convert";
+        this.checkpointPath = Paths.get("worlds/" + levelName + "/" + CHECKPOINT_FILE);
 
-        if (!server.generateLevel(levelName, 0, Generator.getGenerator("void"))) {
+        if (Files.exists(this.checkpointPath)) {
+            if (!server.loadLevel(levelName)) {
+                throw new IllegalStateException("Failed to load target level of the interrupted conversion: " + levelName);
+            }
+            try {
+                for (String line : Files.readAllLines(this.checkpointPath, StandardCharsets.UTF_8)) {
+                    if (!line.isEmpty()) {
+                        this.finishedRegions.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read conversion checkpoint of " + levelName, e);
+            }
+            server.getLogger().info("Resuming conversion of level " + sourceLevel.getFolderName() + ", " + this.finishedRegions.size() + " regions are done already");
+        } else if (!server.generateLevel(levelName, 0, Generator.getGenerator("void"))) {
             throw new IllegalStateException("Failed to generate target level, make sure it doesn't exist: " + levelName);
         }
 
@@ -58,19 +98,48 @@ public class Anvil2LevelDBConverter {
         this.targetLevel.setAutoSave(false);
         this.targetLevel.isBeingConverted = true;
 
-        // DO NOT INCREASE THREAD COUNT
-        this.executor = Executors.newFixedThreadPool(1, new ThreadFactoryBuilder()
-                .setNameFormat("Converted Thread " + sourceLevel.getFolderName() + " - %s")
-                .build());
+        ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("Converter #%d for " + sourceLevel.getFolderName());
+        builder.setDaemon(true);
+        builder.setUncaughtExceptionHandler((thread, ex) -> {
+            Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex);
+        });
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), builder.build());
+    }
+
+    /**
+     * Convert levels one after another, used to convert levels from the command line.
+     *
+     * @param server server
+     * @param levelNames names of the levels to convert
+     * @return future completed when all levels were converted
+     */
+    public static CompletableFuture<Void> convertLevels(Server server, Collection<String> levelNames) {
+        CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+        for (String levelName : levelNames) {
+            future = future.thenCompose(v -> {
+                if (!server.loadLevel(levelName)) {
+                    server.getLogger().error("Unable to convert level " + levelName + ", it could not be loaded");
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                Level level = server.getLevelByName(levelName);
+                if (!(level.getProvider() instanceof Anvil)) {
+                    server.getLogger().info("Level " + levelName + " is not in Anvil format, skipping it");
+                    return CompletableFuture.completedFuture(null);
+                }
+                return new Anvil2LevelDBConverter(level).convert();
+            });
+        }
+        return future;
     }
 
     public CompletableFuture<Void> convert() {
         try {
             return this.convertUnsafe();
         } catch (Exception e) {
-            throw new RuntimeException("Failed to convert level " + this.sourceLevel.getFolderName(), e);
-        } finally {
             this.executor.shutdown();
+            throw new RuntimeException("Failed to convert level " + this.sourceLevel.getFolderName(), e);
         }
     }
 
@@ -96,53 +165,68 @@ public class Anvil2LevelDBConverter {
         }
         this.targetLevel.setDimensionData(dimensionData);
 
+        if (!Files.exists(this.checkpointPath)) {
+            Files.createFile(this.checkpointPath);
+        }
+
         List<Path> regions = new ObjectArrayList<>();
         Path regionFolder = Paths.get("worlds/" + this.sourceLevel.getFolderName() + "/region");
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(regionFolder, "**.mca")) {
             for (Path path : stream) {
-                regions.add(path);
+                if (!this.finishedRegions.contains(path.getFileName().toString())) {
+                    regions.add(path);
+                }
             }
         }
 
-        AtomicInteger regionCounter = new AtomicInteger();
-        AtomicInteger chunksConverted = new AtomicInteger();
-        AtomicInteger chunksConvertedPerSecond = new AtomicInteger();
-
-        TaskHandler tickFuture = server.getScheduler().scheduleRepeatingTask(null, () ->
-                chunksConvertedPerSecond.set(0), 20);
-
-        IntConsumer callback = chunksCount -> {
-            chunksConverted.addAndGet(chunksCount);
-            int regionNumber = regionCounter.incrementAndGet();
-
-            int chps = chunksConvertedPerSecond.addAndGet(chunksCount);
-            String message = "[Convert-%s] [%s/%s] [%s chps] Converted %s chunks";
-            server.getLogger().info(String.format(message, this.sourceLevel.getFolderName(), regionNumber, regions.size(), chps, chunksCount));
-        };
+        this.regionCount = regions.size();
+        this.startTime = System.currentTimeMillis();
 
+        int maxY = nether ? 128 : 256;
         List<CompletableFuture<Void>> futures = new ObjectArrayList<>();
         for (Path regionPath : regions) {
-            CompletableFuture<Void> future = new CompletableFuture<>();
-            this.executor.execute(() -> {
-                convertRegion(regionPath, anvil, levelDBProvider, callback, nether ? 128 : 256);
-                future.complete(null);
-            });
-            futures.add(future);
+            futures.add(CompletableFuture.runAsync(() -> {
+                int chunks = this.convertRegion(regionPath, anvil, levelDBProvider, maxY);
+                this.regionFinished(regionPath, chunks);
+            }, this.executor));
         }
+        this.executor.shutdown();
 
         return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenCompleteAsync((v, error) -> {
-            server.getScheduler().cancelTask(tickFuture.getTaskId());
             if (error != null) {
-                server.getLogger().error("Failed to convert level " + this.sourceLevel.getFolderName(), error);
+                server.getLogger().error("Failed to convert level " + this.sourceLevel.getFolderName() + ", start the conversion again to resume it", error);
             } else {
                 this.convertFinished();
             }
         }, task -> server.getScheduler().scheduleTask(null, task));
     }
 
+    private void regionFinished(Path regionPath, int chunks) {
+        synchronized (this.finishedRegions) {
+            try {
+                Files.write(this.checkpointPath, (regionPath.getFileName().toString() + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to write conversion checkpoint", e);
+            }
+            this.finishedRegions.add(regionPath.getFileName().toString());
+        }
+
+        int regionNumber = this.regionsConverted.incrementAndGet();
+        this.chunksConverted.addAndGet(chunks);
+        String message = "[Convert-%s] [%s/%s] [%.1f chps] [ETA %ss] Converted %s chunks";
+        Server.getInstance().getLogger().info(String.format(message, this.sourceLevel.getFolderName(), regionNumber, this.regionCount,
+                this.getChunksPerSecond(), this.getRemainingSeconds(), chunks));
+    }
+
     private void convertFinished() {
         Server server = this.sourceLevel.getServer();
 
+        try {
+            Files.deleteIfExists(this.checkpointPath);
+        } catch (IOException e) {
+            server.getLogger().warning("Unable to delete conversion checkpoint " + this.checkpointPath);
+        }
+
         server.unloadLevel(this.targetLevel);
 
         if (sourceLevel.equals(server.getDefaultLevel())) {
@@ -154,68 +238,127 @@ public class Anvil2LevelDBConverter {
         server.getLogger().info("[Convert-" + this.sourceLevel.getFolderName() + "] All done! Converted level is saved under worlds/" + this.targetLevel.getFolderName() + "/");
     }
 
-    private static void convertRegion(Path regionFile, Anvil anvil, LevelDBProvider levelDBProvider, IntConsumer callback, int maxY) {
+    /**
+     * @return number of regions converted in this run
+     */
+    public int getRegionsConverted() {
+        return this.regionsConverted.get();
+    }
+
+    /**
+     * @return number of regions to convert in this run, without the ones finished by an interrupted run
+     */
+    public int getRegionCount() {
+        return this.regionCount;
+    }
+
+    public int getChunksConverted() {
+        return this.chunksConverted.get();
+    }
+
+    public double getChunksPerSecond() {
+        long elapsed = System.currentTimeMillis() - this.startTime;
+        return elapsed <= 0 ? 0 : this.chunksConverted.get() * 1000d / elapsed;
+    }
+
+    /**
+     * @return estimated seconds until all regions are converted
+     */
+    public long getRemainingSeconds() {
+        int converted = this.regionsConverted.get();
+        if (converted == 0) {
+            return -1;
+        }
+        long elapsed = System.currentTimeMillis() - this.startTime;
+        return elapsed * (this.regionCount - converted) / converted / 1000;
+    }
+
+    private int convertRegion(Path regionFile, Anvil anvil, LevelDBProvider levelDBProvider, int maxY) {
         RegionPosition regionPos = RegionPosition.fromPath(regionFile);
-        assert regionPos != null;
+        if (regionPos == null) {
+            return 0;
+        }
 
+        BaseRegionLoader regionLoader = null;
+        WriteBatch batch = levelDBProvider.createWriteBatch();
         try {
-            BaseRegionLoader regionLoader = new RegionLoader(anvil, regionPos.x, regionPos.z);
+            regionLoader = new RegionLoader(anvil, regionPos.x, regionPos.z);
             int chunks = 0;
+            int batched = 0;
             for (int x = 0; x < 32; x++) {
                 for (int z = 0; z < 32; z++) {
-                    int chunkX = regionPos.x << 5 | x;
-                    int chunkZ = regionPos.z << 5 | z;
-
-                    BaseFullChunk oldChunk = regionLoader.readChunk(chunkX - (getRegionIndexX(chunkX) << 5), chunkZ - (getRegionIndexZ(chunkZ) << 5)); // anvil.getChunk(chunkX, chunkZ, false);
+                    BaseFullChunk oldChunk = regionLoader.readChunk(x, z);
                     if (oldChunk == null || (!oldChunk.isPopulated() && !oldChunk.isGenerated())) {
                         continue;
                     }
 
+                    LevelDBChunk newChunk = levelDBProvider.getEmptyChunk(regionPos.x << 5 | x, regionPos.z << 5 | z);
+                    convertChunk(oldChunk, newChunk, maxY);
+                    levelDBProvider.saveChunk(batch, newChunk);
                     chunks++;
-                    BaseFullChunk newChunk = levelDBProvider.getChunk(chunkX, chunkZ, true);
-                    convertChunk(oldChunk, (LevelDBChunk) newChunk, levelDBProvider, anvil, maxY);
+
+                    if (++batched >= CHUNKS_PER_BATCH) {
+                        levelDBProvider.writeBatch(batch);
+                        batch = levelDBProvider.createWriteBatch();
+                        batched = 0;
+                    }
                 }
             }
 
-            callback.accept(chunks);
+            levelDBProvider.writeBatch(batch);
+            batch = null;
+            return chunks;
         } catch (IOException e) {
             throw new IllegalStateException("Failed to convert region " + regionPos, e);
+        } finally {
+            if (batch != null) {
+                try {
+                    batch.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (regionLoader != null) {
+                try {
+                    regionLoader.close();
+                } catch (IOException e) {
+                    Server.getInstance().getLogger().error("Unable to close region " + regionPos, e);
+                }
+            }
         }
     }
 
-    private static void convertChunk(BaseFullChunk oldChunk, LevelDBChunk newChunk, LevelDBProvider levelDBProvider, Anvil anvil, int maxY) {
-        oldChunk.initChunk();
+    private static void convertChunk(BaseFullChunk oldChunk, LevelDBChunk newChunk, int maxY) {
+        // Runs on the converter pool, so the chunk is never initialized: that would create entities and block entities
+        // in the source level and call plugins. Their NBT is copied as is and they are created when the level loads
         newChunk.setGenerated(true);
         newChunk.setPopulated(oldChunk.isPopulated());
 
         newChunk.setBiomeIdArray(oldChunk.getBiomeIdArray());
 
         newChunk.heightMap = Arrays.copyOf(oldChunk.getHeightMapArray(), oldChunk.getHeightMapArray().length);
-        newChunk.tiles = oldChunk.getBlockEntities();
-        newChunk.entities = oldChunk.getEntities();
-        newChunk.tileList = oldChunk.tileList;
-
-        for (int blockX = 0; blockX < 16; blockX++) {
-            for (int blockY = 0; blockY < maxY; blockY++) {
-                for (int blockZ = 0; blockZ < 16; blockZ++) {
-                    int fullId = oldChunk.getFullBlock(blockX, blockY, blockZ);
-                    newChunk.setFullBlockId(blockX, blockY, blockZ, fullId);
-                    newChunk.setBlockLight(blockX, blockY, blockZ, oldChunk.getBlockSkyLight(blockX, blockY, blockZ));
-                }
-            }
+        if (oldChunk.NBTtiles != null) {
+            newChunk.setNbtBlockEntities(new ArrayList<>(oldChunk.NBTtiles));
+        }
+        if (oldChunk.NBTentities != null) {
+            newChunk.setNbtEntities(new ArrayList<>(oldChunk.NBTentities));
         }
 
-        levelDBProvider.saveChunkSync(newChunk.getX(), newChunk.getZ(), newChunk);
-        levelDBProvider.unloadChunk(newChunk.getX(), newChunk.getZ(), false);
-        anvil.unloadChunk(oldChunk.getX(), oldChunk.getZ(), false);
-    }
-
-    protected static int getRegionIndexX(int chunkX) {
-        return chunkX >> 5;
-    }
+        for (int sectionY = 0; sectionY < maxY >> 4; sectionY++) {
+            // Nothing to copy from sections which were never written
+            if (oldChunk instanceof BaseChunk && ((BaseChunk) oldChunk).getSection(sectionY) instanceof EmptyChunkSection) {
+                continue;
+            }
 
-    protected static int getRegionIndexZ(int chunkZ) {
-        return chunkZ >> 5;
+            for (int blockX = 0; blockX < 16; blockX++) {
+                for (int blockY = sectionY << 4; blockY < (sectionY + 1) << 4; blockY++) {
+                    for (int blockZ = 0; blockZ < 16; blockZ++) {
+                        int fullId = oldChunk.getFullBlock(blockX, blockY, blockZ);
+                        newChunk.setFullBlockId(blockX, blockY, blockZ, fullId);
+                        newChunk.setBlockLight(blockX, blockY, blockZ, oldChunk.getBlockSkyLight(blockX, blockY, blockZ));
+                    }
+                }
+            }
+        }
     }
 
     @ToString
@@ -6,6 +6,7 @@ import cn.nukkit.blockentity.BlockEntity;
 import cn.nukkit.blockentity.PersistentDataContainerBlockEntity;
 import cn.nukkit.entity.Entity;
 import cn.nukkit.level.ChunkManager;
+import cn.nukkit.level.EntityVisitor;
 import cn.nukkit.level.Level;
 import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.level.format.LevelProvider;
@@ -17,14 +18,17 @@ import cn.nukkit.nbt.tag.ListTag;
 import cn.nukkit.nbt.tag.NumberTag;
 import cn.nukkit.nbt.tag.Tag;
 import cn.nukkit.network.protocol.BatchPacket;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author MagicDroidX
@@ -32,8 +36,20 @@ import java.util.Map;
  */
 public abstract class BaseFullChunk implements FullChunk, ChunkManager {
 
+    private static final AtomicLong VERSION_COUNTER = new AtomicLong();
+
     protected Map<Long, Entity> entities;
 
+    /**
+     * Entities by the chunk section their position is in, so queries only check the sections they touch
+     */
+    protected Int2ObjectMap<ObjectArrayList<Entity>> entitySections;
+
+    /**
+     * Highest bounding box of an entity seen in this chunk, entities can reach into the sections above theirs
+     */
+    protected double maxEntityHeight;
+
     protected Map<Long, BlockEntity> tiles;
 
     protected Map<Integer, BlockEntity> tileList;
@@ -62,6 +78,11 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
 
     protected long changes;
 
+    /**
+     * Unique stamp of the chunk contents, unlike {@link #changes} it is never reset on save
+     */
+    private volatile long version = VERSION_COUNTER.incrementAndGet();
+
     protected boolean isInit;
 
     protected BatchPacket chunkPacket;
@@ -74,6 +95,7 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
         } catch (CloneNotSupportedException e) {
             return null;
         }
+        chunk.version = VERSION_COUNTER.incrementAndGet();
 
         if (this.biomes != null) {
             chunk.biomes = this.biomes.clone();
@@ -101,6 +123,7 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
 
         // Not needed for chunk sending
         chunk.entities = null;
+        chunk.entitySections = null;
         chunk.tileList = null;
         chunk.NBTentities = null;
         chunk.NBTtiles = null;
@@ -323,8 +346,11 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
     public void addEntity(Entity entity) {
         if (this.entities == null) {
             this.entities = new Long2ObjectOpenHashMap<>();
+            this.entitySections = new Int2ObjectOpenHashMap<>();
+        }
+        if (this.entities.put(entity.getId(), entity) == null) {
+            this.addToSection(entity);
         }
-        this.entities.put(entity.getId(), entity);
         if (!(entity instanceof Player) && this.isInit) {
             this.setChanged();
         }
@@ -333,13 +359,102 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
     @Override
     public void removeEntity(Entity entity) {
         if (this.entities != null) {
-            this.entities.remove(entity.getId());
+            if (this.entities.remove(entity.getId()) != null) {
+                this.removeFromSection(entity);
+            }
             if (!(entity instanceof Player) && this.isInit) {
                 this.setChanged();
             }
         }
     }
 
+    @Override
+    public void updateEntitySection(Entity entity) {
+        if (this.entities == null || !this.entities.containsKey(entity.getId())) {
+            return;
+        }
+        if ((entity.getFloorY() >> 4) != entity.chunkSectionY) {
+            this.removeFromSection(entity);
+            this.addToSection(entity);
+        } else {
+            this.updateMaxEntityHeight(entity);
+        }
+    }
+
+    private void addToSection(Entity entity) {
+        int sectionY = entity.getFloorY() >> 4;
+        entity.chunkSectionY = sectionY;
+        ObjectArrayList<Entity> section = this.entitySections.get(sectionY);
+        if (section == null) {
+            section = new ObjectArrayList<>(4);
+            this.entitySections.put(sectionY, section);
+        }
+        section.add(entity);
+        this.updateMaxEntityHeight(entity);
+    }
+
+    private void removeFromSection(Entity entity) {
+        ObjectArrayList<Entity> section = this.entitySections.get(entity.chunkSectionY);
+        if (section == null) {
+            return;
+        }
+        int index = section.indexOf(entity);
+        if (index >= 0) {
+            // Order doesn't matter, move the last entity into the gap
+            Entity last = section.pop();
+            if (index < section.size()) {
+                section.set(index, last);
+            }
+        }
+    }
+
+    private void updateMaxEntityHeight(Entity entity) {
+        if (entity.boundingBox != null) {
+            double height = entity.boundingBox.getMaxY() - entity.y;
+            if (height > this.maxEntityHeight) {
+                this.maxEntityHeight = height;
+            }
+        }
+    }
+
+    @Override
+    public boolean visitEntities(double minY, double maxY, EntityVisitor visitor) {
+        if (this.entitySections == null || this.entitySections.isEmpty()) {
+            return true;
+        }
+
+        int minSection = NukkitMath.floorDouble(minY - this.maxEntityHeight) >> 4;
+        int maxSection = NukkitMath.floorDouble(maxY) >> 4;
+        if (maxSection - minSection >= this.entitySections.size()) {
+            // Fewer occupied sections than sections in range
+            for (Int2ObjectMap.Entry<ObjectArrayList<Entity>> entry : this.entitySections.int2ObjectEntrySet()) {
+                int sectionY = entry.getIntKey();
+                if (sectionY >= minSection && sectionY <= maxSection && !visitSection(entry.getValue(), visitor)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for (int sectionY = minSection; sectionY <= maxSection; sectionY++) {
+            ObjectArrayList<Entity> section = this.entitySections.get(sectionY);
+            if (section != null && !visitSection(section, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean visitSection(ObjectArrayList<Entity> section, EntityVisitor visitor) {
+        // Backwards, so the visitor can close the visited entity
+        for (int i = section.size() - 1; i >= 0; i--) {
+            if (i < section.size() && !visitor.visit(section.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void addBlockEntity(BlockEntity blockEntity) {
         if (this.tiles == null) {
@@ -516,6 +631,10 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
         return changes;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     @Override
     public boolean hasChanged() {
         return this.changes != 0;
@@ -524,6 +643,7 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
     @Override
     public void setChanged() {
         this.changes++;
+        this.version = VERSION_COUNTER.incrementAndGet();
         this.chunkPacket = null;
     }
 
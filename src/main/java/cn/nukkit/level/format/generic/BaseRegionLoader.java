@@ -2,12 +2,15 @@ package cn.nukkit.level.format.generic;
 
 import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.level.format.LevelProvider;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import io.netty.util.internal.PlatformDependent;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 
 /**
  * @author MagicDroidX
@@ -19,15 +22,31 @@ abstract public class BaseRegionLoader {
     public static final byte COMPRESSION_ZLIB = 2;
     public static final int MAX_SECTOR_LENGTH = 256 << 12;
 
+    public static final int SECTOR_BYTES = 4096;
+    public static final int HEADER_BYTES = SECTOR_BYTES << 1;
+
     protected int x;
     protected int z;
     protected int lastSector;
     protected LevelProvider levelProvider;
 
     private final RandomAccessFile randomAccessFile;
-
-    // TODO: A simple array will perform better and use less memory
-    protected final Int2ObjectMap<Integer[]> locationTable = new Int2ObjectOpenHashMap<>();
+    private final FileChannel channel;
+    /**
+     * Mapped location and timestamp tables at the beginning of the file
+     */
+    private final MappedByteBuffer header;
+    /**
+     * Read-only mapping of the whole file, remapped when the file grows
+     */
+    private MappedByteBuffer sectors;
+    private boolean closed;
+
+    /**
+     * Sector offset of each chunk shifted left by 8 bits, or-ed with its sector count, as stored in the header
+     */
+    protected final int[] locationTable = new int[1024];
+    protected final int[] timestampTable = new int[1024];
 
     public long lastUsed;
 
@@ -42,9 +61,10 @@ abstract public class BaseRegionLoader {
             if (!exists) {
                 file.createNewFile();
             }
-            // TODO: buffering is a temporary solution to chunk reading/writing being poorly optimized
-            //  - need to fix the code where it reads single bytes at a time from disk
             this.randomAccessFile = new RandomAccessFile(filePath, "rw");
+            this.channel = this.randomAccessFile.getChannel();
+            // Mapping the header grows new files to its size
+            this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
             if (!exists) {
                 this.createBlank();
             } else {
@@ -61,11 +81,77 @@ abstract public class BaseRegionLoader {
         return randomAccessFile;
     }
 
+    protected ByteBuffer getHeader() {
+        return this.header;
+    }
+
+    /**
+     * Get the file contents starting at a sector without copying them.
+     * The buffer is only valid until the loader writes, cleans up or closes, so callers must be synchronized on the loader.
+     *
+     * @param sector first sector
+     * @return read-only buffer positioned at the sector and limited to the end of the file, or null if the sector is
+     * beyond the end of the file
+     */
+    protected ByteBuffer mapSectors(int sector) throws IOException {
+        if (this.closed) {
+            throw new ClosedChannelException();
+        }
+
+        long position = (long) sector * SECTOR_BYTES;
+        if (this.sectors == null || position >= this.sectors.capacity()) {
+            long size = this.channel.size();
+            if (position >= size) {
+                return null;
+            }
+            this.sectors = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        ByteBuffer buffer = this.sectors.duplicate();
+        buffer.position((int) position);
+        return buffer;
+    }
+
+    /**
+     * Write data to the file starting at a sector.
+     *
+     * @param sector first sector
+     * @param data data to write, its position is moved to its limit
+     */
+    protected void writeSectors(int sector, ByteBuffer data) throws IOException {
+        long position = (long) sector * SECTOR_BYTES;
+        while (data.hasRemaining()) {
+            position += this.channel.write(data, position);
+        }
+        if (this.sectors != null && position > this.sectors.capacity()) {
+            // The file grew, map it again on the next read
+            this.unmapSectors();
+        }
+    }
+
+    /**
+     * Release the mapping of the sectors, must be done before the file is truncated.
+     * Buffers returned by {@link #mapSectors(int)} must not be used afterwards.
+     */
+    protected void unmapSectors() {
+        if (this.sectors != null) {
+            unmap(this.sectors);
+            this.sectors = null;
+        }
+    }
+
+    /**
+     * Release a mapping right away instead of when it is garbage collected, which keeps the file open until then.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        PlatformDependent.freeDirectBuffer(buffer);
+    }
+
     protected abstract boolean isChunkGenerated(int index);
 
     public abstract BaseFullChunk readChunk(int x, int z) throws IOException;
 
-    protected abstract BaseFullChunk unserializeChunk(byte[] data);
+    protected abstract BaseFullChunk unserializeChunk(ByteBuffer data, byte compression);
 
     public abstract boolean chunkExists(int x, int z);
 
@@ -75,7 +161,19 @@ abstract public class BaseRegionLoader {
 
     public abstract void writeChunk(FullChunk chunk) throws Exception;
 
-    public void close() throws IOException {
+    protected boolean isClosed() {
+        return this.closed;
+    }
+
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        this.header.force();
+        this.unmapSectors();
+        unmap(this.header);
         if (randomAccessFile != null) randomAccessFile.close();
     }
 
@@ -92,6 +190,10 @@ abstract public class BaseRegionLoader {
     public abstract int getZ();
 
     public Integer[] getLocationIndexes() {
-        return this.locationTable.keySet().toArray(new Integer[0]);
+        Integer[] indexes = new Integer[this.locationTable.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
     }
 }
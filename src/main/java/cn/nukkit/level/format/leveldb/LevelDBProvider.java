@@ -57,6 +57,7 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static cn.nukkit.level.format.leveldb.LevelDBConstants.*;
@@ -74,6 +75,10 @@ public class LevelDBProvider implements LevelProvider {
     private int lastGcPosition = 0;
 
     private final ExecutorService executor;
+    private final ExecutorService loadExecutor;
+
+    private final Long2ObjectMap<CompletableFuture<BaseFullChunk>> loadingChunks = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+    private final Long2ObjectMap<NbtMap> pendingTicks = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
 
     private volatile boolean closed;
 
@@ -122,6 +127,15 @@ public class LevelDBProvider implements LevelProvider {
             Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex);
         });
         this.executor = Executors.newSingleThreadExecutor(builder.build());
+
+        ThreadFactoryBuilder loadBuilder = new ThreadFactoryBuilder();
+        loadBuilder.setNameFormat("LevelDB Chunk Loader #%d for " + this.getName());
+        loadBuilder.setDaemon(true);
+        loadBuilder.setUncaughtExceptionHandler((thread, ex) -> {
+            Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex);
+        });
+        int loadThreads = Math.max(1, level.getServer().getConfig("leveldb.chunk-load-threads", Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+        this.loadExecutor = Executors.newFixedThreadPool(loadThreads, loadBuilder.build());
     }
 
     @SuppressWarnings("unused")
@@ -266,21 +280,76 @@ public class LevelDBProvider implements LevelProvider {
         return this.chunks.containsKey(hash);
     }
 
-    private synchronized BaseFullChunk readOrCreateChunk(int chunkX, int chunkZ, boolean create) {
-        BaseFullChunk chunk = null;
+    private BaseFullChunk readOrCreateChunk(int chunkX, int chunkZ, boolean create) {
+        long index = Level.chunkHash(chunkX, chunkZ);
+        BaseFullChunk chunk = this.chunks.get(index);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        // Reuse an in-flight asynchronous read instead of reading the chunk twice. The provider lock is not held while
+        // reading, attachChunk keeps the chunk which was attached first if another thread read it meanwhile
+        CompletableFuture<BaseFullChunk> future = this.loadingChunks.get(index);
         try {
-            chunk = this.readChunk(chunkX, chunkZ);
+            chunk = future != null ? future.join() : this.readChunk(chunkX, chunkZ);
         } catch (Exception ex) {
             Server.getInstance().getLogger().error("Failed to read chunk " + chunkX + ", " + chunkZ, ex);
         }
 
-        if (chunk == null && create) {
-            chunk = this.getEmptyChunk(chunkX, chunkZ);
-        } else if (chunk == null) {
-            return null;
+        synchronized (this) {
+            if (chunk == null && create) {
+                chunk = this.getEmptyChunk(chunkX, chunkZ);
+            } else if (chunk == null) {
+                this.attachChunk(chunkX, chunkZ, null);
+                return null;
+            }
+
+            return this.attachChunk(chunkX, chunkZ, chunk);
+        }
+    }
+
+    @Override
+    public CompletableFuture<BaseFullChunk> loadChunkAsync(int chunkX, int chunkZ) {
+        long index = Level.chunkHash(chunkX, chunkZ);
+        BaseFullChunk chunk = this.chunks.get(index);
+        if (chunk != null) {
+            return CompletableFuture.completedFuture(chunk);
+        }
+
+        if (this.closed) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        synchronized (this.loadingChunks) {
+            CompletableFuture<BaseFullChunk> future = this.loadingChunks.get(index);
+            if (future == null) {
+                try {
+                    future = CompletableFuture.supplyAsync(() -> this.readChunk(chunkX, chunkZ), this.loadExecutor);
+                } catch (RejectedExecutionException e) {
+                    // Closed meanwhile
+                    return CompletableFuture.completedFuture(null);
+                }
+                this.loadingChunks.put(index, future);
+            }
+            return future;
+        }
+    }
+
+    @Override
+    public synchronized BaseFullChunk attachChunk(int chunkX, int chunkZ, BaseFullChunk chunk) {
+        long index = Level.chunkHash(chunkX, chunkZ);
+        this.loadingChunks.remove(index);
+        NbtMap ticks = this.pendingTicks.remove(index);
+
+        BaseFullChunk loaded = this.chunks.get(index);
+        if (loaded != null || chunk == null) {
+            return loaded;
         }
 
-        this.chunks.put(Level.chunkHash(chunkX, chunkZ), chunk);
+        this.chunks.put(index, chunk);
+        if (ticks != null) {
+            this.loadPendingBlockUpdates(ticks);
+        }
         return chunk;
     }
 
@@ -316,22 +385,24 @@ public class LevelDBProvider implements LevelProvider {
         BlockEntitySerializer.loadBlockEntities(this.db, chunkBuilder);
         EntitySerializer.loadEntities(this.db, chunkBuilder);
 
+        // Scheduling the block updates has to wait until the chunk is attached
         byte[] pendingBlockUpdates = this.db.get(LevelDBKey.PENDING_TICKS.getKey(chunkX, chunkZ, this.level.getDimension()));
         if (pendingBlockUpdates != null && pendingBlockUpdates.length > 0) {
-            loadPendingBlockUpdates(pendingBlockUpdates);
+            this.pendingTicks.put(Level.chunkHash(chunkX, chunkZ), readPendingBlockUpdates(pendingBlockUpdates));
         }
 
         return chunkBuilder.build();
     }
 
-    private void loadPendingBlockUpdates(byte[] data) {
-        NbtMap ticks;
+    private static NbtMap readPendingBlockUpdates(byte[] data) {
         try (ByteBufInputStream stream = new ByteBufInputStream(Unpooled.wrappedBuffer(data))) {
-            ticks = (NbtMap) NbtUtils.createReaderLE(stream).readTag();
+            return (NbtMap) NbtUtils.createReaderLE(stream).readTag();
         } catch (IOException ex) {
             throw new ChunkException("Corrupted block ticking data", ex);
         }
+    }
 
+    private void loadPendingBlockUpdates(NbtMap ticks) {
         int currentTick = ticks.getInt("currentTick");
 
         for (NbtMap nbtMap : ticks.getList("tickList", NbtType.COMPOUND)) {
@@ -414,6 +485,44 @@ public class LevelDBProvider implements LevelProvider {
 
     private WriteBatch save0(int chunkX, int chunkZ, LevelDBChunk chunk) {
         WriteBatch batch = this.db.createWriteBatch();
+        this.save0(batch, chunkX, chunkZ, chunk);
+        return batch;
+    }
+
+    /**
+     * Create a batch to save many chunks at once with {@link #saveChunk(WriteBatch, LevelDBChunk)}.
+     */
+    public WriteBatch createWriteBatch() {
+        return this.db.createWriteBatch();
+    }
+
+    /**
+     * Add a chunk to a batch created by {@link #createWriteBatch()}. Does not lock the chunk, so it must not be
+     * used by other threads.
+     *
+     * @param batch batch to add the chunk to
+     * @param chunk chunk to save
+     */
+    public void saveChunk(WriteBatch batch, LevelDBChunk chunk) {
+        if (!chunk.isGenerated()) {
+            return;
+        }
+        chunk.setChanged(false);
+        this.save0(batch, chunk.getX(), chunk.getZ(), chunk);
+    }
+
+    /**
+     * Write and close a batch created by {@link #createWriteBatch()}.
+     */
+    public void writeBatch(WriteBatch batch) throws IOException {
+        try {
+            this.db.write(batch);
+        } finally {
+            batch.close();
+        }
+    }
+
+    private void save0(WriteBatch batch, int chunkX, int chunkZ, LevelDBChunk chunk) {
         ChunkSerializers.serializeChunk(batch, chunk, LATEST_CHUNK_VERSION);
         if (chunk.has3dBiomes()) {
             Data3dSerializer.serialize(batch, chunk);
@@ -459,8 +568,6 @@ public class LevelDBProvider implements LevelProvider {
         } else {
             batch.delete(pendingBlockUpdatesKey);
         }
-
-        return batch;
     }
 
     private NbtMap savePendingBlockUpdates(Set<BlockUpdateEntry> entries, long currentTick) {
@@ -799,6 +906,20 @@ public class LevelDBProvider implements LevelProvider {
             return;
         }
 
+        // Reads which did not start yet are dropped, cancel their futures so nobody waits for them forever
+        this.loadExecutor.shutdownNow();
+        synchronized (this.loadingChunks) {
+            for (CompletableFuture<BaseFullChunk> future : this.loadingChunks.values()) {
+                future.cancel(false);
+            }
+            this.loadingChunks.clear();
+        }
+        try {
+            this.loadExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Server.getInstance().getLogger().error("Stopping LevelDB chunk loading interrupted", e);
+        }
+
         this.unloadChunksUnsafe(true);
         this.closed = true;
         this.level = null;
@@ -40,7 +40,9 @@ public class BlockEntitySerializer {
 
     public static void saveBlockEntities(WriteBatch db, LevelDBChunk chunk) {
         byte[] key = LevelDBKey.BLOCK_ENTITIES.getKey(chunk.getX(), chunk.getZ(), chunk.getProvider().getLevel().getDimension());
-        if (chunk.getBlockEntities().isEmpty()) {
+        // Chunks which were never initialized still have their block entities as NBT only
+        List<CompoundTag> pending = chunk.getNbtBlockEntities();
+        if (chunk.getBlockEntities().isEmpty() && (pending == null || pending.isEmpty())) {
             db.delete(key);
             return;
         }
@@ -55,6 +57,11 @@ public class BlockEntitySerializer {
                     NBTIO.write(blockEntity.namedTag, stream, ByteOrder.LITTLE_ENDIAN);
                 }
             }
+            if (pending != null) {
+                for (CompoundTag nbt : pending) {
+                    NBTIO.write(nbt, stream, ByteOrder.LITTLE_ENDIAN);
+                }
+            }
             value = stream.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException(e);
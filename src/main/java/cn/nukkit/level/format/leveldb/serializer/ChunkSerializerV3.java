@@ -38,7 +38,9 @@ public class ChunkSerializerV3 implements ChunkSerializer {
             ByteBuf buffer = ByteBufAllocator.DEFAULT.ioBuffer();
             try {
                 buffer.writeByte(LATEST_SUBCHUNK_VERSION);
-                ChunkSectionSerializers.serialize(buffer, section.getStorages(), ySection, LATEST_SUBCHUNK_VERSION);
+                ByteBuf sectionBuffer = buffer;
+                int sectionY = ySection;
+                section.writeStorages(storages -> ChunkSectionSerializers.serialize(sectionBuffer, storages, sectionY, LATEST_SUBCHUNK_VERSION));
 
                 byte[] payload = new byte[buffer.readableBytes()];
                 buffer.readBytes(payload);
@@ -43,7 +43,9 @@ public class EntitySerializer {
     public static void saveEntities(WriteBatch db, LevelDBChunk chunk) {
         byte[] key = LevelDBKey.ENTITIES.getKey(chunk.getX(), chunk.getZ(), chunk.getProvider().getLevel().getDimension());
         Collection<Entity> entities = chunk.getEntities().values();
-        if (entities.isEmpty()) {
+        // Chunks which were never initialized still have their entities as NBT only
+        List<CompoundTag> pending = chunk.getNbtEntities();
+        if (entities.isEmpty() && (pending == null || pending.isEmpty())) {
             db.delete(key);
             return;
         }
@@ -57,6 +59,11 @@ public class EntitySerializer {
                     serializeNbt(entity.namedTag, nbt -> writeSilently(nbt, stream));
                 }
             }
+            if (pending != null) {
+                for (CompoundTag nbt : pending) {
+                    serializeNbt(nbt, tag -> writeSilently(tag, stream));
+                }
+            }
             value = stream.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException("Can not create out stream", e);
@@ -85,10 +85,24 @@ public class LevelDBChunk extends BaseChunk {
         this.NBTtiles = blockEntities;
     }
 
+    /**
+     * @return block entities which are not created until the chunk is initialized, or null
+     */
+    public List<CompoundTag> getNbtBlockEntities() {
+        return this.NBTtiles;
+    }
+
     public void setNbtEntities(List<CompoundTag> entities) {
         this.NBTentities = entities;
     }
 
+    /**
+     * @return entities which are not created until the chunk is initialized, or null
+     */
+    public List<CompoundTag> getNbtEntities() {
+        return this.NBTentities;
+    }
+
     public void setBiomes3d(PalettedBlockStorage[] biomes3d) {
         this.biomes3d = biomes3d;
     }
@@ -13,6 +13,8 @@ import lombok.Getter;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 
 public class LevelDBChunkSection implements ChunkSection {
 
@@ -41,6 +43,11 @@ public class LevelDBChunkSection implements ChunkSection {
         this(y, new StateBlockStorage[]{new StateBlockStorage(), new StateBlockStorage()}, null, null, null, false, true);
     }
 
+    /**
+     * Guards the storages. Block reads are optimistic and only fall back to the read lock when they raced with a write.
+     */
+    private final StampedLock lock = new StampedLock();
+
     private StateBlockStorage computeStorage(BlockLayer layer) {
         if (this.storages.length <= layer.ordinal()) {
             throw new IllegalArgumentException("Tried to get layer " + layer + " but LevelDBChunkSection has only " + this.storages.length);
@@ -53,62 +60,135 @@ public class LevelDBChunkSection implements ChunkSection {
         return storage;
     }
 
+    /**
+     * @return storage of the layer or null if the layer has no blocks yet
+     */
+    private StateBlockStorage getStorage(BlockLayer layer) {
+        if (this.storages.length <= layer.ordinal()) {
+            throw new IllegalArgumentException("Tried to get layer " + layer + " but LevelDBChunkSection has only " + this.storages.length);
+        }
+        return this.storages[layer.ordinal()];
+    }
+
     @Override
     public int getBlockId(int x, int y, int z, BlockLayer layer) {
-        synchronized (this.storages) {
-            return this.computeStorage(layer).getBlockId(x, y, z);
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                StateBlockStorage storage = this.getStorage(layer);
+                int value = storage == null ? 0 : storage.getBlockId(x, y, z);
+                if (this.lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                // Saw the storage in the middle of a write, read it again under the lock
+            }
+        }
+
+        stamp = this.lock.readLock();
+        try {
+            StateBlockStorage storage = this.getStorage(layer);
+            return storage == null ? 0 : storage.getBlockId(x, y, z);
+        } finally {
+            this.lock.unlockRead(stamp);
         }
     }
 
     @Override
     public void setBlockId(int x, int y, int z, BlockLayer layer, int id) {
-        synchronized (this.storages) {
+        long stamp = this.lock.writeLock();
+        try {
             this.computeStorage(layer).setBlockId(x, y, z, id);
             if (layer != Block.LAYER_WATERLOGGED && id == 0 && this.hasSecondLayer()) {
                 this.computeStorage(Block.LAYER_WATERLOGGED).setBlockId(x, y, z, 0);
             }
+        } finally {
+            this.lock.unlockWrite(stamp);
         }
     }
 
     @Override
     public boolean setFullBlockId(int x, int y, int z, BlockLayer layer, int fullId) {
-        synchronized (this.storages) {
+        long stamp = this.lock.writeLock();
+        try {
             this.computeStorage(layer).setFullBlock(x, y, z, fullId);
             if (layer != Block.LAYER_WATERLOGGED && fullId == 0 && this.hasSecondLayer()) {
                 this.computeStorage(Block.LAYER_WATERLOGGED).setFullBlock(x, y, z, 0);
             }
+        } finally {
+            this.lock.unlockWrite(stamp);
         }
         return true;
     }
 
     @Override
     public int getBlockData(int x, int y, int z, BlockLayer layer) {
-        synchronized (this.storages) {
-            return this.computeStorage(layer).getBlockData(x, y, z);
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                StateBlockStorage storage = this.getStorage(layer);
+                int value = storage == null ? 0 : storage.getBlockData(x, y, z);
+                if (this.lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                // Saw the storage in the middle of a write, read it again under the lock
+            }
+        }
+
+        stamp = this.lock.readLock();
+        try {
+            StateBlockStorage storage = this.getStorage(layer);
+            return storage == null ? 0 : storage.getBlockData(x, y, z);
+        } finally {
+            this.lock.unlockRead(stamp);
         }
     }
 
     @Override
     public void setBlockData(int x, int y, int z, BlockLayer layer, int data) {
-        synchronized (this.storages) {
+        long stamp = this.lock.writeLock();
+        try {
             this.computeStorage(layer).setBlockData(x, y, z, data);
+        } finally {
+            this.lock.unlockWrite(stamp);
         }
     }
 
     @Override
     public int getFullBlock(int x, int y, int z, BlockLayer layer) {
-        synchronized (this.storages) {
-            return this.computeStorage(layer).getFullBlock(x, y, z);
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                StateBlockStorage storage = this.getStorage(layer);
+                int value = storage == null ? 0 : storage.getFullBlock(x, y, z);
+                if (this.lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                // Saw the storage in the middle of a write, read it again under the lock
+            }
+        }
+
+        stamp = this.lock.readLock();
+        try {
+            StateBlockStorage storage = this.getStorage(layer);
+            return storage == null ? 0 : storage.getFullBlock(x, y, z);
+        } finally {
+            this.lock.unlockRead(stamp);
         }
     }
 
     public Block getAndSetBlock(int x, int y, int z, BlockLayer layer, Block block) {
-        synchronized (this.storages) {
+        long stamp = this.lock.writeLock();
+        try {
             int fullId = this.computeStorage(layer).getAndSetFullBlock(x, y, z, block.getFullId());
             if (layer != Block.LAYER_WATERLOGGED && block.getId() == 0 && fullId != block.getFullId() && this.hasSecondLayer()) {
                 this.computeStorage(Block.LAYER_WATERLOGGED).setFullBlock(x, y, z, 0);
             }
             return Block.get(fullId, null, x, y, z, layer);
+        } finally {
+            this.lock.unlockWrite(stamp);
         }
     }
 
@@ -129,13 +209,16 @@ public class LevelDBChunkSection implements ChunkSection {
 
     @Override
     public boolean setBlockAtLayer(int x, int y, int z, BlockLayer layer, int blockId, int meta) {
-        synchronized (this.storages) {
+        long stamp = this.lock.writeLock();
+        try {
             int fullId = (blockId << Block.DATA_BITS) | meta;
             boolean success = this.computeStorage(layer).getAndSetFullBlock(x, y, z, fullId) != fullId;
             if (layer != Block.LAYER_WATERLOGGED && blockId == 0 && this.hasSecondLayer()) {
                 this.computeStorage(Block.LAYER_WATERLOGGED).setFullBlock(x, y, z, 0);
             }
             return success;
+        } finally {
+            this.lock.unlockWrite(stamp);
         }
     }
 
@@ -224,7 +307,9 @@ public class LevelDBChunkSection implements ChunkSection {
 
     @Override
     public void writeTo(BinaryStream stream) {
-        synchronized (this.storages) {
+        // Storages are compacted while written
+        long stamp = this.lock.writeLock();
+        try {
             boolean waterLogging = this.hasSecondLayer();
             stream.putByte((byte) 9); // SubChunk version
             stream.putByte((byte) (waterLogging ? 2 : 1)); // layers
@@ -233,6 +318,23 @@ public class LevelDBChunkSection implements ChunkSection {
             if (waterLogging) {
                 this.storages[1].writeTo(stream);
             }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Pass the storages to the writer while no other thread reads or modifies them. Storages are compacted while
+     * written, so they must not be written without this.
+     *
+     * @param writer writer of the storages
+     */
+    public void writeStorages(Consumer<StateBlockStorage[]> writer) {
+        long stamp = this.lock.writeLock();
+        try {
+            writer.accept(this.storages);
+        } finally {
+            this.lock.unlockWrite(stamp);
         }
     }
 
@@ -295,14 +397,24 @@ public class LevelDBChunkSection implements ChunkSection {
         return false;
     }
 
-    @Override
-    public ChunkSection copy() {
-        StateBlockStorage[] storages = new StateBlockStorage[this.storages.length];
-        for (int i = 0; i < this.storages.length; i++) {
-            if (this.storages[i] != null) {
-                storages[i] = this.storages[i].copy();
+    private StateBlockStorage[] copyStorages() {
+        long stamp = this.lock.readLock();
+        try {
+            StateBlockStorage[] storages = new StateBlockStorage[this.storages.length];
+            for (int i = 0; i < this.storages.length; i++) {
+                if (this.storages[i] != null) {
+                    storages[i] = this.storages[i].copy();
+                }
             }
+            return storages;
+        } finally {
+            this.lock.unlockRead(stamp);
         }
+    }
+
+    @Override
+    public ChunkSection copy() {
+        StateBlockStorage[] storages = this.copyStorages();
 
         return new LevelDBChunkSection(
                 this.y,
@@ -317,12 +429,7 @@ public class LevelDBChunkSection implements ChunkSection {
 
     @Override
     public ChunkSection copyForChunkSending() {
-        StateBlockStorage[] storages = new StateBlockStorage[this.storages.length];
-        for (int i = 0; i < this.storages.length; i++) {
-            if (this.storages[i] != null) {
-                storages[i] = this.storages[i].copy();
-            }
-        }
+        StateBlockStorage[] storages = this.copyStorages();
 
         return new LevelDBChunkSection(
                 this.y,
@@ -14,20 +14,35 @@ import org.cloudburstmc.nbt.NbtUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Paletted block states of one layer of a chunk section.
+ * <p>
+ * Palette indices are looked up through a reverse map. The palette only grows while blocks are set, so unused
+ * entries are dropped and the bit array is shrunk to the smallest version by {@link #compact()} before the storage
+ * is saved or sent to clients.
+ */
 public class StateBlockStorage {
     private static final Logger log = LogManager.getLogger("LevelDB-Logger");
 
     private static final int SECTION_SIZE = 4096;
 
     private final List<BlockStateSnapshot> palette;
+    private final Object2IntMap<BlockStateSnapshot> paletteIndex = new Object2IntOpenHashMap<>();
     private BitArray bitArray;
+    /**
+     * Whether the palette may contain unused entries
+     */
+    private boolean compactable;
 
     public StateBlockStorage() {
         this(BitArrayVersion.V2);
@@ -38,11 +53,30 @@ public class StateBlockStorage {
         this.palette = new ObjectArrayList<>(16);
         // Air is at the beginning of each palette
         this.palette.add(BlockStateMapping.get().getState(0, 0));
+        this.rebuildIndex();
     }
 
     public StateBlockStorage(BitArray bitArray, List<BlockStateSnapshot> palette) {
         this.palette = palette;
         this.bitArray = bitArray;
+        this.rebuildIndex();
+    }
+
+    private StateBlockStorage(StateBlockStorage storage) {
+        this.palette = new ObjectArrayList<>(storage.palette);
+        this.paletteIndex.defaultReturnValue(-1);
+        this.paletteIndex.putAll(storage.paletteIndex);
+        this.bitArray = storage.bitArray.copy();
+        this.compactable = storage.compactable;
+    }
+
+    private void rebuildIndex() {
+        this.paletteIndex.clear();
+        this.paletteIndex.defaultReturnValue(-1);
+        for (int i = 0; i < this.palette.size(); i++) {
+            // Keep the first entry of states which are in the palette twice, like indexOf would
+            this.paletteIndex.putIfAbsent(this.palette.get(i), i);
+        }
     }
 
     private int getPaletteHeader(BitArrayVersion version, boolean runtime) {
@@ -54,6 +88,7 @@ public class StateBlockStorage {
     }
 
     public void writeToStorage(ByteBuf buffer) {
+        this.compact();
         int paletteSize = this.palette.size();
         BitArrayVersion version = paletteSize <= 1 ? BitArrayVersion.V0 : this.bitArray.getVersion();
         buffer.writeByte(getPaletteHeader(version, false));
@@ -131,6 +166,8 @@ public class StateBlockStorage {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        this.rebuildIndex();
+        this.compactable = true;
     }
 
     public void setBlockState(int index, NbtMap state) {
@@ -145,6 +182,7 @@ public class StateBlockStorage {
         try {
             int id = this.idFor(state);
             this.bitArray.set(index, id);
+            this.compactable = true;
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Unable to set block state: " + state + ", palette: " + palette, e);
         }
@@ -209,6 +247,7 @@ public class StateBlockStorage {
     }
 
     public void writeTo(BinaryStream stream) {
+        this.compact();
         BitArray bitArray = this.bitArray;
 
         stream.putByte((byte) this.getPaletteHeader(bitArray.getVersion(), true));
@@ -232,8 +271,68 @@ public class StateBlockStorage {
         this.bitArray = newBitArray;
     }
 
+    /**
+     * Drop palette entries which are no longer used and shrink the bit array to the smallest version able to hold
+     * the remaining ones. Does nothing if no block was set since the last compaction.
+     */
+    public void compact() {
+        if (!this.compactable) {
+            return;
+        }
+        this.compactable = false;
+
+        int paletteSize = this.palette.size();
+        if (paletteSize <= 1) {
+            return;
+        }
+
+        int[] remap = new int[paletteSize];
+        Arrays.fill(remap, -1);
+        List<BlockStateSnapshot> palette = new ObjectArrayList<>(paletteSize);
+        Object2IntMap<BlockStateSnapshot> paletteIndex = new Object2IntOpenHashMap<>(paletteSize);
+        paletteIndex.defaultReturnValue(-1);
+        // The first entry, usually air, stays at the beginning
+        palette.add(this.palette.get(0));
+        paletteIndex.put(this.palette.get(0), 0);
+        remap[0] = 0;
+
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            int id = this.bitArray.get(i);
+            if (remap[id] == -1) {
+                BlockStateSnapshot state = this.palette.get(id);
+                int newId = paletteIndex.getInt(state);
+                if (newId == -1) {
+                    newId = palette.size();
+                    palette.add(state);
+                    paletteIndex.put(state, newId);
+                }
+                remap[id] = newId;
+            }
+        }
+
+        BitArrayVersion version = BitArrayVersion.V0;
+        while (version.getMaxEntryValue() < palette.size() - 1) {
+            version = version.next();
+        }
+        if (palette.size() == paletteSize && version == this.bitArray.getVersion()) {
+            return;
+        }
+
+        BitArray bitArray = version.createPalette();
+        if (version != BitArrayVersion.V0) {
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                bitArray.set(i, remap[this.bitArray.get(i)]);
+            }
+        }
+        this.bitArray = bitArray;
+        this.palette.clear();
+        this.palette.addAll(palette);
+        this.paletteIndex.clear();
+        this.paletteIndex.putAll(paletteIndex);
+    }
+
     private int idFor(BlockStateSnapshot state) {
-        int index = this.palette.indexOf(state);
+        int index = this.paletteIndex.getInt(state);
         if (index != -1) {
             return index;
         }
@@ -247,6 +346,7 @@ public class StateBlockStorage {
             }
         }
         this.palette.add(state);
+        this.paletteIndex.put(state, index);
         return index;
     }
 
@@ -267,6 +367,6 @@ public class StateBlockStorage {
     }
 
     public StateBlockStorage copy() {
-        return new StateBlockStorage(this.bitArray.copy(), new ObjectArrayList<>(this.palette));
+        return new StateBlockStorage(this);
     }
 }
@@ -135,7 +135,7 @@ public class FloatingTextParticle extends Particle {
         ArrayList<DataPacket> packets = new ArrayList<>();
 
         if (this.entityId == -1) {
-            this.entityId = Entity.entityCount++;
+            this.entityId = Entity.nextEntityId();
         } else {
             packets.add(getRemovePacket());
         }
@@ -0,0 +1,61 @@
+package cn.nukkit.math;
+
+import java.util.Arrays;
+
+/**
+ * Reusable list of bounding boxes. Boxes are kept between uses and overwritten, so filling the buffer does not allocate
+ * once it has grown to the needed size. Boxes returned by {@link #get(int)} are only valid until the buffer is cleared.
+ */
+public class AxisAlignedBBBuffer {
+
+    private SimpleAxisAlignedBB[] boxes = new SimpleAxisAlignedBB[16];
+    private int size;
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public AxisAlignedBB get(int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.boxes[index];
+    }
+
+    public void add(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (this.size == this.boxes.length) {
+            this.boxes = Arrays.copyOf(this.boxes, this.size << 1);
+        }
+
+        SimpleAxisAlignedBB bb = this.boxes[this.size];
+        if (bb == null) {
+            this.boxes[this.size] = new SimpleAxisAlignedBB(minX, minY, minZ, maxX, maxY, maxZ);
+        } else {
+            bb.setBounds(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        this.size++;
+    }
+
+    public void add(AxisAlignedBB bb) {
+        this.add(bb.getMinX(), bb.getMinY(), bb.getMinZ(), bb.getMaxX(), bb.getMaxY(), bb.getMaxZ());
+    }
+
+    /**
+     * @return copies of the boxes in the buffer
+     */
+    public AxisAlignedBB[] toArray() {
+        AxisAlignedBB[] array = new AxisAlignedBB[this.size];
+        for (int i = 0; i < this.size; i++) {
+            array[i] = this.boxes[i].clone();
+        }
+        return array;
+    }
+}
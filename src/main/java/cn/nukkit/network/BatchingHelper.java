@@ -3,9 +3,14 @@ package cn.nukkit.network;
 import cn.nukkit.Player;
 import cn.nukkit.Server;
 import cn.nukkit.event.server.BatchPacketsEvent;
+import cn.nukkit.network.protocol.BatchPacket;
 import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.session.NetworkPlayerSession;
+import cn.nukkit.utils.BinaryStream;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -25,10 +30,12 @@ public class BatchingHelper {
             return;
         }
 
-        BatchPacketsEvent ev = new BatchPacketsEvent(players, packets, true);
-        server.getPluginManager().callEvent(ev);
-        if (ev.isCancelled()) {
-            return;
+        if (server.getPluginManager().hasListeners(BatchPacketsEvent.class)) {
+            BatchPacketsEvent ev = new BatchPacketsEvent(players, packets, true);
+            server.getPluginManager().callEvent(ev);
+            if (ev.isCancelled()) {
+                return;
+            }
         }
 
         this.threadedExecutor.execute(() -> { // Maybe players could have separate threads assigned to them?
@@ -40,6 +47,53 @@ public class BatchingHelper {
         });
     }
 
+    /**
+     * Send the same packets to all players. The packets are batched and compressed once for each compression
+     * algorithm in use and the sessions only add their own prefix and encryption.
+     * Packets must be encoded already and must not be batch packets.
+     */
+    public void broadcastPackets(Server server, Player[] players, DataPacket[] packets) {
+        if (players == null || packets == null || players.length == 0 || packets.length == 0) {
+            return;
+        }
+
+        if (server.getPluginManager().hasListeners(BatchPacketsEvent.class)) {
+            BatchPacketsEvent ev = new BatchPacketsEvent(players, packets, true);
+            server.getPluginManager().callEvent(ev);
+            if (ev.isCancelled()) {
+                return;
+            }
+        }
+
+        // Copy the encoded packets now, callers may reuse them after this returns
+        BinaryStream batched = new BinaryStream();
+        for (DataPacket packet : packets) {
+            byte[] buf = packet.getBuffer();
+            batched.putUnsignedVarInt(buf.length);
+            batched.put(buf);
+        }
+
+        this.threadedExecutor.execute(() -> {
+            Map<CompressionProvider, BatchPacket> batches = new IdentityHashMap<>();
+            for (Player player : players) {
+                NetworkPlayerSession session = player.getNetworkSession();
+                CompressionProvider compression = session.getCompression();
+                BatchPacket batch = batches.get(compression);
+                if (batch == null) {
+                    batch = new BatchPacket();
+                    try {
+                        batch.payload = compression.compress(batched, server.networkCompressionLevel);
+                    } catch (Exception e) {
+                        server.getLogger().error("Unable to compress broadcast packets", e);
+                        continue;
+                    }
+                    batches.put(compression, batch);
+                }
+                session.sendPacket(batch);
+            }
+        });
+    }
+
     public void shutdown() {
         this.threadedExecutor.shutdownNow();
     }
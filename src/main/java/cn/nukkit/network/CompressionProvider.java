@@ -4,6 +4,9 @@ import cn.nukkit.network.protocol.types.PacketCompressionAlgorithm;
 import cn.nukkit.utils.BinaryStream;
 import cn.nukkit.utils.SnappyCompression;
 import cn.nukkit.utils.Zlib;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 
 public interface CompressionProvider {
 
@@ -13,6 +16,16 @@ public interface CompressionProvider {
             return packet.getBuffer();
         }
 
+        @Override
+        public void compress(ByteBuf uncompressed, ByteBuf compressed, int level) {
+            compressed.writeBytes(uncompressed);
+        }
+
+        @Override
+        public ByteBuf decompress(ByteBuf compressed, int maxSize) {
+            return compressed.readRetainedSlice(compressed.readableBytes());
+        }
+
         @Override
         public byte[] decompress(byte[] compressed) throws Exception {
             return compressed;
@@ -35,6 +48,16 @@ public interface CompressionProvider {
             return Zlib.deflateRaw(packet.getBuffer(), level);
         }
 
+        @Override
+        public void compress(ByteBuf uncompressed, ByteBuf compressed, int level) throws Exception {
+            Zlib.deflateRaw(uncompressed, compressed, level);
+        }
+
+        @Override
+        public ByteBuf decompress(ByteBuf compressed, int maxSize) throws Exception {
+            return Zlib.inflateRaw(compressed, maxSize);
+        }
+
         @Override
         public byte[] decompress(byte[] compressed) throws Exception {
             return Zlib.inflateRaw(compressed, 6291456);
@@ -57,6 +80,16 @@ public interface CompressionProvider {
             return SnappyCompression.compress(packet.getBuffer());
         }
 
+        @Override
+        public void compress(ByteBuf uncompressed, ByteBuf compressed, int level) throws Exception {
+            SnappyCompression.compress(uncompressed, compressed);
+        }
+
+        @Override
+        public ByteBuf decompress(ByteBuf compressed, int maxSize) throws Exception {
+            return SnappyCompression.decompress(compressed, maxSize);
+        }
+
         @Override
         public byte[] decompress(byte[] compressed) throws Exception {
             return SnappyCompression.decompress(compressed, 6291456);
@@ -77,10 +110,36 @@ public interface CompressionProvider {
     byte[] compress(BinaryStream packet, int level) throws Exception;
     byte[] decompress(byte[] compressed) throws Exception;
 
+    /**
+     * Compress the readable bytes of a buffer and append the result to another buffer.
+     *
+     * @param uncompressed data to compress, fully consumed
+     * @param compressed buffer the compressed data is written to
+     * @param level compression level
+     */
+    default void compress(ByteBuf uncompressed, ByteBuf compressed, int level) throws Exception {
+        byte[] data = ByteBufUtil.getBytes(uncompressed);
+        uncompressed.skipBytes(data.length);
+        compressed.writeBytes(this.compress(new BinaryStream(data), level));
+    }
+
     default byte[] decompress(byte[] compressed, int maxSize) throws Exception {
         return this.decompress(compressed);
     }
 
+    /**
+     * Decompress the readable bytes of a buffer.
+     *
+     * @param compressed compressed data, fully consumed
+     * @param maxSize maximum size of the decompressed data
+     * @return decompressed data, to be released by the caller
+     */
+    default ByteBuf decompress(ByteBuf compressed, int maxSize) throws Exception {
+        byte[] data = ByteBufUtil.getBytes(compressed);
+        compressed.skipBytes(data.length);
+        return Unpooled.wrappedBuffer(this.decompress(data, maxSize));
+    }
+
     static CompressionProvider from(PacketCompressionAlgorithm algorithm) {
         if (algorithm == null) {
             return NONE;
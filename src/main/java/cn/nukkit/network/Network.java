@@ -3,19 +3,20 @@ package cn.nukkit.network;
 import cn.nukkit.Nukkit;
 import cn.nukkit.Server;
 import cn.nukkit.network.protocol.*;
-import cn.nukkit.utils.BinaryStream;
 import cn.nukkit.utils.Utils;
 import cn.nukkit.utils.VarInt;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import lombok.extern.log4j.Log4j2;
 
-import java.io.ByteArrayInputStream;
+import java.lang.reflect.Constructor;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ProtocolException;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * @author MagicDroidX
@@ -25,7 +26,7 @@ import java.util.Set;
 @SuppressWarnings("unchecked")
 public class Network {
 
-    private Class<? extends DataPacket>[] packetPool = new Class[256];
+    private Supplier<? extends DataPacket>[] packetPool = newPacketPool();
 
     private final Server server;
 
@@ -122,7 +123,25 @@ public class Network {
     }
 
     public void registerPacket(byte id, Class<? extends DataPacket> clazz) {
-        this.packetPool[id & 0xff] = clazz;
+        Constructor<? extends DataPacket> constructor;
+        try {
+            constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Packet class " + clazz.getName() + " has no default constructor", e);
+        }
+
+        this.registerPacket(id, () -> {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create " + clazz.getSimpleName(), e);
+            }
+        });
+    }
+
+    public void registerPacket(byte id, Supplier<? extends DataPacket> supplier) {
+        this.packetPool[id & 0xff] = supplier;
     }
 
     public Server getServer() {
@@ -130,51 +149,72 @@ public class Network {
     }
 
     public void processBatch(byte[] payload, Collection<DataPacket> packets, CompressionProvider compression) throws Exception {
-        byte[] data = compression.decompress(payload, 6291456);
-
-        BinaryStream stream = new BinaryStream(data);
-        int count = 0;
-        while (!stream.feof()) {
-            count++;
-            if (count > 1300) {
-                throw new ProtocolException("Too big batch packet (count > 1300)");
-            }
-
-            byte[] buf = stream.getByteArray();
-            ByteArrayInputStream bais = new ByteArrayInputStream(buf);
+        this.processBatch(Unpooled.wrappedBuffer(payload), packets, compression);
+    }
 
-            int packetId = ((int) VarInt.readUnsignedVarInt(bais) & 0x3ff);
+    /**
+     * Decompress a batch and decode the packets in it. Only the bytes of known packets are copied out of the buffer.
+     *
+     * @param payload compressed batch, fully consumed
+     * @param packets collection decoded packets are added to
+     * @param compression compression of the batch
+     */
+    public void processBatch(ByteBuf payload, Collection<DataPacket> packets, CompressionProvider compression) throws Exception {
+        ByteBuf data = compression.decompress(payload, 6291456);
+        try {
+            int count = 0;
+            while (data.isReadable()) {
+                count++;
+                if (count > 1300) {
+                    throw new ProtocolException("Too big batch packet (count > 1300)");
+                }
 
-            // Use internal backwards compatible IDs until pid() is rewritten
-            DataPacket pk = this.getPacket(packetId >= 300 ? packetId - 100 : packetId);
-            if (pk == null) {
-                if (Nukkit.DEBUG > 1) {
-                    log.debug("Received unknown packet with ID: 0x{}", Integer.toHexString(packetId));
+                int length = (int) VarInt.readUnsignedVarInt(data);
+                if (length < 0 || length > data.readableBytes()) {
+                    throw new ProtocolException("Packet length " + length + " exceeds the batch");
+                }
+                int start = data.readerIndex();
+                int end = start + length;
+
+                int packetId = ((int) VarInt.readUnsignedVarInt(data) & 0x3ff);
+                int headerLength = data.readerIndex() - start;
+                data.readerIndex(end);
+
+                // Use internal backwards compatible IDs until pid() is rewritten
+                DataPacket pk = this.getPacket(packetId >= 300 ? packetId - 100 : packetId);
+                if (pk == null) {
+                    if (Nukkit.DEBUG > 1) {
+                        log.debug("Received unknown packet with ID: 0x{}", Integer.toHexString(packetId));
+                    }
+                    continue;
                 }
-                continue;
-            }
 
-            pk.setBuffer(buf, buf.length - bais.available());
+                byte[] buf = new byte[length];
+                data.getBytes(start, buf);
+                pk.setBuffer(buf, headerLength);
 
-            try {
-                pk.decode();
+                try {
+                    pk.decode();
 
-                if (Nukkit.DEBUG > 1 && pk.offset < pk.getRawBuffer().length) {
-                    log.debug(pk.getClass().getSimpleName() + " still has " + (pk.getRawBuffer().length - pk.offset) + " bytes to read!");
+                    if (Nukkit.DEBUG > 1 && pk.offset < pk.getRawBuffer().length) {
+                        log.debug(pk.getClass().getSimpleName() + " still has " + (pk.getRawBuffer().length - pk.offset) + " bytes to read!");
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException("Unable to decode " + pk.getClass().getSimpleName(), e);
                 }
-            } catch (Exception e) {
-                throw new IllegalStateException("Unable to decode " + pk.getClass().getSimpleName(), e);
-            }
 
-            packets.add(pk);
+                packets.add(pk);
+            }
+        } finally {
+            data.release();
         }
     }
 
     public DataPacket getPacket(int id) {
-        Class<? extends DataPacket> clazz = this.packetPool[id];
-        if (clazz != null) {
+        Supplier<? extends DataPacket> supplier = this.packetPool[id];
+        if (supplier != null) {
             try {
-                return clazz.newInstance();
+                return supplier.get();
             } catch (Exception e) {
                 Server.getInstance().getLogger().logException(e);
             }
@@ -206,63 +246,68 @@ public class Network {
         }
     }
 
+    @SuppressWarnings("rawtypes")
+    private static Supplier<? extends DataPacket>[] newPacketPool() {
+        return new Supplier[256];
+    }
+
     private void registerPackets() {
-        this.packetPool = new Class[256];
-
-        this.registerPacket(ProtocolInfo.BATCH_PACKET, BatchPacket.class);
-
-        this.registerPacket(ProtocolInfo.ANIMATE_PACKET, AnimatePacket.class);
-        this.registerPacket(ProtocolInfo.BLOCK_ENTITY_DATA_PACKET, BlockEntityDataPacket.class);
-        this.registerPacket(ProtocolInfo.BLOCK_PICK_REQUEST_PACKET, BlockPickRequestPacket.class);
-        this.registerPacket(ProtocolInfo.BOOK_EDIT_PACKET, BookEditPacket.class);
-        this.registerPacket(ProtocolInfo.COMMAND_REQUEST_PACKET, CommandRequestPacket.class);
-        this.registerPacket(ProtocolInfo.CONTAINER_CLOSE_PACKET, ContainerClosePacket.class);
-        this.registerPacket(ProtocolInfo.ENTITY_EVENT_PACKET, EntityEventPacket.class);
-        this.registerPacket(ProtocolInfo.INTERACT_PACKET, InteractPacket.class);
-        this.registerPacket(ProtocolInfo.INVENTORY_TRANSACTION_PACKET, InventoryTransactionPacket.class);
-        this.registerPacket(ProtocolInfo.LOGIN_PACKET, LoginPacket.class);
-        this.registerPacket(ProtocolInfo.MAP_INFO_REQUEST_PACKET, MapInfoRequestPacket.class);
-        this.registerPacket(ProtocolInfo.MOB_EQUIPMENT_PACKET, MobEquipmentPacket.class);
-        this.registerPacket(ProtocolInfo.MODAL_FORM_RESPONSE_PACKET, ModalFormResponsePacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_ACTION_PACKET, PlayerActionPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_INPUT_PACKET, PlayerInputPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_HOTBAR_PACKET, PlayerHotbarPacket.class);
-        this.registerPacket(ProtocolInfo.REQUEST_CHUNK_RADIUS_PACKET, RequestChunkRadiusPacket.class);
-        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CLIENT_RESPONSE_PACKET, ResourcePackClientResponsePacket.class);
-        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CHUNK_REQUEST_PACKET, ResourcePackChunkRequestPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_SKIN_PACKET, PlayerSkinPacket.class);
-        this.registerPacket(ProtocolInfo.RESPAWN_PACKET, RespawnPacket.class);
-        this.registerPacket(ProtocolInfo.SET_DIFFICULTY_PACKET, SetDifficultyPacket.class);
-        this.registerPacket(ProtocolInfo.SET_PLAYER_GAME_TYPE_PACKET, SetPlayerGameTypePacket.class);
-        this.registerPacket(ProtocolInfo.SERVER_SETTINGS_REQUEST_PACKET, ServerSettingsRequestPacket.class);
-        this.registerPacket(ProtocolInfo.TEXT_PACKET, TextPacket.class);
-        this.registerPacket(ProtocolInfo.SET_LOCAL_PLAYER_AS_INITIALIZED_PACKET, SetLocalPlayerAsInitializedPacket.class);
-        this.registerPacket(ProtocolInfo.LECTERN_UPDATE_PACKET, LecternUpdatePacket.class);
-        this.registerPacket(ProtocolInfo.NETWORK_SETTINGS_PACKET, NetworkSettingsPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_AUTH_INPUT_PACKET, PlayerAuthInputPacket.class);
-        this.registerPacket(ProtocolInfo.PACKET_VIOLATION_WARNING_PACKET, PacketViolationWarningPacket.class);
-        this.registerPacket(ProtocolInfo.EMOTE_PACKET, EmotePacket.class);
-        this.registerPacket(ProtocolInfo.REQUEST_NETWORK_SETTINGS_PACKET, RequestNetworkSettingsPacket.class);
-        this.registerPacket(ProtocolInfo.CLIENT_TO_SERVER_HANDSHAKE_PACKET, ClientToServerHandshakePacket.class);
-        this.registerPacket(ProtocolInfo.REQUEST_PERMISSIONS_PACKET, RequestPermissionsPacket.class);
-        this.registerPacket(ProtocolInfo.SET_DEFAULT_GAME_TYPE_PACKET, SetDefaultGameTypePacket.class);
-        this.registerPacket(ProtocolInfo.SETTINGS_COMMAND_PACKET, SettingsCommandPacket.class);
+        this.packetPool = newPacketPool();
+
+        this.registerPacket(ProtocolInfo.BATCH_PACKET, BatchPacket::new);
+
+        this.registerPacket(ProtocolInfo.ANIMATE_PACKET, AnimatePacket::new);
+        this.registerPacket(ProtocolInfo.BLOCK_ENTITY_DATA_PACKET, BlockEntityDataPacket::new);
+        this.registerPacket(ProtocolInfo.BLOCK_PICK_REQUEST_PACKET, BlockPickRequestPacket::new);
+        this.registerPacket(ProtocolInfo.BOOK_EDIT_PACKET, BookEditPacket::new);
+        this.registerPacket(ProtocolInfo.COMMAND_REQUEST_PACKET, CommandRequestPacket::new);
+        this.registerPacket(ProtocolInfo.CONTAINER_CLOSE_PACKET, ContainerClosePacket::new);
+        this.registerPacket(ProtocolInfo.ENTITY_EVENT_PACKET, EntityEventPacket::new);
+        this.registerPacket(ProtocolInfo.INTERACT_PACKET, InteractPacket::new);
+        this.registerPacket(ProtocolInfo.INVENTORY_TRANSACTION_PACKET, InventoryTransactionPacket::new);
+        this.registerPacket(ProtocolInfo.LOGIN_PACKET, LoginPacket::new);
+        this.registerPacket(ProtocolInfo.MAP_INFO_REQUEST_PACKET, MapInfoRequestPacket::new);
+        this.registerPacket(ProtocolInfo.MOB_EQUIPMENT_PACKET, MobEquipmentPacket::new);
+        this.registerPacket(ProtocolInfo.MODAL_FORM_RESPONSE_PACKET, ModalFormResponsePacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_ACTION_PACKET, PlayerActionPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_INPUT_PACKET, PlayerInputPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_HOTBAR_PACKET, PlayerHotbarPacket::new);
+        this.registerPacket(ProtocolInfo.REQUEST_CHUNK_RADIUS_PACKET, RequestChunkRadiusPacket::new);
+        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CLIENT_RESPONSE_PACKET, ResourcePackClientResponsePacket::new);
+        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CHUNK_REQUEST_PACKET, ResourcePackChunkRequestPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_SKIN_PACKET, PlayerSkinPacket::new);
+        this.registerPacket(ProtocolInfo.RESPAWN_PACKET, RespawnPacket::new);
+        this.registerPacket(ProtocolInfo.SET_DIFFICULTY_PACKET, SetDifficultyPacket::new);
+        this.registerPacket(ProtocolInfo.SET_PLAYER_GAME_TYPE_PACKET, SetPlayerGameTypePacket::new);
+        this.registerPacket(ProtocolInfo.SERVER_SETTINGS_REQUEST_PACKET, ServerSettingsRequestPacket::new);
+        this.registerPacket(ProtocolInfo.TEXT_PACKET, TextPacket::new);
+        this.registerPacket(ProtocolInfo.SET_LOCAL_PLAYER_AS_INITIALIZED_PACKET, SetLocalPlayerAsInitializedPacket::new);
+        this.registerPacket(ProtocolInfo.LECTERN_UPDATE_PACKET, LecternUpdatePacket::new);
+        this.registerPacket(ProtocolInfo.NETWORK_SETTINGS_PACKET, NetworkSettingsPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_AUTH_INPUT_PACKET, PlayerAuthInputPacket::new);
+        this.registerPacket(ProtocolInfo.PACKET_VIOLATION_WARNING_PACKET, PacketViolationWarningPacket::new);
+        this.registerPacket(ProtocolInfo.EMOTE_PACKET, EmotePacket::new);
+        this.registerPacket(ProtocolInfo.REQUEST_NETWORK_SETTINGS_PACKET, RequestNetworkSettingsPacket::new);
+        this.registerPacket(ProtocolInfo.CLIENT_TO_SERVER_HANDSHAKE_PACKET, ClientToServerHandshakePacket::new);
+        this.registerPacket(ProtocolInfo.REQUEST_PERMISSIONS_PACKET, RequestPermissionsPacket::new);
+        this.registerPacket(ProtocolInfo.SET_DEFAULT_GAME_TYPE_PACKET, SetDefaultGameTypePacket::new);
+        this.registerPacket(ProtocolInfo.SETTINGS_COMMAND_PACKET, SettingsCommandPacket::new);
 
         // Unused but sent by the client
-        this.registerPacket(ProtocolInfo.SET_ENTITY_LINK_PACKET, SetEntityLinkPacket.class);
-        this.registerPacket(ProtocolInfo.SET_ENTITY_MOTION_PACKET, SetEntityMotionPacket.class);
-        this.registerPacket(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET, LevelSoundEventPacket.class);
-        this.registerPacket(ProtocolInfo.RIDER_JUMP_PACKET, RiderJumpPacket.class);
-        this.registerPacket(ProtocolInfo.REQUEST_ABILITY_PACKET, RequestAbilityPacket.class);
-        this.registerPacket(ProtocolInfo.NETWORK_STACK_LATENCY_PACKET, NetworkStackLatencyPacket.class);
-        this.registerPacket(ProtocolInfo.NPC_REQUEST_PACKET, NPCRequestPacket.class);
-        this.registerPacket(ProtocolInfo.MOVE_ENTITY_ABSOLUTE_PACKET, MoveEntityAbsolutePacket.class);
-        this.registerPacket(ProtocolInfo.MOB_ARMOR_EQUIPMENT_PACKET, MobArmorEquipmentPacket.class);
-        this.registerPacket(ProtocolInfo.MAP_CREATE_LOCKED_COPY_PACKET, MapCreateLockedCopyPacket.class);
-        this.registerPacket(ProtocolInfo.GUI_DATA_PICK_ITEM_PACKET, GUIDataPickItemPacket.class);
-        this.registerPacket(ProtocolInfo.EMOTE_LIST_PACKET, EmoteListPacket.class);
-        this.registerPacket(ProtocolInfo.DISCONNECT_PACKET, DisconnectPacket.class);
-        this.registerPacket(ProtocolInfo.BOSS_EVENT_PACKET, BossEventPacket.class);
-        this.registerPacket(ProtocolInfo.ANVIL_DAMAGE_PACKET, AnvilDamagePacket.class);
+        this.registerPacket(ProtocolInfo.SET_ENTITY_LINK_PACKET, SetEntityLinkPacket::new);
+        this.registerPacket(ProtocolInfo.SET_ENTITY_MOTION_PACKET, SetEntityMotionPacket::new);
+        this.registerPacket(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET, LevelSoundEventPacket::new);
+        this.registerPacket(ProtocolInfo.RIDER_JUMP_PACKET, RiderJumpPacket::new);
+        this.registerPacket(ProtocolInfo.REQUEST_ABILITY_PACKET, RequestAbilityPacket::new);
+        this.registerPacket(ProtocolInfo.NETWORK_STACK_LATENCY_PACKET, NetworkStackLatencyPacket::new);
+        this.registerPacket(ProtocolInfo.NPC_REQUEST_PACKET, NPCRequestPacket::new);
+        this.registerPacket(ProtocolInfo.MOVE_ENTITY_ABSOLUTE_PACKET, MoveEntityAbsolutePacket::new);
+        this.registerPacket(ProtocolInfo.MOB_ARMOR_EQUIPMENT_PACKET, MobArmorEquipmentPacket::new);
+        this.registerPacket(ProtocolInfo.MAP_CREATE_LOCKED_COPY_PACKET, MapCreateLockedCopyPacket::new);
+        this.registerPacket(ProtocolInfo.GUI_DATA_PICK_ITEM_PACKET, GUIDataPickItemPacket::new);
+        this.registerPacket(ProtocolInfo.EMOTE_LIST_PACKET, EmoteListPacket::new);
+        this.registerPacket(ProtocolInfo.DISCONNECT_PACKET, DisconnectPacket::new);
+        this.registerPacket(ProtocolInfo.BOSS_EVENT_PACKET, BossEventPacket::new);
+        this.registerPacket(ProtocolInfo.ANVIL_DAMAGE_PACKET, AnvilDamagePacket::new);
     }
 }
@@ -10,6 +10,7 @@ import cn.nukkit.network.session.NetworkPlayerSession;
 import cn.nukkit.network.session.RakNetPlayerSession;
 import cn.nukkit.utils.Utils;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -33,6 +34,9 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.IntFunction;
@@ -53,9 +57,28 @@ public class RakNetInterface implements AdvancedSourceInterface {
 
     private final long serverId = ThreadLocalRandom.current().nextLong();
 
+    /**
+     * Optional pool compressing and encrypting outgoing batches, so RakNet I/O threads never stall on large batches.
+     * Null when compression runs on the event loop.
+     */
+    private final ExecutorService compressionExecutor;
+
     public RakNetInterface(Server server) {
         this.server = server;
 
+        int compressionThreads = server.getConfig("network.compression-threads", 0);
+        if (compressionThreads > 0) {
+            ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+            builder.setNameFormat("Network Compression #%d");
+            builder.setDaemon(true);
+            builder.setUncaughtExceptionHandler((thread, ex) -> {
+                Server.getInstance().getLogger().error("Exception in " + thread.getName(), ex);
+            });
+            this.compressionExecutor = Executors.newFixedThreadPool(compressionThreads, builder.build());
+        } else {
+            this.compressionExecutor = null;
+        }
+
         boolean disableNative = Boolean.parseBoolean(System.getProperty("disableNativeEventLoop"));
 
         Transport transport;
@@ -168,12 +191,22 @@ public class RakNetInterface implements AdvancedSourceInterface {
     public void shutdown() {
         this.sessions.values().forEach(session -> session.disconnect("Shutdown"));
         this.channels.forEach(channel -> channel.close().awaitUninterruptibly());
+        if (this.compressionExecutor != null) {
+            this.compressionExecutor.shutdown();
+        }
     }
 
     @Override
     public void emergencyShutdown() {
         this.sessions.values().forEach(session -> session.disconnect("Shutdown"));
         this.channels.forEach(channel -> channel.close().awaitUninterruptibly());
+        if (this.compressionExecutor != null) {
+            this.compressionExecutor.shutdownNow();
+        }
+    }
+
+    public Executor getCompressionExecutor() {
+        return this.compressionExecutor;
     }
 
     @Override
@@ -2,6 +2,10 @@ package cn.nukkit.network.protocol;
 
 import lombok.ToString;
 
+/**
+ * Movement of an entity containing only the coordinates and rotations which changed since the last update.
+ * The values themselves are absolute.
+ */
 @ToString
 public class MoveEntityDeltaPacket extends DataPacket {
 
@@ -10,15 +14,21 @@ public class MoveEntityDeltaPacket extends DataPacket {
     public static final int FLAG_HAS_X = 0b1;
     public static final int FLAG_HAS_Y = 0b10;
     public static final int FLAG_HAS_Z = 0b100;
-    public static final int FLAG_HAS_YAW = 0b1000;
-    public static final int FLAG_HAS_HEAD_YAW = 0b10000;
-    public static final int FLAG_HAS_PITCH = 0b100000;
+    public static final int FLAG_HAS_PITCH = 0b1000;
+    public static final int FLAG_HAS_YAW = 0b10000;
+    public static final int FLAG_HAS_HEAD_YAW = 0b100000;
+    public static final int FLAG_ON_GROUND = 0b1000000;
+    public static final int FLAG_TELEPORTING = 0b10000000;
+    public static final int FLAG_FORCE_MOVE_LOCAL_ENTITY = 0b100000000;
 
     public long eid;
     public int flags = 0;
     public float x = 0;
     public float y = 0;
     public float z = 0;
+    /**
+     * Absolute rotations despite their names, which are kept for existing code.
+     */
     public double yawDelta = 0;
     public double headYawDelta = 0;
     public double pitchDelta = 0;
@@ -37,13 +47,13 @@ public class MoveEntityDeltaPacket extends DataPacket {
     public void encode() {
         this.reset();
         this.putEntityRuntimeId(this.eid);
-        this.putByte((byte) flags);
+        this.putLShort(this.flags);
         putCoordinate(FLAG_HAS_X, this.x);
         putCoordinate(FLAG_HAS_Y, this.y);
         putCoordinate(FLAG_HAS_Z, this.z);
+        putRotation(FLAG_HAS_PITCH, this.pitchDelta);
         putRotation(FLAG_HAS_YAW, this.yawDelta);
         putRotation(FLAG_HAS_HEAD_YAW, this.headYawDelta);
-        putRotation(FLAG_HAS_PITCH, this.pitchDelta);
     }
 
     private void putCoordinate(int flag, float value) {
@@ -54,7 +64,7 @@ public class MoveEntityDeltaPacket extends DataPacket {
 
     private void putRotation(int flag, double value) {
         if ((flags & flag) != 0) {
-            this.putByte((byte) (value / 1.40625));
+            this.putByte((byte) (value / (360d / 256d)));
         }
     }
 }
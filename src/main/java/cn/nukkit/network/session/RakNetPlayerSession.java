@@ -9,16 +9,14 @@ import cn.nukkit.network.encryption.Sha256;
 import cn.nukkit.network.protocol.BatchPacket;
 import cn.nukkit.network.protocol.DataPacket;
 import cn.nukkit.network.protocol.DisconnectPacket;
-import cn.nukkit.utils.BinaryStream;
+import cn.nukkit.utils.VarInt;
 import com.google.common.base.Preconditions;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.util.internal.PlatformDependent;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.message.FormattedMessage;
 import org.cloudburstmc.netty.channel.raknet.RakChannel;
@@ -29,11 +27,11 @@ import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Log4j2
@@ -45,6 +43,8 @@ public class RakNetPlayerSession extends SimpleChannelInboundHandler<RakMessage>
     private final Queue<DataPacket> inbound = PlatformDependent.newSpscQueue();
     private final Queue<DataPacket> outbound = PlatformDependent.newMpscQueue();
     private final ScheduledFuture<?> tickFuture;
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
 
     private Player player;
     private String disconnectReason = null;
@@ -77,7 +77,7 @@ public class RakNetPlayerSession extends SimpleChannelInboundHandler<RakMessage>
                 return;
             }
 
-            byte[] packetBuffer;
+            ByteBuf packetBuffer;
 
             CompressionProvider compressionIn = CompressionProvider.NONE;
 
@@ -94,17 +94,15 @@ public class RakNetPlayerSession extends SimpleChannelInboundHandler<RakMessage>
                     compressionIn = CompressionProvider.byPrefix(buffer.readByte());
                 }
 
-                packetBuffer = new byte[buffer.readableBytes() - 8];
+                packetBuffer = buffer.slice(buffer.readerIndex(), buffer.readableBytes() - 8);
             } else {
                 if (this.compressionInitialized) {
                     compressionIn = CompressionProvider.byPrefix(buffer.readByte());
                 }
 
-                packetBuffer = new byte[buffer.readableBytes()];
+                packetBuffer = buffer.slice();
             }
 
-            buffer.readBytes(packetBuffer);
-
             try {
                 this.server.getNetwork().processBatch(packetBuffer, this.inbound, compressionIn);
             } catch (Exception e) {
@@ -157,10 +155,19 @@ public class RakNetPlayerSession extends SimpleChannelInboundHandler<RakMessage>
 
 
         this.sendPacket(packet);
-        this.channel.eventLoop().execute(() -> {
-            this.networkTick();
-            callback.run();
-        });
+        Executor compressionExecutor = this.server.getCompressionExecutor();
+        if (compressionExecutor == null) {
+            this.channel.eventLoop().execute(() -> {
+                this.networkTick();
+                callback.run();
+            });
+        } else {
+            compressionExecutor.execute(() -> {
+                this.flushOutbound();
+                // Writes issued by the flush are already queued on the event loop, so the callback runs after them
+                this.channel.eventLoop().execute(callback);
+            });
+        }
     }
 
     private void networkTick() {
@@ -168,39 +175,65 @@ public class RakNetPlayerSession extends SimpleChannelInboundHandler<RakMessage>
             return;
         }
 
-        try {
-            List<DataPacket> toBatch = new ObjectArrayList<>();
-            DataPacket packet;
-            while ((packet = this.outbound.poll()) != null) {
-                if (packet instanceof DisconnectPacket) {
-                    byte[] buf = packet.getBuffer();
-                    BinaryStream batched = new BinaryStream(new byte[5 + buf.length]).reset();
-                    batched.putUnsignedVarInt(buf.length);
-                    batched.put(buf);
-
-                    try {
-                        this.sendPacket(this.compressionOut.compress(batched, Server.getInstance().networkCompressionLevel));
-                    } catch (Exception e) {
-                        log.error("Unable to compress disconnect packet", e);
-                    }
-                    return; // Disconnected
-                } else if (packet instanceof BatchPacket) {
-                    if (!toBatch.isEmpty()) {
-                        this.sendPackets(toBatch);
-                        toBatch.clear();
-                    }
-
-                    this.sendPacket(((BatchPacket) packet).payload);
-                } else {
-                    toBatch.add(packet);
+        Executor compressionExecutor = this.server.getCompressionExecutor();
+        if (compressionExecutor == null) {
+            this.flushOutbound();
+        } else if (!this.outbound.isEmpty() && this.flushScheduled.compareAndSet(false, true)) {
+            compressionExecutor.execute(() -> {
+                try {
+                    this.flushOutbound();
+                } finally {
+                    this.flushScheduled.set(false);
                 }
+            });
+        }
+    }
+
+    private void flushOutbound() {
+        // Flushes may run on the event loop and on the compression pool; packet order and the encryption counter need them to be sequential
+        synchronized (this.flushLock) {
+            if (!this.channel.isActive()) {
+                return;
             }
 
-            if (!toBatch.isEmpty()) {
-                this.sendPackets(toBatch);
+            ByteBuf batched = null;
+            try {
+                DataPacket packet;
+                while ((packet = this.outbound.poll()) != null) {
+                    if (packet instanceof DisconnectPacket) {
+                        if (batched == null) {
+                            batched = ByteBufAllocator.DEFAULT.heapBuffer();
+                        }
+                        writeBatchEntry(batched, packet.getBuffer());
+                        this.sendBatch(batched);
+                        return; // Disconnected
+                    } else if (packet instanceof BatchPacket) {
+                        if (batched != null && batched.isReadable()) {
+                            this.sendBatch(batched);
+                        }
+
+                        this.sendPacket(((BatchPacket) packet).payload);
+                    } else {
+                        if (!packet.isEncoded) {
+                            throw new IllegalStateException("Packet should have already been encoded");
+                        }
+                        if (batched == null) {
+                            batched = ByteBufAllocator.DEFAULT.heapBuffer();
+                        }
+                        writeBatchEntry(batched, packet.getBuffer());
+                    }
+                }
+
+                if (batched != null && batched.isReadable()) {
+                    this.sendBatch(batched);
+                }
+            } catch (Throwable e) {
+                log.error("[{}] Failed to tick RakNetPlayerSession", this.channel.remoteAddress(), e);
+            } finally {
+                if (batched != null) {
+                    batched.release();
+                }
             }
-        } catch (Throwable e) {
-            log.error("[{}] Failed to tick RakNetPlayerSession", this.channel.remoteAddress(), e);
         }
     }
 
@@ -216,54 +249,63 @@ public class RakNetPlayerSession extends SimpleChannelInboundHandler<RakMessage>
         }
     }
 
-    private void sendPackets(Collection<DataPacket> packets) {
-        BinaryStream batched = new BinaryStream();
-        for (DataPacket packet : packets) {
-            if (packet instanceof BatchPacket) {
-                throw new IllegalArgumentException("Cannot batch BatchPacket");
-            }
-            if (!packet.isEncoded) {
-                throw new IllegalStateException("Packet should have already been encoded");
-            }
-            byte[] buf = packet.getBuffer();
-            batched.putUnsignedVarInt(buf.length);
-            batched.put(buf);
-        }
+    private static void writeBatchEntry(ByteBuf batched, byte[] buf) {
+        VarInt.writeUnsignedVarInt(batched, buf.length);
+        batched.writeBytes(buf);
+    }
 
+    /**
+     * Compress the batched packets straight into the outgoing buffer and send it.
+     * The batch buffer is emptied so it can be reused for the following packets.
+     */
+    private void sendBatch(ByteBuf batched) {
+        ByteBuf finalPayload = ByteBufAllocator.DEFAULT.ioBuffer(batched.readableBytes() + 10); // prefix(1)+id(1)+encryption(8)+data
         try {
-            this.sendPacket(this.compressionOut.compress(batched, Server.getInstance().networkCompressionLevel));
+            finalPayload.writeByte(0xfe);
+            if (this.compressionInitialized) {
+                finalPayload.writeByte(this.compressionOut.getPrefix());
+            }
+            this.compressionOut.compress(batched, finalPayload, Server.getInstance().networkCompressionLevel);
         } catch (Exception e) {
+            finalPayload.release();
             log.error("Unable to compress batched packets", e);
+            return;
+        } finally {
+            batched.clear();
         }
+
+        this.writePayload(finalPayload);
     }
 
     private void sendPacket(byte[] compressedPayload) {
-        ByteBuf finalPayload = ByteBufAllocator.DEFAULT.directBuffer((this.compressionInitialized ? 10 : 9) + compressedPayload.length); // prefix(1)+id(1)+encryption(8)+data
+        ByteBuf finalPayload = ByteBufAllocator.DEFAULT.ioBuffer((this.compressionInitialized ? 10 : 9) + compressedPayload.length); // prefix(1)+id(1)+encryption(8)+data
         finalPayload.writeByte(0xfe);
+        if (this.compressionInitialized) {
+            finalPayload.writeByte(this.compressionOut.getPrefix());
+        }
+        finalPayload.writeBytes(compressedPayload);
 
+        this.writePayload(finalPayload);
+    }
+
+    /**
+     * Encrypt the payload in place if needed and write it to the channel.
+     *
+     * @param finalPayload packet id followed by the compression prefix and the compressed data
+     */
+    private void writePayload(ByteBuf finalPayload) {
         if (this.encryptionCipher != null) {
             try {
-                byte[] fullPayload = this.compressionInitialized ? new byte[compressedPayload.length + 1] : compressedPayload;
-                if (this.compressionInitialized) {
-                    fullPayload[0] = this.compressionOut.getPrefix();
-                    System.arraycopy(compressedPayload, 0, fullPayload, 1, compressedPayload.length);
-                }
-                ByteBuf compressed = Unpooled.wrappedBuffer(fullPayload);
-                ByteBuffer trailer = ByteBuffer.wrap(this.generateTrailer(compressed));
-                ByteBuffer outBuffer = finalPayload.internalNioBuffer(1, compressed.readableBytes() + 8);
-                ByteBuffer inBuffer = compressed.internalNioBuffer(compressed.readerIndex(), compressed.readableBytes());
-                this.encryptionCipher.update(inBuffer, outBuffer);
-                this.encryptionCipher.update(trailer, outBuffer);
-                finalPayload.writerIndex(finalPayload.writerIndex() + compressed.readableBytes() + 8);
+                int length = finalPayload.readableBytes() - 1;
+                byte[] trailer = this.generateTrailer(finalPayload.slice(1, length));
+                finalPayload.writeBytes(trailer);
+                ByteBuffer buffer = finalPayload.internalNioBuffer(1, length + 8);
+                this.encryptionCipher.update(buffer, buffer.duplicate());
             } catch (Exception ex) {
+                finalPayload.release();
                 Server.getInstance().getLogger().error("Packet encryption failed for " + player.getName(), ex);
+                return;
             }
-        } else {
-            if (this.compressionInitialized) {
-                finalPayload.writeByte(this.compressionOut.getPrefix());
-            }
-
-            finalPayload.writeBytes(compressedPayload);
         }
 
         this.channel.writeAndFlush(finalPayload);
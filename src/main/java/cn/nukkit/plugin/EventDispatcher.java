@@ -0,0 +1,135 @@
+package cn.nukkit.plugin;
+
+import cn.nukkit.event.Cancellable;
+import cn.nukkit.event.Event;
+
+/**
+ * Calls the listeners of one event class. Built from the baked listeners of a handler list whenever they change,
+ * so the listeners which can't receive the event are left out and the cancellation checks are only done when a
+ * listener ignores cancelled events.
+ */
+public abstract class EventDispatcher {
+
+    public static final EventDispatcher EMPTY = new EventDispatcher() {
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public void dispatch(Event event, ExceptionHandler exceptionHandler) {
+        }
+    };
+
+    /**
+     * Create a dispatcher for an event class.
+     *
+     * @param eventClass class of the dispatched events
+     * @param listeners listeners in priority order, the ones registered for other events are left out
+     * @return dispatcher
+     */
+    public static EventDispatcher create(Class<? extends Event> eventClass, RegisteredListener[] listeners) {
+        int count = 0;
+        RegisteredListener[] matching = new RegisteredListener[listeners.length];
+        boolean ignoringCancelled = false;
+        for (RegisteredListener listener : listeners) {
+            if (listener.getEventClass() == null || listener.getEventClass().isAssignableFrom(eventClass)) {
+                matching[count++] = listener;
+                ignoringCancelled |= listener.isIgnoringCancelled();
+            }
+        }
+
+        boolean checkCancelled = ignoringCancelled && Cancellable.class.isAssignableFrom(eventClass);
+        if (count == 0) {
+            return EMPTY;
+        } else if (count == 1) {
+            return new Single(matching[0], checkCancelled);
+        }
+
+        RegisteredListener[] trimmed = new RegisteredListener[count];
+        System.arraycopy(matching, 0, trimmed, 0, count);
+        return new Multiple(trimmed, checkCancelled);
+    }
+
+    /**
+     * @return whether there are no listeners to call
+     */
+    public abstract boolean isEmpty();
+
+    /**
+     * Call the listeners. An exception of a listener doesn't stop the other listeners from being called.
+     *
+     * @param event event
+     * @param exceptionHandler handler of the exceptions thrown by listeners
+     */
+    public abstract void dispatch(Event event, ExceptionHandler exceptionHandler);
+
+    @FunctionalInterface
+    public interface ExceptionHandler {
+
+        void handle(Event event, RegisteredListener listener, Exception exception);
+    }
+
+    private static class Single extends EventDispatcher {
+
+        private final RegisteredListener listener;
+        private final boolean checkCancelled;
+
+        private Single(RegisteredListener listener, boolean checkCancelled) {
+            this.listener = listener;
+            this.checkCancelled = checkCancelled;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public void dispatch(Event event, ExceptionHandler exceptionHandler) {
+            if (!this.listener.getPlugin().isEnabled() || (this.checkCancelled && event.isCancelled())) {
+                return;
+            }
+
+            try {
+                this.listener.invoke(event);
+            } catch (Exception e) {
+                exceptionHandler.handle(event, this.listener, e);
+            }
+        }
+    }
+
+    private static class Multiple extends EventDispatcher {
+
+        private final RegisteredListener[] listeners;
+        private final boolean checkCancelled;
+
+        private Multiple(RegisteredListener[] listeners, boolean checkCancelled) {
+            this.listeners = listeners;
+            this.checkCancelled = checkCancelled;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public void dispatch(Event event, ExceptionHandler exceptionHandler) {
+            for (RegisteredListener listener : this.listeners) {
+                if (!listener.getPlugin().isEnabled()) {
+                    continue;
+                }
+                if (this.checkCancelled && listener.isIgnoringCancelled() && event.isCancelled()) {
+                    continue;
+                }
+
+                try {
+                    listener.invoke(event);
+                } catch (Exception e) {
+                    exceptionHandler.handle(event, listener, e);
+                }
+            }
+        }
+    }
+}
@@ -14,22 +14,21 @@ import java.lang.reflect.Method;
 public class MethodEventExecutor implements EventExecutor {
 
     private final Method method;
+    private final Class<?> eventClass;
 
     public MethodEventExecutor(Method method) {
         this.method = method;
+        Class<?>[] params = method.getParameterTypes();
+        this.eventClass = params.length == 1 ? params[0] : null;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void execute(Listener listener, Event event) throws EventException {
+        if (this.eventClass == null || !this.eventClass.isInstance(event)) {
+            return;
+        }
         try {
-            Class<Event>[] params = (Class<Event>[]) method.getParameterTypes();
-            for (Class<Event> param : params) {
-                if (param.isAssignableFrom(event.getClass())) {
-                    method.invoke(listener, event);
-                    break;
-                }
-            }
+            method.invoke(listener, event);
         } catch (InvocationTargetException ex) {
             throw new EventException(ex.getCause());
         } catch (ClassCastException ex) {
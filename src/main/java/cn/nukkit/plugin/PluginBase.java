@@ -34,7 +34,7 @@ abstract public class PluginBase implements Plugin {
 
     private Server server;
 
-    private boolean isEnabled = false;
+    private volatile boolean isEnabled = false;
 
     private boolean initialized = false;
 
@@ -20,6 +20,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 
@@ -50,6 +51,16 @@ public class PluginManager {
 
     protected final Map<String, PluginLoader> fileAssociations = new HashMap<>();
 
+    private final EventDispatcher.ExceptionHandler listenerExceptionHandler = this::handleListenerException;
+
+    private final LongAdder calledEvents = new LongAdder();
+    private final LongAdder skippedEvents = new LongAdder();
+    private long rateSampleTime = System.nanoTime();
+    private long rateSampleCalled;
+    private long rateSampleSkipped;
+    private volatile double calledEventsPerSecond;
+    private volatile double skippedEventsPerSecond;
+
     public PluginManager(Server server, SimpleCommandMap commandMap) {
         this.server = server;
         this.commandMap = commandMap;
@@ -533,28 +544,115 @@ public class PluginManager {
         this.defaultPermsOp.clear();
     }
 
+    /**
+     * Pass an event to its listeners on the calling thread.
+     * <p>
+     * With level-settings.parallel-tick-threads or level-settings.region-tick-threads enabled, events of level ticks are
+     * called from the level and region tick threads, so listeners can run concurrently with each other. Listeners are
+     * then expected to be thread-safe and to change other levels or server-wide state only through
+     * {@link Server#runCrossLevel(Runnable)}. Registering and unregistering listeners is safe from any thread.
+     *
+     * @param event event
+     */
     public void callEvent(Event event) {
         try {
-            RegisteredListener[] listeners = this.getEventListeners(event.getClass()).getRegisteredListeners();
-            if (listeners == null) {
+            EventDispatcher dispatcher = this.getEventListeners(event.getClass()).getDispatcher(event.getClass());
+            if (dispatcher.isEmpty()) {
+                this.skippedEvents.increment();
                 return;
             }
+            this.calledEvents.increment();
+            dispatcher.dispatch(event, this.listenerExceptionHandler);
+        } catch (IllegalAccessException e) {
+            this.server.getLogger().logException(e);
+        }
+    }
 
-            for (RegisteredListener registration : listeners) {
-                if (!registration.getPlugin().isEnabled()) {
-                    continue;
-                }
+    private void handleListenerException(Event event, RegisteredListener registration, Exception e) {
+        this.server.getLogger().critical(this.server.getLanguage().translateString("nukkit.plugin.eventError", event.getEventName(), registration.getPlugin().getDescription().getFullName(), e.getMessage(), registration.getListener().getClass().getName()));
+        this.server.getLogger().logException(e);
+    }
 
-                try {
-                    registration.callEvent(event);
-                } catch (Exception e) {
-                    this.server.getLogger().critical(this.server.getLanguage().translateString("nukkit.plugin.eventError", event.getEventName(), registration.getPlugin().getDescription().getFullName(), e.getMessage(), registration.getListener().getClass().getName()));
-                    this.server.getLogger().logException(e);
-                }
+    /**
+     * Check whether any listener is registered for an event, so hot paths can skip creating it.
+     * A false result is counted as a skipped event.
+     *
+     * @param event event class
+     * @return whether calling the event would reach a listener
+     */
+    public boolean hasListeners(Class<? extends Event> event) {
+        try {
+            if (!this.getEventListeners(event).getDispatcher(event).isEmpty()) {
+                return true;
             }
         } catch (IllegalAccessException e) {
             this.server.getLogger().logException(e);
         }
+        this.skippedEvents.increment();
+        return false;
+    }
+
+    /**
+     * @return number of events passed to listeners
+     */
+    public long getCalledEvents() {
+        return this.calledEvents.sum();
+    }
+
+    /**
+     * @return number of events skipped because nothing listened to them
+     */
+    public long getSkippedEvents() {
+        return this.skippedEvents.sum();
+    }
+
+    public double getCalledEventsPerSecond() {
+        return this.calledEventsPerSecond;
+    }
+
+    public double getSkippedEventsPerSecond() {
+        return this.skippedEventsPerSecond;
+    }
+
+    /**
+     * Internal: Update the event rates, called by the server regularly.
+     */
+    public void updateEventRates() {
+        long now = System.nanoTime();
+        long elapsed = now - this.rateSampleTime;
+        if (elapsed < 1_000_000_000L) {
+            return;
+        }
+
+        long called = this.calledEvents.sum();
+        long skipped = this.skippedEvents.sum();
+        this.calledEventsPerSecond = (called - this.rateSampleCalled) * 1_000_000_000D / elapsed;
+        this.skippedEventsPerSecond = (skipped - this.rateSampleSkipped) * 1_000_000_000D / elapsed;
+        this.rateSampleTime = now;
+        this.rateSampleCalled = called;
+        this.rateSampleSkipped = skipped;
+    }
+
+    /**
+     * Get all registered listeners sorted by the total time spent in them, slowest first.
+     *
+     * @return listeners
+     */
+    public List<RegisteredListener> getListenersByTime() {
+        List<RegisteredListener> listeners = new ArrayList<>();
+        for (HandlerList handlerList : HandlerList.getHandlerLists()) {
+            Collections.addAll(listeners, handlerList.getRegisteredListeners());
+        }
+        listeners.sort(Comparator.comparingLong(RegisteredListener::getTimeNanos).reversed());
+        return listeners;
+    }
+
+    public void resetListenerTimings() {
+        for (HandlerList handlerList : HandlerList.getHandlerLists()) {
+            for (RegisteredListener listener : handlerList.getRegisteredListeners()) {
+                listener.resetTimings();
+            }
+        }
     }
 
     public void registerEvents(Listener listener, Plugin plugin) {
@@ -618,7 +716,7 @@ public class PluginManager {
         }
 
         try {
-            this.getEventListeners(event).register(new RegisteredListener(listener, executor, priority, plugin, ignoreCancelled));
+            this.getEventListeners(event).register(new RegisteredListener(listener, executor, priority, plugin, ignoreCancelled, event));
         } catch (IllegalAccessException e) {
             Server.getInstance().getLogger().logException(e);
         }
@@ -643,9 +741,10 @@ public class PluginManager {
         }
 
         if (handlerList == null) { // do not require user to create static HandlerList anymore
-            HandlerList.putCachedHandlerList(type, handlerList = new HandlerList());
+            handlerList = new HandlerList();
         }
-        return handlerList;
+        // Cache static handler lists too, so the reflective lookup only happens once per event class
+        return HandlerList.putCachedHandlerListIfAbsent(type, handlerList);
     }
 
     private Class<? extends Event> getRegistrationClass(Class<? extends Event> clazz) throws IllegalAccessException {
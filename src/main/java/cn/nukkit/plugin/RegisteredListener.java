@@ -6,6 +6,8 @@ import cn.nukkit.event.EventPriority;
 import cn.nukkit.event.Listener;
 import cn.nukkit.utils.EventException;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * @author MagicDroidX
  * Nukkit Project
@@ -22,12 +24,23 @@ public class RegisteredListener {
 
     private final boolean ignoreCancelled;
 
+    private final Class<? extends Event> eventClass;
+
+    private final LongAdder invocations = new LongAdder();
+
+    private final LongAdder timeNanos = new LongAdder();
+
     public RegisteredListener(Listener listener, EventExecutor executor, EventPriority priority, Plugin plugin, boolean ignoreCancelled) {
+        this(listener, executor, priority, plugin, ignoreCancelled, null);
+    }
+
+    public RegisteredListener(Listener listener, EventExecutor executor, EventPriority priority, Plugin plugin, boolean ignoreCancelled, Class<? extends Event> eventClass) {
         this.listener = listener;
         this.priority = priority;
         this.plugin = plugin;
         this.executor = executor;
         this.ignoreCancelled = ignoreCancelled;
+        this.eventClass = eventClass;
     }
 
     public Listener getListener() {
@@ -42,16 +55,57 @@ public class RegisteredListener {
         return priority;
     }
 
+    /**
+     * @return event class the listener was registered for, or null if unknown
+     */
+    public Class<? extends Event> getEventClass() {
+        return eventClass;
+    }
+
     public void callEvent(Event event) throws EventException {
         if (event instanceof Cancellable) {
             if (event.isCancelled() && ignoreCancelled) {
                 return;
             }
         }
-        executor.execute(listener, event);
+        this.invoke(event);
+    }
+
+    /**
+     * Call the listener without checking whether the event was cancelled, measuring the time it takes.
+     *
+     * @param event event
+     */
+    public void invoke(Event event) throws EventException {
+        long start = System.nanoTime();
+        try {
+            executor.execute(listener, event);
+        } finally {
+            this.timeNanos.add(System.nanoTime() - start);
+            this.invocations.increment();
+        }
     }
 
     public boolean isIgnoringCancelled() {
         return ignoreCancelled;
     }
+
+    /**
+     * @return number of times the listener was called
+     */
+    public long getInvocations() {
+        return this.invocations.sum();
+    }
+
+    /**
+     * @return total time spent in the listener in nanoseconds
+     */
+    public long getTimeNanos() {
+        return this.timeNanos.sum();
+    }
+
+    public void resetTimings() {
+        this.invocations.reset();
+        this.timeNanos.reset();
+    }
 }
@@ -3,18 +3,37 @@ package cn.nukkit.scheduler;
 import cn.nukkit.block.Block;
 import cn.nukkit.level.Level;
 import cn.nukkit.math.AxisAlignedBB;
-import cn.nukkit.math.SimpleAxisAlignedBB;
 import cn.nukkit.math.Vector3;
 import cn.nukkit.utils.BlockUpdateEntry;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Scheduled block updates of a level.
+ * <p>
+ * Updates due in the next {@link #WHEEL_SIZE} ticks are kept in a timing wheel with one slot per tick,
+ * later ones wait in an overflow map and are moved to the wheel as it turns.
+ * All updates are also indexed by themselves and by chunk, so lookups, removals and chunk queries do not scan the queue.
+ * Updates of unloaded chunks are parked until the chunk is loaded again.
+ */
 public class BlockUpdateScheduler {
 
+    private static final int WHEEL_SIZE = 256;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
     private final Level level;
     private long lastTick;
-    private final Map<Long, LinkedHashSet<BlockUpdateEntry>> queuedUpdates = new ConcurrentHashMap<>();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final LinkedHashSet<BlockUpdateEntry>[] wheel = new LinkedHashSet[WHEEL_SIZE];
+    private int wheelCount;
+    private final TreeMap<Long, LinkedHashSet<BlockUpdateEntry>> overflow = new TreeMap<>();
+    private final Long2ObjectMap<LinkedHashSet<BlockUpdateEntry>> parked = new Long2ObjectOpenHashMap<>();
+
+    private final Map<BlockUpdateEntry, BlockUpdateEntry> entries = new HashMap<>();
+    private final Long2ObjectMap<LinkedHashSet<BlockUpdateEntry>> chunkEntries = new Long2ObjectOpenHashMap<>();
 
     private Set<BlockUpdateEntry> pendingUpdates;
 
@@ -24,61 +43,98 @@ public class BlockUpdateScheduler {
     }
 
     public synchronized void tick(long currentTick) {
-        // Should only perform once, unless ticks were skipped
-        if (currentTick - lastTick < Short.MAX_VALUE) {// Arbitrary
-            for (long tick = lastTick + 1; tick <= currentTick; tick++) {
-                perform(tick);
-            }
-        } else {
-            ArrayList<Long> times = new ArrayList<>(queuedUpdates.keySet());
-            Collections.sort(times);
-            for (long tick : times) {
-                if (tick <= currentTick) {
-                    perform(tick);
-                } else {
+        while (this.lastTick < currentTick) {
+            if (this.wheelCount == 0) {
+                // Nothing due soon, skip straight to the next overflow tick
+                Long first = this.overflow.isEmpty() ? null : this.overflow.firstKey();
+                if (first == null || first > currentTick) {
+                    this.lastTick = currentTick;
+                    this.cascade();
                     break;
                 }
+                this.lastTick = Math.max(this.lastTick, first - 1);
+                this.cascade();
             }
+
+            this.perform(this.lastTick + 1);
         }
-        lastTick = currentTick;
     }
 
     private void perform(long tick) {
+        this.lastTick = tick;
+        int slot = (int) (tick & WHEEL_MASK);
+        LinkedHashSet<BlockUpdateEntry> updates = this.wheel[slot];
+        if (updates != null) {
+            this.wheel[slot] = null;
+            this.wheelCount -= updates.size();
+        }
+
+        // Turn the wheel before running the updates, so updates they remove or add are where schedule() expects them
+        this.cascade();
+        if (updates == null) {
+            return;
+        }
+
+        for (BlockUpdateEntry entry : updates) {
+            this.unindex(entry);
+        }
+
         try {
-            lastTick = tick;
-            Set<BlockUpdateEntry> updates = pendingUpdates = queuedUpdates.remove(tick);
-            if (updates != null) {
-                for (BlockUpdateEntry entry : updates) {
-                    if (level.isAreaLoaded(new SimpleAxisAlignedBB(entry.pos, entry.pos))) {
-                        Block block = level.getBlock(entry.pos, entry.block.getLayer(), true);
-
-                        if (Block.equals(block, entry.block, false)) {
-                            block.onUpdate(Level.BLOCK_UPDATE_SCHEDULED);
-                        }
-                    } else {
-                        level.scheduleUpdate(entry.block, entry.pos, 0);
+            this.pendingUpdates = updates;
+            for (BlockUpdateEntry entry : updates) {
+                if (this.level.isChunkLoaded(entry.pos.getFloorX() >> 4, entry.pos.getFloorZ() >> 4)) {
+                    Block block = this.level.getBlock(entry.pos, entry.block.getLayer(), true);
+
+                    if (Block.equals(block, entry.block, false)) {
+                        block.onUpdate(Level.BLOCK_UPDATE_SCHEDULED);
                     }
+                } else if (!this.entries.containsKey(entry)) {
+                    this.index(entry);
+                    this.park(entry);
                 }
             }
         } finally {
-            pendingUpdates = null;
+            this.pendingUpdates = null;
         }
     }
 
-    public Set<BlockUpdateEntry> getPendingBlockUpdates(AxisAlignedBB boundingBox) {
+    /**
+     * Move overflow updates which are now within the wheel range into the wheel.
+     */
+    private void cascade() {
+        long horizon = this.lastTick + WHEEL_SIZE;
+        while (!this.overflow.isEmpty() && this.overflow.firstKey() <= horizon) {
+            Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> due = this.overflow.pollFirstEntry();
+            int slot = (int) (due.getKey() & WHEEL_MASK);
+            if (this.wheel[slot] == null) {
+                this.wheel[slot] = due.getValue();
+            } else {
+                this.wheel[slot].addAll(due.getValue());
+            }
+            this.wheelCount += due.getValue().size();
+        }
+    }
+
+    public synchronized Set<BlockUpdateEntry> getPendingBlockUpdates(AxisAlignedBB boundingBox) {
         Set<BlockUpdateEntry> set = null;
 
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickEntries : this.queuedUpdates.entrySet()) {
-            LinkedHashSet<BlockUpdateEntry> tickSet = tickEntries.getValue();
-            for (BlockUpdateEntry update : tickSet) {
-                Vector3 pos = update.pos;
+        int minChunkX = (int) Math.floor(boundingBox.getMinX()) >> 4;
+        int minChunkZ = (int) Math.floor(boundingBox.getMinZ()) >> 4;
+        int maxChunkX = (int) Math.ceil(boundingBox.getMaxX() - 1) >> 4;
+        int maxChunkZ = (int) Math.ceil(boundingBox.getMaxZ() - 1) >> 4;
+        long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
 
-                if (pos.getX() >= boundingBox.getMinX() && pos.getX() < boundingBox.getMaxX() && pos.getZ() >= boundingBox.getMinZ() && pos.getZ() < boundingBox.getMaxZ()) {
-                    if (set == null) {
-                        set = new LinkedHashSet<>();
+        if (area > this.chunkEntries.size()) {
+            for (LinkedHashSet<BlockUpdateEntry> chunk : this.chunkEntries.values()) {
+                set = collect(chunk, boundingBox, set);
+            }
+        } else {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    LinkedHashSet<BlockUpdateEntry> chunk = this.chunkEntries.get(Level.chunkHash(chunkX, chunkZ));
+                    if (chunk != null) {
+                        set = collect(chunk, boundingBox, set);
                     }
-
-                    set.add(update);
                 }
             }
         }
@@ -86,6 +142,21 @@ public class BlockUpdateScheduler {
         return set;
     }
 
+    private static Set<BlockUpdateEntry> collect(Set<BlockUpdateEntry> chunk, AxisAlignedBB boundingBox, Set<BlockUpdateEntry> set) {
+        for (BlockUpdateEntry update : chunk) {
+            Vector3 pos = update.pos;
+
+            if (pos.getX() >= boundingBox.getMinX() && pos.getX() < boundingBox.getMaxX() && pos.getZ() >= boundingBox.getMinZ() && pos.getZ() < boundingBox.getMaxZ()) {
+                if (set == null) {
+                    set = new LinkedHashSet<>();
+                }
+
+                set.add(update);
+            }
+        }
+        return set;
+    }
+
     public boolean isBlockTickPending(Vector3 pos, Block block) {
         Set<BlockUpdateEntry> tmpUpdates = pendingUpdates;
         if (tmpUpdates == null || tmpUpdates.isEmpty()) return false;
@@ -96,40 +167,160 @@ public class BlockUpdateScheduler {
         return Math.max(entry.delay, lastTick + 1);
     }
 
-    public void add(BlockUpdateEntry entry) {
-        long time = getMinTime(entry);
-        LinkedHashSet<BlockUpdateEntry> updateSet = queuedUpdates.get(time);
-        if (updateSet == null) {
-            LinkedHashSet<BlockUpdateEntry> tmp = queuedUpdates.putIfAbsent(time, updateSet = new LinkedHashSet<>());
-            if (tmp != null) updateSet = tmp;
+    public synchronized void add(BlockUpdateEntry entry) {
+        if (this.entries.containsKey(entry)) {
+            return;
         }
-        updateSet.add(entry);
+
+        entry.delay = getMinTime(entry);
+        this.index(entry);
+        this.schedule(entry);
     }
 
-    public boolean contains(BlockUpdateEntry entry) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().contains(entry)) {
+    public synchronized boolean contains(BlockUpdateEntry entry) {
+        return this.entries.containsKey(entry);
+    }
+
+    public synchronized boolean remove(BlockUpdateEntry entry) {
+        BlockUpdateEntry queued = this.entries.get(entry);
+        if (queued == null) {
+            return false;
+        }
+
+        this.unindex(queued);
+        this.unschedule(queued);
+        return true;
+    }
+
+    public synchronized boolean remove(Vector3 pos) {
+        LinkedHashSet<BlockUpdateEntry> chunk = this.chunkEntries.get(chunkHash(pos));
+        if (chunk == null) {
+            return false;
+        }
+
+        for (BlockUpdateEntry entry : chunk) {
+            if (entry.pos.equals(pos)) {
+                this.unindex(entry);
+                this.unschedule(entry);
                 return true;
             }
         }
         return false;
     }
 
-    public boolean remove(BlockUpdateEntry entry) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().remove(entry)) {
-                return true;
+    /**
+     * @return whether any update is scheduled inside the chunk
+     */
+    public synchronized boolean hasPendingBlockUpdates(int chunkX, int chunkZ) {
+        return this.chunkEntries.containsKey(Level.chunkHash(chunkX, chunkZ));
+    }
+
+    /**
+     * Called when a chunk is unloaded.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @param persisted whether the updates were saved with the chunk and will be loaded again from it, otherwise they are parked until the chunk is loaded
+     */
+    public synchronized void unloadChunk(int chunkX, int chunkZ, boolean persisted) {
+        long index = Level.chunkHash(chunkX, chunkZ);
+        LinkedHashSet<BlockUpdateEntry> chunk = this.chunkEntries.get(index);
+        if (chunk == null) {
+            return;
+        }
+
+        if (persisted) {
+            this.chunkEntries.remove(index);
+            for (BlockUpdateEntry entry : chunk) {
+                this.entries.remove(entry);
+                this.unschedule(entry);
+            }
+        } else {
+            for (BlockUpdateEntry entry : chunk) {
+                this.unschedule(entry);
+                this.park(entry);
             }
         }
-        return false;
     }
 
-    public boolean remove(Vector3 pos) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().remove(new BlockUpdateEntry(pos, null))) {
-                return true;
+    /**
+     * Called when a chunk is loaded, schedules the updates parked while it was unloaded for the next tick.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     */
+    public synchronized void loadChunk(int chunkX, int chunkZ) {
+        LinkedHashSet<BlockUpdateEntry> parked = this.parked.remove(Level.chunkHash(chunkX, chunkZ));
+        if (parked != null) {
+            for (BlockUpdateEntry entry : parked) {
+                entry.delay = this.lastTick + 1;
+                this.schedule(entry);
+            }
+        }
+    }
+
+    private static long chunkHash(Vector3 pos) {
+        return Level.chunkHash(pos.getFloorX() >> 4, pos.getFloorZ() >> 4);
+    }
+
+    private void index(BlockUpdateEntry entry) {
+        this.entries.put(entry, entry);
+        this.chunkEntries.computeIfAbsent(chunkHash(entry.pos), i -> new LinkedHashSet<>()).add(entry);
+    }
+
+    private void unindex(BlockUpdateEntry entry) {
+        this.entries.remove(entry);
+        long index = chunkHash(entry.pos);
+        LinkedHashSet<BlockUpdateEntry> chunk = this.chunkEntries.get(index);
+        if (chunk != null && chunk.remove(entry) && chunk.isEmpty()) {
+            this.chunkEntries.remove(index);
+        }
+    }
+
+    private void schedule(BlockUpdateEntry entry) {
+        long tick = entry.delay;
+        if (tick <= this.lastTick + WHEEL_SIZE) {
+            int slot = (int) (tick & WHEEL_MASK);
+            LinkedHashSet<BlockUpdateEntry> updates = this.wheel[slot];
+            if (updates == null) {
+                this.wheel[slot] = updates = new LinkedHashSet<>();
+            }
+            updates.add(entry);
+            this.wheelCount++;
+        } else {
+            this.overflow.computeIfAbsent(tick, t -> new LinkedHashSet<>()).add(entry);
+        }
+    }
+
+    private void park(BlockUpdateEntry entry) {
+        this.parked.computeIfAbsent(chunkHash(entry.pos), i -> new LinkedHashSet<>()).add(entry);
+    }
+
+    private void unschedule(BlockUpdateEntry entry) {
+        long index = chunkHash(entry.pos);
+        LinkedHashSet<BlockUpdateEntry> parked = this.parked.get(index);
+        if (parked != null && parked.remove(entry)) {
+            if (parked.isEmpty()) {
+                this.parked.remove(index);
+            }
+            return;
+        }
+
+        long tick = entry.delay;
+        if (tick <= this.lastTick + WHEEL_SIZE) {
+            int slot = (int) (tick & WHEEL_MASK);
+            LinkedHashSet<BlockUpdateEntry> updates = this.wheel[slot];
+            if (updates != null && updates.remove(entry)) {
+                this.wheelCount--;
+                if (updates.isEmpty()) {
+                    this.wheel[slot] = null;
+                }
+            }
+        } else {
+            LinkedHashSet<BlockUpdateEntry> updates = this.overflow.get(tick);
+            if (updates != null && updates.remove(entry) && updates.isEmpty()) {
+                this.overflow.remove(tick);
             }
         }
-        return false;
     }
 }
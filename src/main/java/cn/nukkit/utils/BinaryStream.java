@@ -1,6 +1,5 @@
 package cn.nukkit.utils;
 
-import cn.nukkit.block.Block;
 import cn.nukkit.entity.Attribute;
 import cn.nukkit.entity.data.Skin;
 import cn.nukkit.item.*;
@@ -18,7 +17,6 @@ import cn.nukkit.nbt.tag.CompoundTag;
 import cn.nukkit.nbt.tag.ListTag;
 import cn.nukkit.nbt.tag.StringTag;
 import cn.nukkit.network.LittleEndianByteBufInputStream;
-import cn.nukkit.network.LittleEndianByteBufOutputStream;
 import cn.nukkit.network.protocol.types.EntityLink;
 import cn.nukkit.network.protocol.types.ExperimentData;
 import org.cloudburstmc.nbt.NBTOutputStream;
@@ -523,78 +521,7 @@ public class BinaryStream {
             return;
         }
 
-        int id = item.getId();
-        int meta = item.getDamage();
-        boolean isBlock = item instanceof ItemBlock;
-        boolean isDurable = item instanceof ItemDurable;
-
-        RuntimeItemMapping mapping = RuntimeItems.getMapping();
-        RuntimeEntry runtimeEntry = mapping.toRuntime(id, meta);
-        int runtimeId = runtimeEntry.getRuntimeId();
-        int damage = isBlock || isDurable || runtimeEntry.isHasDamage() ? 0 : meta;
-
-        this.putVarInt(runtimeId);
-        this.putLShort(item.getCount());
-        this.putUnsignedVarInt(damage);
-
-        if (!instanceItem) {
-            this.putBoolean(true);
-            this.putVarInt(1); // Item is present
-        }
-
-        Block block = isBlock ? item.getBlockUnsafe() : null;
-        int blockRuntimeId = block == null ? 0 : GlobalBlockPalette.getOrCreateRuntimeId(block.getId(), block.getDamage());
-        this.putVarInt(blockRuntimeId);
-
-        ByteBuf userDataBuf = ByteBufAllocator.DEFAULT.ioBuffer();
-        try (LittleEndianByteBufOutputStream stream = new LittleEndianByteBufOutputStream(userDataBuf)) {
-            if (!instanceItem && isDurable && !runtimeEntry.isHasDamage()) {
-                byte[] nbt = item.getCompoundTag();
-                CompoundTag tag;
-                if (nbt == null || nbt.length == 0) {
-                    tag = new CompoundTag();
-                } else {
-                    tag = NBTIO.read(nbt, ByteOrder.LITTLE_ENDIAN);
-                }
-                if (tag.contains("Damage")) {
-                    tag.put("__DamageConflict__", tag.removeAndGet("Damage"));
-                }
-                tag.putInt("Damage", meta);
-                stream.writeShort(-1);
-                stream.writeByte(1); // Hardcoded in current version
-                stream.write(NBTIO.write(tag, ByteOrder.LITTLE_ENDIAN));
-            } else if (item.hasCompoundTag()) {
-                stream.writeShort(-1);
-                stream.writeByte(1); // Hardcoded in current version
-                stream.write(item.getCompoundTag());
-            } else {
-                userDataBuf.writeShortLE(0);
-            }
-
-            List<String> canPlaceOn = extractStringList(item, "CanPlaceOn");
-            stream.writeInt(canPlaceOn.size());
-            for (String string : canPlaceOn) {
-                stream.writeUTF(string);
-            }
-
-            List<String> canDestroy = extractStringList(item, "CanDestroy");
-            stream.writeInt(canDestroy.size());
-            for (String string : canDestroy) {
-                stream.writeUTF(string);
-            }
-
-            if (id == ItemID.SHIELD) {
-                stream.writeLong(0);
-            }
-
-            byte[] bytes = new byte[userDataBuf.readableBytes()];
-            userDataBuf.readBytes(bytes);
-            putByteArray(bytes);
-        } catch (IOException e) {
-            throw new IllegalStateException("Unable to write item user data", e);
-        } finally {
-            userDataBuf.release();
-        }
+        EncodedSlot.of(item, instanceItem).write(this, item.getCount());
     }
 
     public Item getRecipeIngredient() {
@@ -648,29 +575,6 @@ public class BinaryStream {
         this.putVarInt(item.getCount());
     }
 
-    private static List<String> extractStringList(Item item, String tagName) {
-        CompoundTag namedTag = item.getNamedTag();
-        if (namedTag == null) {
-            return Collections.emptyList();
-        }
-
-        ListTag<StringTag> listTag = namedTag.getList(tagName, StringTag.class);
-        if (listTag == null) {
-            return Collections.emptyList();
-        }
-
-        int size = listTag.size();
-        List<String> values = new ArrayList<>(size);
-        for (int i = 0; i < size; i++) {
-            StringTag stringTag = listTag.get(i);
-            if (stringTag != null) {
-                values.add(stringTag.data);
-            }
-        }
-
-        return values;
-    }
-
     public byte[] getByteArray() {
         return this.get((int) this.getUnsignedVarInt());
     }
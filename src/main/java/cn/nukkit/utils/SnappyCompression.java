@@ -1,8 +1,13 @@
 package cn.nukkit.utils;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.xerial.snappy.Snappy;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Implements data compression and decompression using Snappy, powered by snappy-java (org.xerial.snappy)
@@ -14,6 +19,27 @@ public class SnappyCompression {
         return Snappy.compress(data);
     }
 
+    public static void compress(ByteBuf data, ByteBuf out) throws IOException {
+        int length = data.readableBytes();
+        int maxLength = Snappy.maxCompressedLength(length);
+        out.ensureWritable(maxLength);
+
+        int written;
+        if (data.isDirect() && out.isDirect() && data.nioBufferCount() == 1 && out.nioBufferCount() == 1) {
+            written = Snappy.compress(data.nioBuffer(data.readerIndex(), length), out.nioBuffer(out.writerIndex(), maxLength));
+        } else if (data.hasArray() && out.hasArray()) {
+            written = Snappy.compress(data.array(), data.arrayOffset() + data.readerIndex(), length, out.array(), out.arrayOffset() + out.writerIndex());
+        } else {
+            byte[] compressed = Snappy.compress(ByteBufUtil.getBytes(data));
+            written = compressed.length;
+            out.ensureWritable(written);
+            out.setBytes(out.writerIndex(), compressed);
+        }
+
+        data.skipBytes(length);
+        out.writerIndex(out.writerIndex() + written);
+    }
+
     public static byte[] decompress(byte[] data, int maxSize) throws IOException {
         int size = Snappy.uncompressedLength(data);
         if (size > maxSize && maxSize > 0) {
@@ -23,4 +49,28 @@ public class SnappyCompression {
         Snappy.uncompress(data, 0, data.length, decompressed, 0);
         return decompressed;
     }
+
+    public static ByteBuf decompress(ByteBuf data, int maxSize) throws IOException {
+        if (!data.isDirect() || data.nioBufferCount() != 1) {
+            byte[] compressed = ByteBufUtil.getBytes(data);
+            data.skipBytes(compressed.length);
+            return Unpooled.wrappedBuffer(decompress(compressed, maxSize));
+        }
+
+        ByteBuffer compressed = data.nioBuffer();
+        int size = Snappy.uncompressedLength(compressed);
+        if (size > maxSize && maxSize > 0) {
+            throw new IllegalArgumentException("Input is too big");
+        }
+        ByteBuf decompressed = ByteBufAllocator.DEFAULT.directBuffer(size);
+        try {
+            Snappy.uncompress(compressed, decompressed.nioBuffer(0, size));
+            decompressed.writerIndex(size);
+        } catch (IOException e) {
+            decompressed.release();
+            throw e;
+        }
+        data.skipBytes(data.readableBytes());
+        return decompressed;
+    }
 }
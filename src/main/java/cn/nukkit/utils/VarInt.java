@@ -1,5 +1,7 @@
 package cn.nukkit.utils;
 
+import io.netty.buffer.ByteBuf;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -58,7 +60,7 @@ public final class VarInt {
         while (((b = stream.getByte()) & 0x80) == 0x80) {
             value |= (long) (b & 0x7F) << (size++ * 7);
             if (size >= maxSize) {
-                throw new IllegalArgumentException("VarLong too big");
+                throw new IllegalArgumentException(maxSize > 5 ? "VarLong too big" : "VarInt too big");
             }
         }
 
@@ -72,7 +74,21 @@ public final class VarInt {
         while (((b = stream.read()) & 0x80) == 0x80) {
             value |= (long) (b & 0x7F) << (size++ * 7);
             if (size >= maxSize) {
-                throw new IllegalArgumentException("VarLong too big");
+                throw new IllegalArgumentException(maxSize > 5 ? "VarLong too big" : "VarInt too big");
+            }
+        }
+
+        return value | ((long) (b & 0x7F) << (size * 7));
+    }
+
+    private static long read(ByteBuf buf, int maxSize) {
+        long value = 0;
+        int size = 0;
+        int b;
+        while (((b = buf.readByte()) & 0x80) == 0x80) {
+            value |= (long) (b & 0x7F) << (size++ * 7);
+            if (size >= maxSize) {
+                throw new IllegalArgumentException(maxSize > 5 ? "VarLong too big" : "VarInt too big");
             }
         }
 
@@ -111,6 +127,14 @@ public final class VarInt {
         return read(stream, 5);
     }
 
+    /**
+     * @param buf ByteBuf
+     * @return Unsigned int
+     */
+    public static long readUnsignedVarInt(ByteBuf buf) {
+        return read(buf, 5);
+    }
+
     /**
      * @param stream BinaryStream
      * @return Signed long
@@ -167,6 +191,17 @@ public final class VarInt {
         } while (value != 0);
     }
 
+    private static void write(ByteBuf buf, long value) {
+        do {
+            byte temp = (byte) (value & 0b01111111);
+            value >>>= 7;
+            if (value != 0) {
+                temp |= 0b10000000;
+            }
+            buf.writeByte(temp);
+        } while (value != 0);
+    }
+
     /**
      * @param stream BinaryStream
      * @param value  Signed int
@@ -199,6 +234,14 @@ public final class VarInt {
         write(stream, value);
     }
 
+    /**
+     * @param buf   ByteBuf
+     * @param value Unsigned int
+     */
+    public static void writeUnsignedVarInt(ByteBuf buf, long value) {
+        write(buf, value);
+    }
+
     /**
      * @param stream BinaryStream
      * @param value  Signed long
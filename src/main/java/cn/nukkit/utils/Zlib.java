@@ -1,5 +1,7 @@
 package cn.nukkit.utils;
 
+import io.netty.buffer.ByteBuf;
+
 import java.io.IOException;
 import java.util.zip.Deflater;
 
@@ -27,6 +29,13 @@ public abstract class Zlib {
         return provider.deflateRaw(data, level);
     }
 
+    /**
+     * Deflate the readable bytes of a buffer straight into another buffer, without intermediate arrays.
+     */
+    public static void deflateRaw(ByteBuf data, ByteBuf out, int level) throws Exception {
+        provider.deflateRaw(data, out, level);
+    }
+
     public static byte[] inflate(byte[] data) throws IOException {
         return inflate(data, -1);
     }
@@ -38,4 +47,11 @@ public abstract class Zlib {
     public static byte[] inflateRaw(byte[] data, int maxSize) throws IOException {
         return provider.inflateRaw(data, maxSize);
     }
+
+    /**
+     * Inflate the readable bytes of a buffer into a pooled buffer, which has to be released by the caller.
+     */
+    public static ByteBuf inflateRaw(ByteBuf data, int maxSize) throws IOException {
+        return provider.inflateRaw(data, maxSize);
+    }
 }
@@ -1,5 +1,7 @@
 package cn.nukkit.utils;
 
+import io.netty.buffer.ByteBuf;
+
 import java.io.IOException;
 
 /**
@@ -17,7 +19,11 @@ interface ZlibProvider {
 
     byte[] deflateRaw(byte[] data, int level) throws IOException;
 
+    void deflateRaw(ByteBuf data, ByteBuf out, int level) throws IOException;
+
     byte[] inflate(byte[] data, int maxSize) throws IOException;
 
     byte[] inflateRaw(byte[] data, int maxSize) throws IOException;
+
+    ByteBuf inflateRaw(ByteBuf data, int maxSize) throws IOException;
 }
@@ -2,6 +2,9 @@ package cn.nukkit.utils;
 
 import cn.nukkit.Server;
 import cn.nukkit.nbt.stream.FastByteArrayOutputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 
 import java.io.IOException;
 import java.util.zip.DataFormatException;
@@ -15,6 +18,7 @@ public final class ZlibThreadLocal implements ZlibProvider {
     private static final ThreadLocal<Inflater> INFLATER_RAW = ThreadLocal.withInitial(() -> new Inflater(true));
     private static final ThreadLocal<Deflater> DEFLATER_RAW = ThreadLocal.withInitial(() -> new Deflater(7, true));
     private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[32768]);
+    private static final ThreadLocal<byte[]> INPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[32768]);
 
     @Override
     public byte[] deflate(byte[][] datas, int level) throws IOException {
@@ -102,6 +106,37 @@ public final class ZlibThreadLocal implements ZlibProvider {
         return bos.toByteArray();
     }
 
+    @Override
+    public void deflateRaw(ByteBuf data, ByteBuf out, int level) throws IOException {
+        Deflater deflater = DEFLATER_RAW.get();
+        deflater.reset();
+        int length = data.readableBytes();
+        deflater.setLevel(length < Server.getInstance().networkCompressionThreshold ? 0 : level);
+        if (data.hasArray()) {
+            deflater.setInput(data.array(), data.arrayOffset() + data.readerIndex(), length);
+        } else {
+            deflater.setInput(ByteBufUtil.getBytes(data));
+        }
+        deflater.finish();
+
+        if (out.hasArray()) {
+            while (!deflater.finished()) {
+                out.ensureWritable(8192);
+                int i = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+                out.writerIndex(out.writerIndex() + i);
+            }
+        } else {
+            // Deflater has no ByteBuffer API on Java 8, so direct buffers are filled through the thread local chunk
+            byte[] buffer = BUFFER.get();
+            while (!deflater.finished()) {
+                int i = deflater.deflate(buffer);
+                out.writeBytes(buffer, 0, i);
+            }
+        }
+        data.skipBytes(length);
+        //Deflater::end is called the time when the process exits.
+    }
+
     @Override
     public byte[] inflate(byte[] data, int maxSize) throws IOException {
         Inflater inflater = INFLATER.get();
@@ -159,4 +194,53 @@ public final class ZlibThreadLocal implements ZlibProvider {
             throw new IOException("Unable to inflate Zlib stream", e);
         }
     }
+
+    @Override
+    public ByteBuf inflateRaw(ByteBuf data, int maxSize) throws IOException {
+        Inflater inflater = INFLATER_RAW.get();
+        inflater.reset();
+        int compressedLength = data.readableBytes();
+        // Heap input is inflated in place, direct input goes through the thread local chunk as Java 8 Inflater only takes arrays
+        byte[] input = null;
+        if (data.hasArray()) {
+            inflater.setInput(data.array(), data.arrayOffset() + data.readerIndex(), compressedLength);
+            data.skipBytes(compressedLength);
+        } else {
+            input = INPUT_BUFFER.get();
+        }
+
+        ByteBuf out = ByteBufAllocator.DEFAULT.heapBuffer(Math.max(8192, Math.min(compressedLength << 2, 1 << 20)));
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (input == null || !data.isReadable()) {
+                        throw new IOException("Could not decompress data");
+                    }
+                    int length = Math.min(input.length, data.readableBytes());
+                    data.readBytes(input, 0, length);
+                    inflater.setInput(input, 0, length);
+                }
+
+                out.ensureWritable(8192);
+                int i = inflater.inflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+                if (i == 0 && !inflater.needsInput() && !inflater.finished()) {
+                    throw new IOException("Could not decompress data");
+                }
+                out.writerIndex(out.writerIndex() + i);
+                if (maxSize > 0 && out.writerIndex() >= maxSize) {
+                    throw new IOException("Inflated data exceeds maximum size");
+                }
+            }
+            if (input != null) {
+                data.skipBytes(data.readableBytes());
+            }
+            return out;
+        } catch (DataFormatException e) {
+            out.release();
+            throw new IOException("Unable to inflate Zlib stream", e);
+        } catch (IOException | RuntimeException e) {
+            out.release();
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package cn.nukkit.inventory;
+
+import cn.nukkit.item.Item;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * In the package of the crafting manager, the recipe index key is not public.
+ */
+@DisplayName("CraftingManager")
+class CraftingManagerTest {
+
+	private static final int RESULT = Item.STICK << 12;
+
+	@DisplayName("Index key of wildcard ingredients")
+	@Test
+	void testWildcardDamage() {
+		// Any planks, as written by a recipe
+		Item wildcard = new Item(Item.PLANKS, -1);
+		long recipeKey = CraftingManager.getIndexKey(RESULT, Arrays.asList(wildcard, wildcard));
+
+		assertEquals(recipeKey, CraftingManager.getIndexKey(RESULT, Arrays.asList(new Item(Item.PLANKS, 2), new Item(Item.PLANKS, 5))));
+		assertNotEquals(recipeKey, CraftingManager.getIndexKey(RESULT, Arrays.asList(new Item(Item.PLANKS, 2), new Item(Item.COBBLESTONE))));
+		assertNotEquals(recipeKey, CraftingManager.getIndexKey(RESULT + 1, Arrays.asList(wildcard, wildcard)));
+	}
+
+	@DisplayName("Index key ignores order, counts and empty slots")
+	@Test
+	void testGrid() {
+		long recipeKey = CraftingManager.getIndexKey(RESULT, Arrays.asList(new Item(Item.STICK), new Item(Item.COAL)));
+
+		Item air = new Item(Item.AIR, 0, 0);
+		Item coals = new Item(Item.COAL, 0, 3);
+		Item sticks = new Item(Item.STICK, 0, 2);
+		assertEquals(recipeKey, CraftingManager.getIndexKey(RESULT, Arrays.asList(air, coals, air, sticks, new Item(Item.STICK))));
+		assertNotEquals(recipeKey, CraftingManager.getIndexKey(RESULT, Collections.singletonList(coals)));
+	}
+
+	@DisplayName("Matching a wildcard and a specific ingredient in any order")
+	@Test
+	void testWildcardMatchOrder() {
+		ShapelessRecipe recipe = new ShapelessRecipe(new Item(Item.STICK), Arrays.asList(new Item(Item.PLANKS, -1), new Item(Item.PLANKS, 2)));
+
+		// The wildcard must not take the specific planks it comes across first
+		assertTrue(recipe.matchItems(Arrays.asList(new Item(Item.PLANKS, 2), new Item(Item.PLANKS, 0)), Collections.emptyList()));
+		assertTrue(recipe.matchItems(Arrays.asList(new Item(Item.PLANKS, 0), new Item(Item.PLANKS, 2)), Collections.emptyList()));
+		assertFalse(recipe.matchItems(Arrays.asList(new Item(Item.PLANKS, 0), new Item(Item.PLANKS, 1)), Collections.emptyList()));
+	}
+}
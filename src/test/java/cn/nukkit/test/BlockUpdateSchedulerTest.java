@@ -0,0 +1,84 @@
+package cn.nukkit.test;
+
+import cn.nukkit.block.BlockStone;
+import cn.nukkit.math.Vector3;
+import cn.nukkit.scheduler.BlockUpdateScheduler;
+import cn.nukkit.utils.BlockUpdateEntry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The scheduler is created without a level, ticking it only works as long as no update is due.
+ */
+@DisplayName("BlockUpdateScheduler")
+class BlockUpdateSchedulerTest {
+
+	private static BlockUpdateEntry entry(int x, long delay) {
+		return new BlockUpdateEntry(new Vector3(x, 64, 0), new BlockStone(), delay, 0);
+	}
+
+	@DisplayName("Removing at the wheel and overflow boundary")
+	@Test
+	void testBoundaryRemoval() {
+		BlockUpdateScheduler scheduler = new BlockUpdateScheduler(null, 0);
+		BlockUpdateEntry lastInWheel = entry(0, 256);
+		BlockUpdateEntry firstInOverflow = entry(1, 257);
+		scheduler.add(lastInWheel);
+		scheduler.add(firstInOverflow);
+
+		assertAll(
+				() -> assertTrue(scheduler.contains(lastInWheel)),
+				() -> assertTrue(scheduler.contains(firstInOverflow)),
+				() -> assertTrue(scheduler.remove(lastInWheel)),
+				() -> assertTrue(scheduler.remove(firstInOverflow)),
+				() -> assertFalse(scheduler.contains(lastInWheel)),
+				() -> assertFalse(scheduler.contains(firstInOverflow)),
+				() -> assertFalse(scheduler.hasPendingBlockUpdates(0, 0))
+		);
+		assertDoesNotThrow(() -> scheduler.tick(1000));
+	}
+
+	@DisplayName("Removing after the wheel turned")
+	@Test
+	void testRemovalAfterCascade() {
+		BlockUpdateScheduler scheduler = new BlockUpdateScheduler(null, 0);
+		BlockUpdateEntry near = entry(0, 200);
+		BlockUpdateEntry far = entry(1, 455);
+		BlockUpdateEntry skipped = entry(2, 700);
+		scheduler.add(near);
+		scheduler.add(far);
+		scheduler.add(skipped);
+
+		// Turns the wheel tick by tick, far is at the end of the wheel afterwards
+		scheduler.tick(199);
+		assertTrue(scheduler.remove(far));
+		assertTrue(scheduler.remove(near));
+
+		// Skips ahead with an empty wheel, skipped is moved into the wheel
+		scheduler.tick(500);
+		assertTrue(scheduler.remove(skipped));
+
+		assertFalse(scheduler.hasPendingBlockUpdates(0, 0));
+		assertDoesNotThrow(() -> scheduler.tick(2000));
+	}
+
+	@DisplayName("Adding again after removal")
+	@Test
+	void testReAdd() {
+		BlockUpdateScheduler scheduler = new BlockUpdateScheduler(null, 0);
+		scheduler.add(entry(0, 300));
+		assertTrue(scheduler.remove(new Vector3(0, 64, 0)));
+		assertFalse(scheduler.remove(new Vector3(0, 64, 0)));
+
+		BlockUpdateEntry again = entry(0, 10);
+		scheduler.add(again);
+		assertTrue(scheduler.contains(again));
+		assertTrue(scheduler.remove(again));
+		assertDoesNotThrow(() -> scheduler.tick(1000));
+	}
+}
@@ -0,0 +1,46 @@
+package cn.nukkit.test;
+
+import cn.nukkit.item.EncodedSlot;
+import cn.nukkit.item.Item;
+import cn.nukkit.item.ItemID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@DisplayName("EncodedSlot")
+class EncodedSlotTest {
+
+	@DisplayName("Reusing the encoding of an unchanged item")
+	@Test
+	void testReuse() {
+		Item item = new Item(ItemID.STICK);
+		EncodedSlot encoded = EncodedSlot.of(item, false);
+		assertSame(encoded, EncodedSlot.of(item, false));
+
+		// The count is written separately
+		item.setCount(12);
+		assertSame(encoded, EncodedSlot.of(item, false));
+
+		// Clones get a copy of the tags with the same contents
+		assertSame(encoded, EncodedSlot.of(item.clone(), false));
+	}
+
+	@DisplayName("Encoding an item again after it changed")
+	@Test
+	void testInvalidation() {
+		Item item = new Item(ItemID.STICK);
+		EncodedSlot encoded = EncodedSlot.of(item, false);
+
+		EncodedSlot instance = EncodedSlot.of(item, true);
+		assertNotSame(encoded, instance);
+
+		item.setDamage(1);
+		EncodedSlot damaged = EncodedSlot.of(item, true);
+		assertNotSame(instance, damaged);
+
+		item.setCustomName("Stick");
+		assertNotSame(damaged, EncodedSlot.of(item, true));
+	}
+}
@@ -0,0 +1,70 @@
+package cn.nukkit.test;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.block.BlockID;
+import cn.nukkit.level.format.leveldb.structure.StateBlockStorage;
+import cn.nukkit.level.util.BitArrayVersion;
+import cn.nukkit.utils.BinaryStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("StateBlockStorage")
+class StateBlockStorageTest {
+
+	private static final int STONE = BlockID.STONE << Block.DATA_BITS;
+	private static final int DIRT = BlockID.DIRT << Block.DATA_BITS;
+
+	private static BitArrayVersion writtenVersion(StateBlockStorage storage) {
+		BinaryStream stream = new BinaryStream();
+		storage.writeTo(stream);
+		return BitArrayVersion.get(stream.getBuffer()[0] >> 1, true);
+	}
+
+	@DisplayName("Compacting a storage of air only")
+	@Test
+	void testCompactToV0() {
+		StateBlockStorage storage = new StateBlockStorage();
+		for (int i = 0; i < 4096; i++) {
+			storage.setFullBlock(i, (i & 1) == 0 ? STONE : DIRT);
+		}
+		for (int i = 0; i < 4096; i++) {
+			storage.setFullBlock(i, 0);
+		}
+
+		assertEquals(BitArrayVersion.V0, writtenVersion(storage));
+		for (int i = 0; i < 4096; i++) {
+			assertEquals(0, storage.getFullBlock(i & 0x0f, i >> 8, (i >> 4) & 0x0f));
+		}
+
+		// The bit array grows again from the single value one
+		storage.setFullBlock(0, 0, 0, STONE);
+		assertEquals(STONE, storage.getFullBlock(0, 0, 0));
+		assertEquals(0, storage.getFullBlock(1, 0, 0));
+		assertEquals(BitArrayVersion.V1, writtenVersion(storage));
+	}
+
+	@DisplayName("Compacting keeps the blocks")
+	@Test
+	void testCompactKeepsBlocks() {
+		StateBlockStorage storage = new StateBlockStorage();
+		for (int data = 0; data < 7; data++) {
+			storage.setFullBlock(data, 0, 0, STONE | data);
+		}
+		assertEquals(BitArrayVersion.V3, writtenVersion(storage));
+
+		// Only air, stone and dirt are left, two bits are enough
+		for (int data = 1; data < 7; data++) {
+			storage.setFullBlock(data, 0, 0, DIRT);
+		}
+		assertEquals(BitArrayVersion.V2, writtenVersion(storage));
+
+		assertEquals(STONE, storage.getFullBlock(0, 0, 0));
+		for (int x = 1; x < 7; x++) {
+			assertEquals(DIRT, storage.getFullBlock(x, 0, 0));
+		}
+		assertEquals(0, storage.getFullBlock(7, 0, 0));
+		assertEquals(0, storage.getFullBlock(15, 15, 15));
+	}
+}
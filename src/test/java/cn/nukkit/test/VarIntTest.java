@@ -2,6 +2,8 @@ package cn.nukkit.test;
 
 import cn.nukkit.utils.BinaryStream;
 import cn.nukkit.utils.VarInt;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -11,6 +13,7 @@ import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * By lmlstarqaq http://snake1999.com/
@@ -90,6 +93,18 @@ class VarIntTest {
 		);
 	}
 
+	@DisplayName("Reading from a ByteBuf")
+	@Test
+	void testReadByteBuf() {
+		ByteBuf buf = Unpooled.wrappedBuffer(hexStringToByte("EC123EC456"));
+		assertEquals(2412, VarInt.readUnsignedVarInt(buf));
+		assertEquals(62, VarInt.readUnsignedVarInt(buf));
+		assertEquals(11076, VarInt.readUnsignedVarInt(buf));
+
+		ByteBuf tooLong = Unpooled.wrappedBuffer(hexStringToByte("FFFFFFFFFF01"));
+		assertEquals("VarInt too big", assertThrows(IllegalArgumentException.class, () -> VarInt.readUnsignedVarInt(tooLong)).getMessage());
+	}
+
 	private static BinaryStream wrapBinaryStream(String hex) {
 		return new BinaryStream(hexStringToByte(hex));
 	}